@@ -0,0 +1,488 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.commons.audit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Asynchronous sink for audits. Submitted audits are put in a bounded buffer and persisted by a background thread
+ * with {@link AuditService#persistAudits(List)}, in batches of {@code batchSize} audits or every
+ * {@code flushIntervalMillis}, whatever happens first, so that auditing doesn't add to the latency of the
+ * publisher.
+ * <p>When the buffer is full the {@link BackpressurePolicy} decides what happens with new audits:</p>
+ * <ul>
+ *     <li>{@link BackpressurePolicy#BLOCK}: the publisher waits until there's room in the buffer (no audits are
+ *     lost)</li>
+ *     <li>{@link BackpressurePolicy#DROP_OLDEST}: the oldest buffered audit is discarded</li>
+ *     <li>{@link BackpressurePolicy#SPILL}: the audit is serialized to a local file, which is persisted once the
+ *     buffer is drained (also on startup, if a previous run left one)</li>
+ * </ul>
+ * <p>Spilled audits are appended to the file as length-prefixed records, so an audit that can't be serialized or
+ * read back doesn't affect the others. When reading them back only {@link AuditModel} subclasses are accepted as
+ * records, and the classes of their fields must match {@code spillPayloadFilter} (by default JDK value types and
+ * {@code org.craftercms} classes).</p>
+ * <p>On shutdown all the buffered audits are persisted before returning.</p>
+ *
+ * @param <T> type of the audits
+ * @since 4.2.0
+ */
+public class AsyncAuditSink<T extends AuditModel> implements InitializingBean, DisposableBean {
+
+    public enum BackpressurePolicy {
+        BLOCK, DROP_OLDEST, SPILL
+    }
+
+    public static final int DEFAULT_CAPACITY = 10000;
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+    public static final long DEFAULT_SHUTDOWN_TIMEOUT_MILLIS = 30000;
+
+    public static final String DEFAULT_SPILL_PAYLOAD_FILTER =
+        "java.lang.*;java.util.*;java.time.*;java.math.*;java.net.URI;java.net.URL;org.craftercms.**";
+
+    private static final String REPLAY_FILE_SUFFIX = ".replay";
+
+    private Logger log = LoggerFactory.getLogger(AsyncAuditSink.class);
+
+    protected AuditService<T> auditService;
+    protected int capacity = DEFAULT_CAPACITY;
+    protected int batchSize = DEFAULT_BATCH_SIZE;
+    protected long flushIntervalMillis = DEFAULT_FLUSH_INTERVAL_MILLIS;
+    protected long shutdownTimeoutMillis = DEFAULT_SHUTDOWN_TIMEOUT_MILLIS;
+    protected BackpressurePolicy backpressurePolicy = BackpressurePolicy.BLOCK;
+    protected Path spillFile;
+    protected ObjectInputFilter spillPayloadFilter = ObjectInputFilter.Config.createFilter(DEFAULT_SPILL_PAYLOAD_FILTER);
+
+    protected BlockingQueue<T> buffer;
+    protected Thread flusher;
+    protected volatile boolean running;
+
+    private final Object spillLock = new Object();
+    private DataOutputStream spillOutput;
+
+    private final LongAdder submittedCount = new LongAdder();
+    private final LongAdder persistedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder spilledCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder flushCount = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private final LongAccumulator maxFlushNanos = new LongAccumulator(Math::max, 0);
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (auditService == null) {
+            throw new IllegalStateException("An auditService is required");
+        }
+        if (backpressurePolicy == BackpressurePolicy.SPILL && spillFile == null) {
+            throw new IllegalStateException("A spillFile is required for the " + backpressurePolicy + " policy");
+        }
+
+        buffer = new ArrayBlockingQueue<>(capacity);
+
+        // Persist what a previous run might have spilled
+        replaySpilled();
+
+        running = true;
+        flusher = new Thread(this::runFlusher, "audit-sink-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        running = false;
+        if (flusher != null) {
+            flusher.join(shutdownTimeoutMillis);
+            if (flusher.isAlive()) {
+                log.warn("Audit sink flusher didn't finish in {}ms, {} audits might not be persisted",
+                         shutdownTimeoutMillis, buffer.size());
+                return;
+            }
+        }
+        if (buffer != null) {
+            // Audits that got in after the flusher exited
+            drainBuffer();
+        }
+    }
+
+    /**
+     * Submits the audit to be persisted asynchronously. If the sink is not running the audit is persisted right
+     * away.
+     *
+     * @param auditModel the audit to persist
+     */
+    public void submit(final T auditModel) {
+        submittedCount.increment();
+
+        if (!running) {
+            persist(List.of(auditModel));
+            return;
+        }
+
+        switch (backpressurePolicy) {
+            case DROP_OLDEST:
+                while (!buffer.offer(auditModel)) {
+                    if (buffer.poll() != null) {
+                        droppedCount.increment();
+                    }
+                }
+                break;
+            case SPILL:
+                if (!buffer.offer(auditModel)) {
+                    spill(auditModel);
+                }
+                break;
+            default:
+                try {
+                    // Wait in steps, so that the publisher isn't blocked forever if the sink is stopped meanwhile
+                    while (!buffer.offer(auditModel, flushIntervalMillis, TimeUnit.MILLISECONDS)) {
+                        if (!running) {
+                            persist(List.of(auditModel));
+                            return;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    droppedCount.increment();
+                    log.warn("Interrupted while waiting to buffer audit {}, it won't be persisted", auditModel);
+                }
+        }
+
+        if (!running) {
+            // The sink was stopped while the audit was being buffered, the flusher might have already exited
+            drainBuffer();
+        }
+    }
+
+    protected void drainBuffer() {
+        List<T> batch = new ArrayList<>(batchSize);
+        while (buffer.drainTo(batch, batchSize) > 0) {
+            persist(batch);
+            batch.clear();
+        }
+    }
+
+    protected void runFlusher() {
+        List<T> batch = new ArrayList<>(batchSize);
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        long deadline = System.nanoTime() + flushIntervalNanos;
+
+        while (running || !buffer.isEmpty()) {
+            try {
+                long wait = deadline - System.nanoTime();
+                T auditModel = running && wait > 0? buffer.poll(wait, TimeUnit.NANOSECONDS) : buffer.poll();
+                if (auditModel != null) {
+                    batch.add(auditModel);
+                    buffer.drainTo(batch, batchSize - batch.size());
+                }
+
+                if (batch.size() >= batchSize || System.nanoTime() - deadline >= 0 || !running) {
+                    persist(batch);
+                    batch.clear();
+                    deadline = System.nanoTime() + flushIntervalNanos;
+
+                    if (backpressurePolicy == BackpressurePolicy.SPILL && buffer.isEmpty()) {
+                        replaySpilled();
+                    }
+                }
+            } catch (InterruptedException e) {
+                log.debug("Audit sink flusher interrupted");
+            } catch (Exception e) {
+                log.error("Unexpected error in audit sink flusher", e);
+            }
+        }
+
+        persist(batch);
+        if (backpressurePolicy == BackpressurePolicy.SPILL) {
+            replaySpilled();
+        }
+    }
+
+    protected void persist(final List<T> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            auditService.persistAudits(batch);
+            persistedCount.add(batch.size());
+        } catch (Exception e) {
+            failedCount.add(batch.size());
+            log.error("Unable to persist batch of {} audits", batch.size(), e);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            flushCount.increment();
+            flushNanos.add(elapsed);
+            maxFlushNanos.accumulate(elapsed);
+        }
+    }
+
+    protected void spill(final T auditModel) {
+        byte[] record;
+        try {
+            // Serialize first, so that an audit that can't be serialized doesn't leave a partial record in the file
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(auditModel);
+            }
+            record = bytes.toByteArray();
+        } catch (IOException e) {
+            droppedCount.increment();
+            log.error("Unable to serialize audit {} to spill it", auditModel, e);
+            return;
+        }
+
+        synchronized (spillLock) {
+            try {
+                if (spillOutput == null) {
+                    // Append, in case a previous spill file couldn't be moved aside to be persisted
+                    spillOutput = new DataOutputStream(new BufferedOutputStream(
+                        Files.newOutputStream(spillFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+                }
+                spillOutput.writeInt(record.length);
+                spillOutput.write(record);
+                spillOutput.flush();
+
+                spilledCount.increment();
+            } catch (IOException e) {
+                droppedCount.increment();
+                log.error("Unable to spill audit {} to {}", auditModel, spillFile, e);
+            }
+        }
+    }
+
+    /**
+     * Persists all the audits spilled so far. The spill file is moved aside first, so that new audits can be
+     * spilled meanwhile.
+     */
+    protected void replaySpilled() {
+        if (spillFile == null) {
+            return;
+        }
+
+        Path replayFile = Paths.get(spillFile + REPLAY_FILE_SUFFIX);
+        if (Files.exists(replayFile)) {
+            // Left by a previous run that didn't finish persisting it
+            replay(replayFile);
+        }
+
+        synchronized (spillLock) {
+            try {
+                if (spillOutput != null) {
+                    spillOutput.close();
+                    spillOutput = null;
+                }
+                if (Files.notExists(spillFile)) {
+                    return;
+                }
+                Files.move(spillFile, replayFile, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                log.error("Unable to prepare spilled audits at {} for persisting", spillFile, e);
+                return;
+            }
+        }
+
+        replay(replayFile);
+    }
+
+    protected void replay(final Path replayFile) {
+        log.info("Persisting audits spilled to {}", replayFile);
+
+        List<T> batch = new ArrayList<>(batchSize);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(replayFile)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    // Reached the end of the spilled audits
+                    break;
+                }
+                if (length <= 0) {
+                    throw new IOException("Invalid spilled audit record length " + length);
+                }
+
+                byte[] record = new byte[length];
+                in.readFully(record);
+
+                T auditModel = readSpilled(record);
+                if (auditModel != null) {
+                    batch.add(auditModel);
+                }
+                if (batch.size() >= batchSize) {
+                    persist(batch);
+                    batch.clear();
+                }
+            }
+        } catch (IOException e) {
+            log.error("Unable to read spilled audits from {}, the rest of the file will be ignored", replayFile, e);
+        }
+
+        persist(batch);
+
+        try {
+            Files.delete(replayFile);
+        } catch (IOException e) {
+            log.error("Unable to delete spilled audits file {}", replayFile, e);
+        }
+    }
+
+    /**
+     * Deserializes a single spilled audit, returning {@code null} if it can't be read (or isn't allowed by the
+     * filter), so that the rest of the spilled audits can still be persisted.
+     */
+    @SuppressWarnings("unchecked")
+    protected T readSpilled(final byte[] record) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(record))) {
+            in.setObjectInputFilter(this::checkSpilledClass);
+            return (T) in.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            droppedCount.increment();
+            log.error("Unable to read spilled audit, it won't be persisted", e);
+            return null;
+        }
+    }
+
+    protected ObjectInputFilter.Status checkSpilledClass(final ObjectInputFilter.FilterInfo info) {
+        Class<?> clazz = info.serialClass();
+        if (clazz == null) {
+            return spillPayloadFilter.checkInput(info);
+        }
+        if (info.depth() == 1) {
+            // The record itself has to be an audit
+            return AuditModel.class.isAssignableFrom(clazz)? ObjectInputFilter.Status.ALLOWED :
+                                                              ObjectInputFilter.Status.REJECTED;
+        }
+
+        while (clazz.isArray()) {
+            clazz = clazz.getComponentType();
+        }
+        if (clazz.isPrimitive() || AuditModel.class.isAssignableFrom(clazz)) {
+            return ObjectInputFilter.Status.ALLOWED;
+        }
+
+        ObjectInputFilter.Status status = spillPayloadFilter.checkInput(info);
+        return status == ObjectInputFilter.Status.UNDECIDED? ObjectInputFilter.Status.REJECTED : status;
+    }
+
+    /**
+     * Returns the number of audits waiting in the buffer.
+     */
+    public int getQueueDepth() {
+        return buffer != null? buffer.size() : 0;
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount.sum();
+    }
+
+    public long getPersistedCount() {
+        return persistedCount.sum();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    public long getSpilledCount() {
+        return spilledCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    public long getFlushCount() {
+        return flushCount.sum();
+    }
+
+    public double getAverageFlushMillis() {
+        long flushes = flushCount.sum();
+        return flushes > 0? flushNanos.sum() / (flushes * 1_000_000.0) : 0;
+    }
+
+    public double getMaxFlushMillis() {
+        return maxFlushNanos.get() / 1_000_000.0;
+    }
+
+    public void setAuditService(final AuditService<T> auditService) {
+        this.auditService = auditService;
+    }
+
+    public void setCapacity(final int capacity) {
+        this.capacity = capacity;
+    }
+
+    public void setBatchSize(final int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public void setFlushIntervalMillis(final long flushIntervalMillis) {
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    public void setShutdownTimeoutMillis(final long shutdownTimeoutMillis) {
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+    }
+
+    public void setBackpressurePolicy(final BackpressurePolicy backpressurePolicy) {
+        this.backpressurePolicy = backpressurePolicy;
+    }
+
+    public void setSpillFile(final Path spillFile) {
+        this.spillFile = spillFile;
+    }
+
+    /**
+     * Sets the filter for the classes of the fields of the spilled audits, using the
+     * {@link ObjectInputFilter.Config#createFilter(String)} pattern syntax. Classes not matched by the pattern are
+     * rejected.
+     */
+    public void setSpillPayloadFilter(final String pattern) {
+        this.spillPayloadFilter = ObjectInputFilter.Config.createFilter(pattern);
+    }
+
+}
@@ -28,16 +28,29 @@ import org.springframework.context.event.EventListener;
 public class AuditListener {
 
     private AuditService auditService;
+    private AsyncAuditSink auditSink;
     private Logger log = LoggerFactory.getLogger(AuditListener.class);
 
     @SuppressWarnings("unchecked") // cortiz, OK raw is data is needed.
     @EventListener
     public void onAudit(final AuditModel auditModel) {
         log.debug("Auditing {}", auditModel);
-        auditService.audit(auditModel);
+        if (auditSink != null) {
+            auditSink.submit(auditModel);
+        } else {
+            auditService.audit(auditModel);
+        }
     }
 
     public void setAuditService(final AuditService auditService) {
         this.auditService = auditService;
     }
+
+    /**
+     * Sets the sink used to persist the audits asynchronously, in batches. If not set the audits are persisted
+     * directly with the {@link AuditService}, in the thread that publishes the event.
+     */
+    public void setAuditSink(final AsyncAuditSink auditSink) {
+        this.auditSink = auditSink;
+    }
 }
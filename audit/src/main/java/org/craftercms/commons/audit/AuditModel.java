@@ -16,6 +16,7 @@
 
 package org.craftercms.commons.audit;
 
+import java.io.Serializable;
 import java.util.Date;
 import java.util.UUID;
 
@@ -23,7 +24,9 @@ import java.util.UUID;
 * Defines the minimum attributes needed in a generic audit entry.
 * @author Carlos Ortiz .
 **/
-public abstract class AuditModel {
+public abstract class AuditModel implements Serializable {
+
+    private static final long serialVersionUID = -7386225041735391276L;
 
     /**
      * Date when the audit was entry.
@@ -16,10 +16,8 @@
 
 package org.craftercms.commons.audit;
 
-import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +29,15 @@ import org.slf4j.LoggerFactory;
  */
 public class AuditReaper {
 
+    /**
+     * Default max number of audits deleted per chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+    /**
+     * Default pause between chunks, in milliseconds.
+     */
+    public static final long DEFAULT_PAUSE_BETWEEN_CHUNKS_MILLIS = 100;
+
     /**
      * Audit Service implementation.
      */
@@ -39,6 +46,27 @@ public class AuditReaper {
      * Maximum days to keep in the log.
      */
     protected int maxAuditAllowedDays;
+    /**
+     * Max number of audits deleted per chunk.
+     */
+    protected int chunkSize = DEFAULT_CHUNK_SIZE;
+    /**
+     * Pause between chunks, in milliseconds, so that the reaper doesn't hog the repository.
+     */
+    protected long pauseBetweenChunksMillis = DEFAULT_PAUSE_BETWEEN_CHUNKS_MILLIS;
+
+    /**
+     * Number of audits deleted by the last run.
+     */
+    private volatile long lastRunDeletedCount;
+    /**
+     * Number of chunks deleted by the last run.
+     */
+    private volatile int lastRunChunkCount;
+    /**
+     * Duration of the last run, in milliseconds.
+     */
+    private volatile long lastRunDurationMillis;
 
     /**
      * Logger of the class.
@@ -46,7 +74,10 @@ public class AuditReaper {
     private Logger log = LoggerFactory.getLogger(AuditReaper.class);
 
     /**
-     * <p>Search all logs to be deleted and send there id's to the audit service to be deleted.</p>
+     * <p>Deletes all audits older than the maximum days, in chunks of at most {@code chunkSize} audits, pausing
+     * {@code pauseBetweenChunksMillis} between them. Chunks only apply when the audit service overrides
+     * {@link AuditService#deleteAuditsBefore(Date, int)} with a range delete, otherwise all the audits are deleted
+     * in a single chunk.</p>
      * <p>If maximum days is set to  -1 nothing will deleted, 0 it delete all audits daily.</p>
      */
     public void scythe() {
@@ -54,36 +85,78 @@ public class AuditReaper {
         if (maxAuditAllowedDays >= 0) {
             Calendar calendar = Calendar.getInstance();
             calendar.add(Calendar.DAY_OF_MONTH, maxAuditAllowedDays * -1);
-            final Date since = new Date(calendar.getTimeInMillis());
-            final List<? extends AuditModel> toDelete = auditService.getAuditLogs(since, new Date());
-            if (toDelete != null) {
-                final List<String> idstoDel = getIdList(toDelete);
-                log.info("Deleting {} audit entries ", idstoDel.size());
-                if (toDelete != null) {
-                    auditService.deleteAudits(idstoDel);
-                }
-                log.info("Going to sleep now");
-            } else {
-                log.info("AuditService return null when ask to give audits with in this range {} {}", since,
-                    new Date());
+            final Date before = new Date(calendar.getTimeInMillis());
+
+            log.info("Deleting audit entries older than {}", before);
+
+            long start = System.currentTimeMillis();
+            long deleted = 0;
+            int chunks = 0;
+            try {
+                int chunkDeleted;
+                do {
+                    long chunkStart = System.currentTimeMillis();
+                    chunkDeleted = auditService.deleteAuditsBefore(before, chunkSize);
+                    if (chunkDeleted > 0) {
+                        deleted += chunkDeleted;
+                        chunks++;
+                        log.debug("Deleted chunk {} of {} audit entries in {} ms ({} so far)", chunks, chunkDeleted,
+                            System.currentTimeMillis() - chunkStart, deleted);
+                    }
+                } while (chunkDeleted >= chunkSize && pause());
+            } finally {
+                lastRunDeletedCount = deleted;
+                lastRunChunkCount = chunks;
+                lastRunDurationMillis = System.currentTimeMillis() - start;
             }
+
+            log.info("Deleted {} audit entries in {} chunks in {} ms", lastRunDeletedCount, lastRunChunkCount,
+                lastRunDurationMillis);
+            log.info("Going to sleep now");
         } else {
             log.info("Skipping scythe maxAuditAllowedDays is set to infinity");
         }
     }
 
     /**
-     * Gets the list of Id's of the given List of Models.
+     * Pauses between chunks.
      *
-     * @param toDelete List of AuditModels to get there Ids.
-     * @return A List of Ids.
+     * @return false if the thread was interrupted and the run should stop, true otherwise.
      */
-    private List<String> getIdList(final List<? extends AuditModel> toDelete) {
-        List<String> ids = new ArrayList<>(toDelete.size());
-        for (AuditModel auditModel : toDelete) {
-            ids.add(auditModel.getId());
+    private boolean pause() {
+        if (pauseBetweenChunksMillis > 0) {
+            try {
+                Thread.sleep(pauseBetweenChunksMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.info("Audit cleanup interrupted, stopping");
+                return false;
+            }
         }
-        return ids;
+        return true;
+    }
+
+    public long getLastRunDeletedCount() {
+        return lastRunDeletedCount;
+    }
+
+    public int getLastRunChunkCount() {
+        return lastRunChunkCount;
+    }
+
+    public long getLastRunDurationMillis() {
+        return lastRunDurationMillis;
+    }
+
+    public void setChunkSize(final int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be greater than 0");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    public void setPauseBetweenChunksMillis(final long pauseBetweenChunksMillis) {
+        this.pauseBetweenChunksMillis = pauseBetweenChunksMillis;
     }
 
     public void setAuditService(final AuditService<?> auditService) {
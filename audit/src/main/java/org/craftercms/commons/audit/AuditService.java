@@ -18,6 +18,7 @@ package org.craftercms.commons.audit;
 
 import java.util.Date;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Defines  Basic Audit Service.
@@ -47,6 +48,19 @@ public abstract class AuditService<T extends AuditModel> {
      */
     protected abstract void persistAudit(final T auditModel);
 
+    /**
+     * Defines the actual save of a batch of audits to the given audit repository. By default each audit is saved
+     * with {@link #persistAudit(AuditModel)}, implementations should override it to save the whole batch in a single
+     * operation when the repository supports it.
+     *
+     * @param auditModels Audits to be save.
+     */
+    protected void persistAudits(final List<T> auditModels) {
+        for (T auditModel : auditModels) {
+            persistAudit(auditModel);
+        }
+    }
+
     /**
      * Deletes all audits where its it is in the given List.
      *
@@ -54,6 +68,37 @@ public abstract class AuditService<T extends AuditModel> {
      */
     protected abstract void deleteAudits(final List<String> auditId);
 
+    /**
+     * Deletes up to {@code limit} audits logged before the given date. Meant to be called repeatedly until it
+     * returns less than {@code limit}, so that each call deletes a bounded number of audits.
+     * <p>Implementations should override it with a range delete in the repository (e.g. delete by date with a
+     * limit) that doesn't load the audits. The default implementation can't delete a range without loading it, so
+     * instead of reloading the audits on every call it loads all the audits before the date once, with
+     * {@link #getAuditLogs(Date, Date)}, and deletes them all with {@link #deleteAudits(List)} in batches of
+     * {@code limit} ids, returning the total (which can be more than {@code limit}).</p>
+     *
+     * @param before Date before which audits are deleted (excluding).
+     * @param limit  Max number of audits to delete, or per batch for the default implementation.
+     * @return The number of audits deleted, 0 if there are no more audits before the date.
+     */
+    protected int deleteAuditsBefore(final Date before, final int limit) {
+        List<T> audits = getAuditLogs(new Date(0), before);
+        if (audits == null) {
+            return 0;
+        }
+
+        List<String> ids = audits.stream()
+                                 .filter(audit -> audit.getAuditDate().before(before))
+                                 .map(AuditModel::getId)
+                                 .collect(Collectors.toList());
+        int batchSize = Math.max(limit, 1);
+        for (int i = 0; i < ids.size(); i += batchSize) {
+            deleteAudits(ids.subList(i, Math.min(i + batchSize, ids.size())));
+        }
+
+        return ids.size();
+    }
+
     /**
      * Returns all Audits starting the given date.
      *
@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.commons.audit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncAuditSinkTest {
+
+    private BlockingAuditService auditService;
+    private AsyncAuditSink<TestAuditModel> sink;
+    private Path spillFile;
+
+    @Before
+    public void before() throws Exception {
+        auditService = new BlockingAuditService();
+        spillFile = Files.createTempFile("audit-spill", ".bin");
+        Files.delete(spillFile);
+
+        sink = new AsyncAuditSink<>();
+        sink.setAuditService(auditService);
+        sink.setSpillFile(spillFile);
+    }
+
+    @After
+    public void after() throws Exception {
+        auditService.release.countDown();
+        sink.destroy();
+        Files.deleteIfExists(spillFile);
+    }
+
+    @Test
+    public void testPersistInBatches() throws Exception {
+        auditService.release.countDown();
+        sink.setBatchSize(100);
+        sink.setFlushIntervalMillis(10000);
+        sink.afterPropertiesSet();
+
+        for (int i = 0; i < 250; i++) {
+            sink.submit(new TestAuditModel());
+        }
+
+        sink.destroy();
+
+        assertEquals(250, auditService.countAuditLogs());
+        assertEquals(250, sink.getPersistedCount());
+        assertTrue(auditService.maxBatchSize <= 100);
+    }
+
+    @Test
+    public void testDropOldest() throws Exception {
+        sink.setCapacity(2);
+        sink.setBatchSize(1);
+        sink.setBackpressurePolicy(AsyncAuditSink.BackpressurePolicy.DROP_OLDEST);
+        sink.afterPropertiesSet();
+
+        sink.submit(new TestAuditModel());
+        // Wait for the flusher to be stuck persisting the first audit
+        assertTrue(auditService.started.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 5; i++) {
+            sink.submit(new TestAuditModel());
+        }
+
+        assertEquals(3, sink.getDroppedCount());
+
+        auditService.release.countDown();
+        sink.destroy();
+
+        assertEquals(3, auditService.countAuditLogs());
+    }
+
+    @Test
+    public void testSpill() throws Exception {
+        sink.setCapacity(2);
+        sink.setBatchSize(1);
+        sink.setBackpressurePolicy(AsyncAuditSink.BackpressurePolicy.SPILL);
+        sink.afterPropertiesSet();
+
+        sink.submit(new TestAuditModel());
+        assertTrue(auditService.started.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 5; i++) {
+            sink.submit(new TestAuditModel());
+        }
+
+        assertEquals(3, sink.getSpilledCount());
+
+        auditService.release.countDown();
+        sink.destroy();
+
+        assertEquals(6, auditService.countAuditLogs());
+        assertEquals(0, sink.getDroppedCount());
+    }
+
+    @Test
+    public void testUnserializableAuditDoesNotAffectOthers() throws Exception {
+        auditService.release.countDown();
+        sink.setBackpressurePolicy(AsyncAuditSink.BackpressurePolicy.SPILL);
+
+        TestAuditModel unserializable = new TestAuditModel();
+        unserializable.setPayload(new Object());
+
+        sink.spill(new TestAuditModel());
+        sink.spill(unserializable);
+        sink.spill(new TestAuditModel());
+        sink.replaySpilled();
+
+        assertEquals(2, auditService.countAuditLogs());
+        assertEquals(2, sink.getSpilledCount());
+        assertEquals(1, sink.getDroppedCount());
+    }
+
+    @Test
+    public void testExistingSpillFileIsNotTruncated() throws Exception {
+        auditService.release.countDown();
+        Files.write(spillFile, toRecord(new TestAuditModel()));
+
+        sink.spill(new TestAuditModel());
+        sink.replaySpilled();
+
+        assertEquals(2, auditService.countAuditLogs());
+        assertFalse(Files.exists(spillFile));
+    }
+
+    @Test
+    public void testOnlyAuditsAreReadFromSpillFile() throws Exception {
+        auditService.release.countDown();
+
+        HashMap<String, Object> notAnAudit = new HashMap<>();
+        notAnAudit.put("key", "value");
+
+        TestAuditModel withUnknownPayload = new TestAuditModel();
+        withUnknownPayload.setPayload(new File("audit"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(toRecord(notAnAudit));
+        bytes.write(toRecord(withUnknownPayload));
+        bytes.write(toRecord(new TestAuditModel()));
+        Files.write(spillFile, bytes.toByteArray());
+
+        sink.replaySpilled();
+
+        assertEquals(1, auditService.countAuditLogs());
+        assertEquals(2, sink.getDroppedCount());
+    }
+
+    @Test
+    public void testBlockedSubmitIsReleasedOnShutdown() throws Exception {
+        sink.setCapacity(1);
+        sink.setBatchSize(1);
+        sink.setFlushIntervalMillis(50);
+        sink.afterPropertiesSet();
+
+        sink.submit(new TestAuditModel());
+        assertTrue(auditService.started.await(5, TimeUnit.SECONDS));
+        sink.submit(new TestAuditModel());
+
+        // The buffer is full, so this one waits
+        Thread publisher = new Thread(() -> sink.submit(new TestAuditModel()));
+        publisher.start();
+
+        sink.running = false;
+        auditService.release.countDown();
+        publisher.join(5000);
+        sink.destroy();
+
+        assertFalse(publisher.isAlive());
+        assertEquals(3, auditService.countAuditLogs());
+    }
+
+    @Test
+    public void testSubmitAfterShutdownIsPersisted() throws Exception {
+        auditService.release.countDown();
+        sink.afterPropertiesSet();
+        sink.destroy();
+
+        sink.submit(new TestAuditModel());
+
+        assertEquals(1, auditService.countAuditLogs());
+        assertEquals(0, sink.getQueueDepth());
+    }
+
+    private static byte[] toRecord(final Object object) throws Exception {
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+            out.writeObject(object);
+        }
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(record)) {
+            out.writeInt(serialized.size());
+            serialized.writeTo(out);
+        }
+
+        return record.toByteArray();
+    }
+
+    private static class BlockingAuditService extends TestAuditServiceImpl<TestAuditModel> {
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile int maxBatchSize;
+
+        @Override
+        protected void persistAudits(final List<TestAuditModel> auditModels) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            maxBatchSize = Math.max(maxBatchSize, auditModels.size());
+            synchronized (this) {
+                super.persistAudits(auditModels);
+            }
+        }
+
+    }
+
+}
@@ -18,6 +18,8 @@ package org.craftercms.commons.audit;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -57,9 +59,45 @@ public class AuditReaperTest {
         auditService.audit(new TestAuditModel("3001-09-20 12:01:00"));
         reaper.setMaxAuditAllowedDays(365);
         reaper.scythe();
+        assertEquals(2, auditService.countAuditLogs());
+        assertEquals(1, reaper.getLastRunDeletedCount());
+    }
+
+    @Test
+    public void testScytheDeletesInChunks() throws Exception {
+        auditService = new RangeDeleteAuditService();
+        reaper.setAuditService(auditService);
+        for (int i = 1; i <= 5; i++) {
+            auditService.audit(new TestAuditModel("1984-09-0" + i + " 12:01:00"));
+        }
+        auditService.audit(new TestAuditModel("3001-09-20 12:01:00"));
+        reaper.setMaxAuditAllowedDays(30);
+        reaper.setChunkSize(2);
+        reaper.setPauseBetweenChunksMillis(0);
+        reaper.scythe();
         assertEquals(1, auditService.countAuditLogs());
+        assertEquals(5, reaper.getLastRunDeletedCount());
+        assertEquals(3, reaper.getLastRunChunkCount());
     }
 
+    @Test
+    public void testScytheLoadsAuditsOnceWithoutRangeDelete() throws Exception {
+        CountingAuditService countingService = new CountingAuditService();
+        for (int i = 1; i <= 5; i++) {
+            countingService.audit(new TestAuditModel("1984-09-0" + i + " 12:01:00"));
+        }
+        countingService.audit(new TestAuditModel("3001-09-20 12:01:00"));
+        reaper.setAuditService(countingService);
+        reaper.setMaxAuditAllowedDays(30);
+        reaper.setChunkSize(2);
+        reaper.setPauseBetweenChunksMillis(0);
+        reaper.scythe();
+        assertEquals(1, countingService.countAuditLogs());
+        assertEquals(5, reaper.getLastRunDeletedCount());
+        assertEquals(3, countingService.deleteCalls);
+        // Once to delete all the audits, once more to find there are no more
+        assertEquals(2, countingService.loadCalls);
+    }
 
     @Test
     public void testScytheDeleteNon() throws Exception {
@@ -83,4 +121,41 @@ public class AuditReaperTest {
         assertEquals(3, auditService.countAuditLogs());
     }
 
+    /**
+     * Deletes a range of audits without loading them, like the repository based services.
+     */
+    private static class RangeDeleteAuditService extends TestAuditServiceImpl<TestAuditModel> {
+
+        @Override
+        protected int deleteAuditsBefore(final Date before, final int limit) {
+            List<String> ids = memoryPersistence.values().stream()
+                                                .filter(audit -> audit.getAuditDate().before(before))
+                                                .limit(limit)
+                                                .map(AuditModel::getId)
+                                                .collect(Collectors.toList());
+            ids.forEach(memoryPersistence::remove);
+            return ids.size();
+        }
+
+    }
+
+    private static class CountingAuditService extends TestAuditServiceImpl<TestAuditModel> {
+
+        int loadCalls;
+        int deleteCalls;
+
+        @Override
+        public List<TestAuditModel> getAuditLogs(final Date from, final Date to) {
+            loadCalls++;
+            return super.getAuditLogs(from, to);
+        }
+
+        @Override
+        public void deleteAudits(final List auditId) {
+            deleteCalls++;
+            super.deleteAudits(auditId);
+        }
+
+    }
+
 }
\ No newline at end of file
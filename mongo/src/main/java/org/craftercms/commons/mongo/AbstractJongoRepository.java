@@ -17,9 +17,12 @@
 package org.craftercms.commons.mongo;
 
 import com.mongodb.BasicDBObject;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
 import com.mongodb.MongoException;
 import com.mongodb.gridfs.GridFS;
 import com.mongodb.gridfs.GridFSDBFile;
+import com.mongodb.gridfs.GridFSFile;
 import com.mongodb.gridfs.GridFSInputFile;
 
 import java.io.FileNotFoundException;
@@ -29,15 +32,25 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.apache.commons.collections4.keyvalue.DefaultKeyValue;
 import org.apache.commons.io.FileExistsException;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.bson.types.ObjectId;
 import org.jongo.Find;
 import org.jongo.FindOne;
 import org.jongo.Jongo;
 import org.jongo.MongoCollection;
+import org.jongo.MongoCursor;
 import org.jongo.Update;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,11 +78,20 @@ public abstract class AbstractJongoRepository<T> implements CrudRepository<T> {
 
     private static final Logger log = LoggerFactory.getLogger(AbstractJongoRepository.class);
 
+    private static final String REGEX_SPECIAL_CHARS = "\\^$.|?*+()[]{}";
+
+    /**
+     * Field names (or dotted paths) that can be safely put in a query template: no quotes, placeholders or
+     * operators.
+     */
+    private static final Pattern FIELD_NAME_PATTERN = Pattern.compile("[A-Za-z0-9_-]+(\\.[A-Za-z0-9_-]+)*");
+
     protected Class<? extends T> clazz;
     protected Jongo jongo;
     protected String collectionName;
     protected JongoQueries queries;
     protected GridFS gridfs;
+    protected boolean textFileNameSearch;
 
     public void init() throws Exception {
         //Thru pure magic get parameter Class .
@@ -144,7 +166,7 @@ public abstract class AbstractJongoRepository<T> implements CrudRepository<T> {
     @Override
     public void save(final String query, final Object... queryParams) throws MongoDataException {
         try {
-            getCollection().insert(query, queryParams);
+            timed(query, () -> getCollection().insert(query, queryParams));
         } catch (com.mongodb.DuplicateKeyException ex) {
             String msg = "Duplicate key for save query " + query + " of type " + clazz.getName() +
                     " with params " + Arrays.toString(queryParams);
@@ -199,7 +221,7 @@ public abstract class AbstractJongoRepository<T> implements CrudRepository<T> {
             if (upsert) {
                 update.upsert();
             }
-            update.with(modifier);
+            timed(modifier, () -> update.with(modifier));
         } catch (com.mongodb.DuplicateKeyException ex) {
             String msg = "Duplicate key for update with id='" + id + "', modifier=" + modifier + ", multi=" +
                     multi + ", upsert=" + upsert;
@@ -223,7 +245,7 @@ public abstract class AbstractJongoRepository<T> implements CrudRepository<T> {
             if (upsert) {
                 update.upsert();
             }
-            update.with(modifier, params);
+            timed(modifier, () -> update.with(modifier, params));
         } catch (com.mongodb.DuplicateKeyException ex) {
             String msg = "Duplicate key for update with id='" + id + "', modifier=" + modifier + ", multi=" +
                     multi + ", upsert=" + upsert + ", params" + Arrays.toString(params);
@@ -251,7 +273,7 @@ public abstract class AbstractJongoRepository<T> implements CrudRepository<T> {
     @Override
     public long count(String query) throws MongoDataException {
         try {
-            return getCollection().count(query);
+            return timed(query, () -> getCollection().count(query));
         } catch (MongoException ex) {
             String msg = "Unable to count documents of type " + clazz.getName() + " that match the " +
                     "query " + query;
@@ -263,7 +285,7 @@ public abstract class AbstractJongoRepository<T> implements CrudRepository<T> {
     @Override
     public long count(String query, Object... queryParams) throws MongoDataException {
         try {
-            return getCollection().count(query, queryParams);
+            return timed(query, () -> getCollection().count(query, queryParams));
         } catch (MongoException ex) {
             String msg = "Unable to count documents of type " + clazz.getName() + " that match the " +
                     "query " + query +
@@ -287,7 +309,7 @@ public abstract class AbstractJongoRepository<T> implements CrudRepository<T> {
     @Override
     public Iterable<T> find(final String query) throws MongoDataException {
         try {
-            return returnList(getCollection().find(query));
+            return timed(query, () -> returnList(getCollection().find(query)));
         } catch (MongoException ex) {
             String msg = "Unable to find documents by query " + query + " of type " + clazz.getName();
             log.error(msg, ex);
@@ -298,7 +320,31 @@ public abstract class AbstractJongoRepository<T> implements CrudRepository<T> {
     @Override
     public Iterable<T> find(final String query, Object... queryParams) throws MongoDataException {
         try {
-            return returnList(getCollection().find(query, queryParams));
+            return timed(query, () -> returnList(getCollection().find(query, queryParams)));
+        } catch (MongoException ex) {
+            String msg = "Unable to find documents by query " + query + " of type " + clazz.getName() +
+                    " with params " + Arrays.toString(queryParams);
+            log.error(msg, ex);
+            throw new MongoDataException(msg, ex);
+        }
+    }
+
+    @Override
+    public Stream<T> findStream(final String query, final String projection, final int batchSize,
+                                final Object... queryParams) throws MongoDataException {
+        try {
+            // Only the opening of the cursor is timed, the documents are fetched while the stream is consumed
+            return stream(timed(query, () -> {
+                Find find = getCollection().find(query, queryParams);
+                if (StringUtils.isNotEmpty(projection)) {
+                    find.projection(projection);
+                }
+                if (batchSize > 0) {
+                    find.with(cursor -> cursor.batchSize(batchSize));
+                }
+
+                return find.as(clazz);
+            }));
         } catch (MongoException ex) {
             String msg = "Unable to find documents by query " + query + " of type " + clazz.getName() +
                     " with params " + Arrays.toString(queryParams);
@@ -307,10 +353,62 @@ public abstract class AbstractJongoRepository<T> implements CrudRepository<T> {
         }
     }
 
+    @Override
+    public void findEach(final String query, final String projection, final int batchSize,
+                         final Consumer<? super T> callback, final Object... queryParams) throws MongoDataException {
+        try (Stream<T> stream = findStream(query, projection, batchSize, queryParams)) {
+            stream.forEach(callback);
+        } catch (UncheckedMongoDataException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    @Override
+    public List<T> findPageAfter(final String query, final String keyField, final boolean ascending,
+                                 final Object lastKey, final int pageSize, final Object... queryParams)
+            throws MongoDataException {
+        if (keyField == null || !FIELD_NAME_PATTERN.matcher(keyField).matches()) {
+            throw new IllegalArgumentException("Given key field " + keyField + " is not a valid field name");
+        }
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be greater than 0");
+        }
+
+        String pageQuery = query;
+        Object[] pageParams = queryParams;
+        if (lastKey != null) {
+            // Params are positional, so the key param goes after the ones of the original query
+            pageQuery = "{$and: [" + query + ", {\"" + keyField + "\": {" + (ascending? "$gt" : "$lt") + ": #}}]}";
+            pageParams = ArrayUtils.add(queryParams, lastKey);
+        }
+
+        try {
+            return timed(query, () -> {
+                Find find = getCollection().find(pageQuery, pageParams)
+                                           .sort(createSortQuery(List.of(new DefaultKeyValue<>(keyField, ascending))))
+                                           .limit(pageSize);
+
+                List<T> page = new ArrayList<>(pageSize);
+                try (Stream<T> stream = stream(find.as(clazz))) {
+                    stream.forEach(page::add);
+                }
+
+                return page;
+            });
+        } catch (UncheckedMongoDataException ex) {
+            throw ex.getCause();
+        } catch (MongoException ex) {
+            String msg = "Unable to find page of documents by query " + query + " of type " + clazz.getName() +
+                    " with params " + Arrays.toString(queryParams) + " after " + keyField + "=" + lastKey;
+            log.error(msg, ex);
+            throw new MongoDataException(msg, ex);
+        }
+    }
+
     @Override
     public T findOne(final String query) throws MongoDataException {
         try {
-            return returnSimple(getCollection().findOne(query));
+            return timed(query, () -> returnSimple(getCollection().findOne(query)));
         } catch (MongoException ex) {
             String msg = "Unable to find document by query " + query + " of type " + clazz.getName();
             log.error(msg, ex);
@@ -321,7 +419,7 @@ public abstract class AbstractJongoRepository<T> implements CrudRepository<T> {
     @Override
     public T findOne(final String query, final Object... queryParams) throws MongoDataException {
         try {
-            return getCollection().findOne(query, queryParams).as(clazz);
+            return timed(query, () -> getCollection().findOne(query, queryParams).as(clazz));
         } catch (MongoException ex) {
             String msg = "Unable to find document by query " + query + " of type " + clazz.getName() +
                     " with params " + Arrays.toString(queryParams);
@@ -333,7 +431,7 @@ public abstract class AbstractJongoRepository<T> implements CrudRepository<T> {
     @Override
     public void remove(final String query, final Object... queryParams) throws MongoDataException {
         try {
-            getCollection().remove(query, queryParams);
+            timed(query, () -> getCollection().remove(query, queryParams));
         } catch (MongoException ex) {
             String msg = "Unable to remove document by query " + query + " of type " + clazz.getName() +
                     " with params " + Arrays.toString(queryParams);
@@ -363,7 +461,7 @@ public abstract class AbstractJongoRepository<T> implements CrudRepository<T> {
     @Override
     public void remove(final String query) throws MongoDataException {
         try {
-            getCollection().remove(query);
+            timed(query, () -> getCollection().remove(query));
         } catch (MongoException ex) {
             String msg = "Unable to remove document by query " + query + " of type " + clazz.getName();
             log.error(msg, ex);
@@ -480,15 +578,71 @@ public abstract class AbstractJongoRepository<T> implements CrudRepository<T> {
 
     @Override
     public List<FileInfo> listFilesByName(final String filename){
-        final List<GridFSDBFile> files = gridfs.find(new BasicDBObject("filename",new BasicDBObject("$regex",
-                ".*"+filename+".*")));
-        final ArrayList<FileInfo> toReturn = new ArrayList<FileInfo>();
-        for (GridFSDBFile file : files) {
-            toReturn.add(new FileInfo(file,false));
+        return listFilesByName(filename, 0, 0);
+    }
+
+    @Override
+    public List<FileInfo> listFilesByName(final String filename, final int skip, final int limit) {
+        DBObject query;
+        if (textFileNameSearch) {
+            query = new BasicDBObject("$text", new BasicDBObject("$search", filename));
+        } else {
+            // An unanchored regex can't use a range of the GridFS {filename, uploadDate} index, but it's matched
+            // against the index keys instead of the documents, and since the files are sorted by name the scan stops
+            // at the limit
+            query = new BasicDBObject("filename", new BasicDBObject("$regex", escapeRegex(filename)));
+        }
+        return listFiles(query, skip, limit);
+    }
+
+    @Override
+    public List<FileInfo> listFilesByNamePrefix(final String prefix, final int skip, final int limit) {
+        // An anchored regex without special characters is resolved with a range scan of the GridFS
+        // {filename, uploadDate} index
+        return listFiles(new BasicDBObject("filename", new BasicDBObject("$regex", "^" + escapeRegex(prefix))),
+                         skip, limit);
+    }
+
+    protected List<FileInfo> listFiles(final DBObject query, final int skip, final int limit) {
+        final List<FileInfo> toReturn = new ArrayList<>(limit > 0? limit : 10);
+        try (DBCursor cursor = gridfs.getFileList(query, new BasicDBObject("filename", 1))) {
+            if (skip > 0) {
+                cursor.skip(skip);
+            }
+            if (limit > 0) {
+                cursor.limit(limit);
+            }
+            for (DBObject file : cursor) {
+                toReturn.add(new FileInfo((GridFSFile) file, false));
+            }
         }
         return toReturn;
     }
 
+    /**
+     * Creates the text index on the file names needed by {@link #listFilesByName(String, int, int)} when
+     * {@link #textFileNameSearch} is enabled. The prefix and substring lookups use the index that GridFS already
+     * creates, so nothing is created otherwise. Creating an index that already exists does nothing, but building a
+     * new one can take a while on large stores, so this is never called by the repository itself: it's meant to be
+     * called once (e.g. as an init method) by applications that have write access to the database.
+     */
+    public void ensureIndexes() {
+        if (textFileNameSearch) {
+            gridfs.getFilesCollection().createIndex(new BasicDBObject("filename", "text"));
+        }
+    }
+
+    protected String escapeRegex(final String str) {
+        StringBuilder escaped = new StringBuilder(str.length() + 8);
+        for (char c : str.toCharArray()) {
+            if (REGEX_SPECIAL_CHARS.indexOf(c) >= 0) {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
     @Override
     public void removeByStringId(final String id) throws MongoDataException {
         try {
@@ -500,6 +654,16 @@ public abstract class AbstractJongoRepository<T> implements CrudRepository<T> {
         }
     }
 
+    @Override
+    public BulkWriter<T> bulkWrite(final boolean ordered) {
+        return bulkWrite(ordered, BulkWriter.DEFAULT_BATCH_SIZE);
+    }
+
+    @Override
+    public BulkWriter<T> bulkWrite(final boolean ordered, final int batchSize) {
+        return new BulkWriter<>(getCollection().getDBCollection(), jongo.getMapper(), ordered, batchSize);
+    }
+
     protected GridFSDBFile validateObject(final String storeName) throws FileNotFoundException {
         GridFSDBFile file = gridfs.findOne(storeName);
         if (file == null) {
@@ -539,12 +703,76 @@ public abstract class AbstractJongoRepository<T> implements CrudRepository<T> {
         return (Iterable<T>)find.as(clazz);
     }
 
+    /**
+     * Wraps the given cursor in a Stream that closes the cursor when it's exhausted or when the Stream is closed.
+     * A {@link MongoException} thrown while iterating the cursor closes it and is rethrown as a
+     * {@link UncheckedMongoDataException}.
+     *
+     * @param cursor the Jongo cursor
+     * @return a sequential Stream with the documents of the cursor.
+     */
+    protected Stream<T> stream(final MongoCursor<? extends T> cursor) {
+        Iterator<T> iterator = new Iterator<T>() {
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    if (cursor.hasNext()) {
+                        return true;
+                    }
+                } catch (RuntimeException ex) {
+                    IOUtils.closeQuietly(cursor);
+                    throw mapIterationError(ex);
+                }
+
+                IOUtils.closeQuietly(cursor);
+                return false;
+            }
+
+            @Override
+            public T next() {
+                try {
+                    return cursor.next();
+                } catch (RuntimeException ex) {
+                    IOUtils.closeQuietly(cursor);
+                    throw mapIterationError(ex);
+                }
+            }
+
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                            .onClose(() -> IOUtils.closeQuietly(cursor));
+    }
+
+    /**
+     * Maps a {@link MongoException} thrown while iterating a cursor to a {@link UncheckedMongoDataException}, like
+     * the errors of the other operations are mapped to {@link MongoDataException}. Other errors are returned as is.
+     */
+    protected RuntimeException mapIterationError(final RuntimeException ex) {
+        if (ex instanceof MongoException) {
+            String msg = "Unable to iterate documents of type " + clazz.getName();
+            log.error(msg, ex);
+            return new UncheckedMongoDataException(new MongoDataException(msg, ex));
+        }
+        return ex;
+    }
+
     @Autowired
     public void setJongo(@Lazy final Jongo jongo) {
         this.jongo = jongo;
         this.gridfs = new GridFS(jongo.getDatabase());
     }
 
+    /**
+     * Sets if {@link #listFilesByName(String, int, int)} should use a text index on the file names, which matches
+     * whole words of the names (with stemming) instead of any substring, but doesn't need to scan all the names.
+     * The index must exist, see {@link #ensureIndexes()}.
+     */
+    public void setTextFileNameSearch(final boolean textFileNameSearch) {
+        this.textFileNameSearch = textFileNameSearch;
+    }
+
     public void setQueries(final JongoQueries queries) {
         this.queries = queries;
     }
@@ -558,16 +786,70 @@ public abstract class AbstractJongoRepository<T> implements CrudRepository<T> {
      */
     protected String getQueryFor(final String key) {
         log.trace("Trying to get query for {} ", key);
-        String query = queries.get(key);
-        log.trace("Query found {} for key {}", query, key);
+        String query = queries.getNormalized(key);
         if (query == null) {
-            log.error("Query for {} key does not exist", key);
-            throw new IllegalArgumentException("Query for key " + key + " does not exist");
-        } else if (StringUtils.isBlank(query)) {
-            log.error("Query for key {} can't be blank or be only whitespace", key);
-            throw new IllegalArgumentException("Query for key " + key + " can't be blank or be only whitespace");
+            // Not registered, or the queries haven't been initialized
+            String rawQuery = queries.get(key);
+            if (rawQuery == null) {
+                log.error("Query for {} key does not exist", key);
+                throw new IllegalArgumentException("Query for key " + key + " does not exist");
+            } else if (StringUtils.isBlank(rawQuery)) {
+                log.error("Query for key {} can't be blank or be only whitespace", key);
+                throw new IllegalArgumentException("Query for key " + key + " can't be blank or be only whitespace");
+            }
+            query = JongoQueries.normalize(rawQuery);
         }
-        return query.trim().replaceAll("\\s+", " ");
+        log.trace("Query found {} for key {}", query, key);
+        return query;
+    }
+
+    /**
+     * Executes the given query, recording its execution time (and whether it failed) if it's one of the registered
+     * {@link JongoQueries}.
+     *
+     * @param query     the query that is executed.
+     * @param execution the execution of the query.
+     * @return the result of the execution.
+     */
+    protected <R> R timed(final String query, final Supplier<R> execution) {
+        long start = System.nanoTime();
+        try {
+            return execution.get();
+        } catch (RuntimeException ex) {
+            recordQueryError(query);
+            throw ex;
+        } finally {
+            recordQueryExecution(query, start);
+        }
+    }
+
+    /**
+     * Records the execution time of the given query, if it's one of the registered {@link JongoQueries}.
+     *
+     * @param query      the query that was executed.
+     * @param startNanos the value of {@link System#nanoTime()} when the execution started.
+     */
+    protected void recordQueryExecution(final String query, final long startNanos) {
+        QueryStats stats = getQueryStats(query);
+        if (stats != null) {
+            stats.recordExecution(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Records a failed execution of the given query, if it's one of the registered {@link JongoQueries}.
+     *
+     * @param query the query that failed.
+     */
+    protected void recordQueryError(final String query) {
+        QueryStats stats = getQueryStats(query);
+        if (stats != null) {
+            stats.recordError();
+        }
+    }
+
+    protected QueryStats getQueryStats(final String query) {
+        return queries != null? queries.getStatsForQuery(query) : null;
     }
 
     /**
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.mongo;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking version of {@link CrudRepository}. Every method returns right away with a {@link CompletableFuture}
+ * that's completed with the result of the operation, or completed exceptionally with the
+ * {@link MongoDataException} (or {@link DuplicateKeyException}) the blocking operation would have thrown.
+ * <p>
+ * Finds return fully loaded lists instead of lazy iterables, so that iterating the results doesn't block.
+ * Queries are the same templates used by {@link CrudRepository}, and can be looked up by name with
+ * {@link #getQueryFor(String)}.
+ * </p>
+ *
+ * @param <T> the type of the documents of the collection
+ * @since 4.2.0
+ */
+@SuppressWarnings("unchecked")
+public interface AsyncCrudRepository<T> {
+
+    /**
+     * Gets the query template registered in the {@link JongoQueries} with the given name.
+     *
+     * @param key Name of the query.
+     * @return the normalized query.
+     * @throws IllegalArgumentException if the query does not exist or is blank.
+     */
+    String getQueryFor(String key);
+
+    CompletableFuture<Void> insert(T document);
+
+    CompletableFuture<Void> insert(T... documents);
+
+    CompletableFuture<Void> save(T document);
+
+    CompletableFuture<Void> update(String id, Object updateObject);
+
+    CompletableFuture<Void> update(String id, String modifier, boolean multi, boolean upsert, Object... params);
+
+    CompletableFuture<Long> count();
+
+    CompletableFuture<Long> count(String query, Object... queryParams);
+
+    CompletableFuture<List<T>> find(String query, Object... queryParams);
+
+    CompletableFuture<T> findOne(String query, Object... queryParams);
+
+    CompletableFuture<T> findById(String id);
+
+    CompletableFuture<Void> remove(String query, Object... queryParams);
+
+    CompletableFuture<Void> removeById(String id);
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.mongo;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.mongodb.MongoException;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link AsyncCrudRepository} that runs the operations of an existing {@link AbstractJongoRepository} in the
+ * given {@link Executor}, so that callers (e.g. request threads) aren't blocked during Mongo stalls. The executor
+ * should be bounded and sized for the expected Mongo concurrency.
+ *
+ * @param <T> the type of the documents of the collection
+ * @since 4.2.0
+ */
+@SuppressWarnings("unchecked")
+public class AsyncJongoRepository<T> implements AsyncCrudRepository<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncJongoRepository.class);
+
+    protected final AbstractJongoRepository<T> repository;
+    protected final Executor executor;
+
+    public AsyncJongoRepository(final AbstractJongoRepository<T> repository, final Executor executor) {
+        this.repository = repository;
+        this.executor = executor;
+    }
+
+    @Override
+    public String getQueryFor(final String key) {
+        return repository.getQueryFor(key);
+    }
+
+    @Override
+    public CompletableFuture<Void> insert(final T document) {
+        return run(() -> repository.insert(document));
+    }
+
+    @Override
+    public CompletableFuture<Void> insert(final T... documents) {
+        return run(() -> repository.insert(documents));
+    }
+
+    @Override
+    public CompletableFuture<Void> save(final T document) {
+        return run(() -> repository.save(document));
+    }
+
+    @Override
+    public CompletableFuture<Void> update(final String id, final Object updateObject) {
+        return run(() -> repository.update(id, updateObject));
+    }
+
+    @Override
+    public CompletableFuture<Void> update(final String id, final String modifier, final boolean multi,
+                                         final boolean upsert, final Object... params) {
+        return run(() -> repository.update(id, modifier, multi, upsert, params));
+    }
+
+    @Override
+    public CompletableFuture<Long> count() {
+        return supply(repository::count);
+    }
+
+    @Override
+    public CompletableFuture<Long> count(final String query, final Object... queryParams) {
+        return supply(() -> repository.count(query, queryParams));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> find(final String query, final Object... queryParams) {
+        return supply(() -> {
+            List<T> results = new ArrayList<>();
+            Iterable<T> iterable = repository.find(query, queryParams);
+            if (iterable == null) {
+                return results;
+            }
+
+            // The iterable is a lazy cursor, so errors can happen while iterating and it needs to be closed
+            try {
+                iterable.forEach(results::add);
+            } catch (MongoException e) {
+                String msg = "Unable to iterate documents by query " + query + " on collection " +
+                             repository.collectionName + " with params " + Arrays.toString(queryParams);
+                log.error(msg, e);
+                throw new MongoDataException(msg, e);
+            } finally {
+                if (iterable instanceof Closeable) {
+                    IOUtils.closeQuietly((Closeable) iterable);
+                }
+            }
+
+            return results;
+        });
+    }
+
+    @Override
+    public CompletableFuture<T> findOne(final String query, final Object... queryParams) {
+        return supply(() -> repository.findOne(query, queryParams));
+    }
+
+    @Override
+    public CompletableFuture<T> findById(final String id) {
+        return supply(() -> repository.findById(id));
+    }
+
+    @Override
+    public CompletableFuture<Void> remove(final String query, final Object... queryParams) {
+        return run(() -> repository.remove(query, queryParams));
+    }
+
+    @Override
+    public CompletableFuture<Void> removeById(final String id) {
+        return run(() -> repository.removeById(id));
+    }
+
+    protected CompletableFuture<Void> run(final MongoRunnable runnable) {
+        return supply(() -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    protected <R> CompletableFuture<R> supply(final MongoCallable<R> callable) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(callable.call());
+                } catch (MongoException e) {
+                    // Shouldn't escape the repository, but keep the documented contract if it does
+                    String msg = "Unable to execute Mongo operation on collection " + repository.collectionName;
+                    log.error(msg, e);
+                    future.completeExceptionally(new MongoDataException(msg, e));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            String msg = "Unable to schedule Mongo operation on collection " + repository.collectionName;
+            log.error(msg, e);
+            future.completeExceptionally(new MongoDataException(msg, e));
+        }
+
+        return future;
+    }
+
+    /**
+     * Blocking repository operation that returns a value.
+     */
+    @FunctionalInterface
+    protected interface MongoCallable<R> {
+
+        R call() throws MongoDataException;
+
+    }
+
+    /**
+     * Blocking repository operation that doesn't return a value.
+     */
+    @FunctionalInterface
+    protected interface MongoRunnable {
+
+        void run() throws MongoDataException;
+
+    }
+
+}
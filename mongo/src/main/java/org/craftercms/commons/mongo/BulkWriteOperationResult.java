@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.mongo;
+
+/**
+ * Result of a single operation of a {@link BulkWriter}.
+ *
+ * @since 4.2.0
+ */
+public class BulkWriteOperationResult {
+
+    public enum OperationType {
+        INSERT, UPDATE, UPSERT, REMOVE
+    }
+
+    public enum Status {
+        /**
+         * The operation was executed successfully.
+         */
+        SUCCESS,
+        /**
+         * The operation was executed and failed.
+         */
+        FAILED,
+        /**
+         * The operation was not executed because a previous operation of an ordered bulk write failed.
+         */
+        NOT_EXECUTED
+    }
+
+    private final int index;
+    private final OperationType type;
+    private final Status status;
+    private final Object upsertedId;
+    private final int errorCode;
+    private final String errorMessage;
+
+    public BulkWriteOperationResult(final int index, final OperationType type, final Status status,
+                                    final Object upsertedId, final int errorCode, final String errorMessage) {
+        this.index = index;
+        this.type = type;
+        this.status = status;
+        this.upsertedId = upsertedId;
+        this.errorCode = errorCode;
+        this.errorMessage = errorMessage;
+    }
+
+    /**
+     * Returns the index of the operation, in the order it was added to the {@link BulkWriter}.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public OperationType getType() {
+        return type;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isSuccess() {
+        return status == Status.SUCCESS;
+    }
+
+    /**
+     * Returns the id of the document inserted by an upsert, or null if the upsert matched an existing document.
+     */
+    public Object getUpsertedId() {
+        return upsertedId;
+    }
+
+    /**
+     * Returns the Mongo error code if the operation failed, 0 otherwise.
+     */
+    public int getErrorCode() {
+        return errorCode;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkWriteOperationResult{" +
+               "index=" + index +
+               ", type=" + type +
+               ", status=" + status +
+               ", upsertedId=" + upsertedId +
+               ", errorCode=" + errorCode +
+               ", errorMessage='" + errorMessage + '\'' +
+               '}';
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.mongo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.mongodb.BulkWriteError;
+import com.mongodb.BulkWriteResult;
+import com.mongodb.BulkWriteUpsert;
+
+import org.craftercms.commons.mongo.BulkWriteOperationResult.OperationType;
+import org.craftercms.commons.mongo.BulkWriteOperationResult.Status;
+
+/**
+ * Accumulated results of all the batches flushed by a {@link BulkWriter}.
+ *
+ * @since 4.2.0
+ */
+public class BulkWriteReport {
+
+    private final List<BulkWriteOperationResult> results = new ArrayList<>();
+    private int insertedCount;
+    private int matchedCount;
+    private int modifiedCount;
+    private int removedCount;
+    private int upsertedCount;
+    private int failedCount;
+
+    /**
+     * Returns the result of every operation flushed so far, in the order the operations were added.
+     */
+    public List<BulkWriteOperationResult> getResults() {
+        return Collections.unmodifiableList(results);
+    }
+
+    public int getInsertedCount() {
+        return insertedCount;
+    }
+
+    public int getMatchedCount() {
+        return matchedCount;
+    }
+
+    public int getModifiedCount() {
+        return modifiedCount;
+    }
+
+    public int getRemovedCount() {
+        return removedCount;
+    }
+
+    public int getUpsertedCount() {
+        return upsertedCount;
+    }
+
+    /**
+     * Returns the number of operations that failed or were not executed.
+     */
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    public boolean hasErrors() {
+        return failedCount > 0;
+    }
+
+    int size() {
+        return results.size();
+    }
+
+    void addBatch(final List<OperationType> types, final BulkWriteResult result, final List<BulkWriteError> errors,
+                  final boolean ordered) {
+        int offset = results.size();
+        Map<Integer, BulkWriteError> errorsByIndex = new HashMap<>();
+        int lastExecuted = types.size() - 1;
+
+        for (BulkWriteError error : errors) {
+            errorsByIndex.put(error.getIndex(), error);
+            if (ordered) {
+                lastExecuted = Math.min(lastExecuted, error.getIndex());
+            }
+        }
+
+        Map<Integer, Object> upsertedIds = new HashMap<>();
+        if (result != null && result.isAcknowledged()) {
+            insertedCount += result.getInsertedCount();
+            matchedCount += result.getMatchedCount();
+            modifiedCount += result.getModifiedCount();
+            removedCount += result.getRemovedCount();
+
+            for (BulkWriteUpsert upsert : result.getUpserts()) {
+                upsertedIds.put(upsert.getIndex(), upsert.getId());
+            }
+            upsertedCount += upsertedIds.size();
+        }
+
+        for (int i = 0; i < types.size(); i++) {
+            BulkWriteError error = errorsByIndex.get(i);
+            if (error != null) {
+                results.add(new BulkWriteOperationResult(offset + i, types.get(i), Status.FAILED, null,
+                                                         error.getCode(), error.getMessage()));
+                failedCount++;
+            } else if (i > lastExecuted) {
+                addNotExecuted(types.get(i));
+            } else {
+                results.add(new BulkWriteOperationResult(offset + i, types.get(i), Status.SUCCESS,
+                                                         upsertedIds.get(i), 0, null));
+            }
+        }
+    }
+
+    void addNotExecuted(final List<OperationType> types) {
+        types.forEach(this::addNotExecuted);
+    }
+
+    private void addNotExecuted(final OperationType type) {
+        results.add(new BulkWriteOperationResult(results.size(), type, Status.NOT_EXECUTED, null, 0, null));
+        failedCount++;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkWriteReport{" +
+               "operations=" + results.size() +
+               ", insertedCount=" + insertedCount +
+               ", matchedCount=" + matchedCount +
+               ", modifiedCount=" + modifiedCount +
+               ", removedCount=" + removedCount +
+               ", upsertedCount=" + upsertedCount +
+               ", failedCount=" + failedCount +
+               '}';
+    }
+
+}
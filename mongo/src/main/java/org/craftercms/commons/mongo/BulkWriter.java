@@ -0,0 +1,285 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.mongo;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteException;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+import org.craftercms.commons.mongo.BulkWriteOperationResult.OperationType;
+import org.jongo.Mapper;
+import org.jongo.ObjectIdUpdater;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects inserts, updates, upserts and removes for a collection and sends them to Mongo as bulk writes, instead
+ * of one request per document. The operations are flushed automatically each time {@code batchSize} of them are
+ * pending, and when {@link #execute()} is called.
+ * <p>
+ * Ordered bulk writes stop at the first failed operation: the rest of the operations (even the ones of later
+ * batches) are reported as {@link BulkWriteOperationResult.Status#NOT_EXECUTED}. Unordered bulk writes execute all
+ * operations, and the failed ones are reported as {@link BulkWriteOperationResult.Status#FAILED}.
+ * </p>
+ * <p>
+ * Query and modifier templates use the same '#' placeholders of the Jongo queries. Instances are not thread safe.
+ * </p>
+ *
+ * @param <T> the type of the documents of the collection
+ * @since 4.2.0
+ */
+public class BulkWriter<T> {
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private static final Logger log = LoggerFactory.getLogger(BulkWriter.class);
+
+    private static final Object[] NO_PARAMS = new Object[0];
+
+    protected final DBCollection collection;
+    protected final Mapper mapper;
+    protected final boolean ordered;
+    protected final int batchSize;
+    protected final BulkWriteReport report;
+
+    protected BulkWriteOperation pendingOperation;
+    protected List<OperationType> pendingTypes;
+    protected boolean aborted;
+
+    public BulkWriter(final DBCollection collection, final Mapper mapper, final boolean ordered,
+                      final int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be greater than 0");
+        }
+
+        this.collection = collection;
+        this.mapper = mapper;
+        this.ordered = ordered;
+        this.batchSize = batchSize;
+        this.report = new BulkWriteReport();
+        this.pendingTypes = new ArrayList<>();
+    }
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Returns the number of operations that haven't been flushed yet.
+     */
+    public int getPendingCount() {
+        return pendingTypes.size();
+    }
+
+    /**
+     * Adds an insert of the given document. If the document doesn't have an id, one is generated and set, like
+     * {@link CrudRepository#insert(Object)} does.
+     */
+    public BulkWriter<T> insert(final T document) throws MongoDataException {
+        ObjectIdUpdater objectIdUpdater = mapper.getObjectIdUpdater();
+        if (objectIdUpdater.mustGenerateObjectId(document)) {
+            objectIdUpdater.setObjectId(document, ObjectId.get());
+        }
+
+        DBObject dbObject = mapper.getMarshaller().marshall(document).toDBObject();
+
+        return add(OperationType.INSERT, operation -> operation.insert(dbObject));
+    }
+
+    /**
+     * Adds an update of the document with the given id, using the given modifier.
+     *
+     * @param id       the id of the document
+     * @param modifier the modifier template, e.g. <code>{$set: {name: #}}</code>
+     * @param upsert   if the document should be inserted if it doesn't exist
+     * @param params   the params of the modifier template
+     */
+    public BulkWriter<T> updateById(final String id, final String modifier, final boolean upsert,
+                                    final Object... params) throws MongoDataException {
+        return update(idQuery(id), createDBObject(modifier, params), false, upsert);
+    }
+
+    /**
+     * Adds an update of the document with the given id, setting all the fields of the given object (except the id),
+     * like {@link CrudRepository#update(String, Object)} does.
+     */
+    public BulkWriter<T> updateFieldsById(final String id, final Object updateObject, final boolean upsert)
+            throws MongoDataException {
+        DBObject modifier = createDBObject("{$set: #}", updateObject);
+        ((DBObject) modifier.get("$set")).removeField("_id");
+
+        return update(idQuery(id), modifier, false, upsert);
+    }
+
+    /**
+     * Adds an update of the documents that match the given query.
+     *
+     * @param query          the query template
+     * @param queryParams    the params of the query template
+     * @param modifier       the modifier template
+     * @param modifierParams the params of the modifier template
+     * @param multi          if all matching documents should be updated, or just the first one
+     * @param upsert         if a document should be inserted if none matches
+     */
+    public BulkWriter<T> update(final String query, final Object[] queryParams, final String modifier,
+                                final Object[] modifierParams, final boolean multi, final boolean upsert)
+            throws MongoDataException {
+        return update(createDBObject(query, queryParams), createDBObject(modifier, modifierParams), multi, upsert);
+    }
+
+    /**
+     * Adds a remove of the document with the given id.
+     */
+    public BulkWriter<T> removeById(final String id) throws MongoDataException {
+        DBObject query = idQuery(id);
+
+        return add(OperationType.REMOVE, operation -> operation.find(query).removeOne());
+    }
+
+    /**
+     * Adds a remove of all the documents that match the given query.
+     */
+    public BulkWriter<T> remove(final String query, final Object... queryParams) throws MongoDataException {
+        DBObject queryObject = createDBObject(query, queryParams);
+
+        return add(OperationType.REMOVE, operation -> operation.find(queryObject).remove());
+    }
+
+    /**
+     * Sends the pending operations to Mongo, if any.
+     *
+     * @return the report with the results of all the operations flushed so far
+     * @throws MongoDataException if the bulk write couldn't be executed at all (e.g. a network error)
+     */
+    public BulkWriteReport flush() throws MongoDataException {
+        if (pendingTypes.isEmpty()) {
+            return report;
+        }
+
+        BulkWriteOperation operation = pendingOperation;
+        List<OperationType> types = pendingTypes;
+
+        pendingOperation = null;
+        pendingTypes = new ArrayList<>();
+
+        if (aborted) {
+            report.addNotExecuted(types);
+            return report;
+        }
+
+        try {
+            report.addBatch(types, operation.execute(), Collections.emptyList(), ordered);
+        } catch (BulkWriteException ex) {
+            log.debug("Bulk write of {} operations on collection {} had errors: {}", types.size(),
+                      collection.getName(), ex.getWriteErrors());
+
+            if (ex.getWriteConcernError() != null) {
+                log.warn("Write concern error for bulk write on collection {}: {}", collection.getName(),
+                         ex.getWriteConcernError());
+            }
+
+            report.addBatch(types, ex.getWriteResult(), ex.getWriteErrors(), ordered);
+            if (ordered && !ex.getWriteErrors().isEmpty()) {
+                aborted = true;
+            }
+        } catch (MongoException ex) {
+            String msg = "Unable to execute bulk write of " + types.size() + " operations on collection " +
+                         collection.getName();
+            log.error(msg, ex);
+            throw new MongoDataException(msg, ex);
+        }
+
+        return report;
+    }
+
+    /**
+     * Flushes the pending operations and returns the results of all the operations added to this writer.
+     */
+    public BulkWriteReport execute() throws MongoDataException {
+        return flush();
+    }
+
+    protected BulkWriter<T> update(final DBObject query, final DBObject modifier, final boolean multi,
+                                   final boolean upsert) throws MongoDataException {
+        OperationType type = upsert? OperationType.UPSERT : OperationType.UPDATE;
+
+        return add(type, operation -> {
+            if (upsert) {
+                if (multi) {
+                    operation.find(query).upsert().update(modifier);
+                } else {
+                    operation.find(query).upsert().updateOne(modifier);
+                }
+            } else if (multi) {
+                operation.find(query).update(modifier);
+            } else {
+                operation.find(query).updateOne(modifier);
+            }
+        });
+    }
+
+    protected BulkWriter<T> add(final OperationType type, final PendingOperation pending)
+            throws MongoDataException {
+        if (pendingOperation == null) {
+            pendingOperation = ordered? collection.initializeOrderedBulkOperation() :
+                                        collection.initializeUnorderedBulkOperation();
+        }
+
+        pending.addTo(pendingOperation);
+        pendingTypes.add(type);
+
+        if (pendingTypes.size() >= batchSize) {
+            flush();
+        }
+
+        return this;
+    }
+
+    protected DBObject createDBObject(final String template, final Object... params) {
+        return mapper.getQueryFactory().createQuery(template, params != null? params : NO_PARAMS).toDBObject();
+    }
+
+    protected DBObject idQuery(final String id) {
+        if (!ObjectId.isValid(id)) {
+            throw new IllegalArgumentException("Given String " + id + " is not a valid Object Id");
+        }
+
+        return new BasicDBObject("_id", new ObjectId(id));
+    }
+
+    /**
+     * Adds a single request to a {@link BulkWriteOperation}.
+     */
+    @FunctionalInterface
+    protected interface PendingOperation {
+
+        void addTo(BulkWriteOperation operation);
+
+    }
+
+}
@@ -19,6 +19,8 @@ package org.craftercms.commons.mongo;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import org.apache.commons.io.FileExistsException;
 import org.bson.types.ObjectId;
@@ -185,6 +187,56 @@ public interface CrudRepository<T> {
      */
     Iterable<T> find(String query, Object... queryParams) throws MongoDataException;
 
+    /**
+     * Streams all documents of the given collection that match the template query, fetching them from the server
+     * in batches of the given size. The cursor is closed when the stream is fully consumed or when it's closed, so
+     * it should be used with try-with-resources if it might not be fully consumed.
+     *
+     * @param query       Template query.
+     * @param projection  Fields to return (e.g. <code>{name: 1, email: 1}</code>), null to return all fields.
+     * @param batchSize   Number of documents fetched per round trip, 0 to use the server default.
+     * @param queryParams Params to be use in the template query. Must match the order of the templates.
+     * @return A lazy Stream of the documents that match the query. Errors while fetching the documents are thrown
+     *         by the Stream operations as {@link org.craftercms.commons.mongo.UncheckedMongoDataException}.
+     * @throws org.craftercms.commons.mongo.MongoDataException If couldn't search for the documents.
+     */
+    Stream<T> findStream(String query, String projection, int batchSize, Object... queryParams)
+        throws MongoDataException;
+
+    /**
+     * Calls the given callback for each document of the given collection that matches the template query, fetching
+     * them from the server in batches of the given size. The cursor is always closed before returning.
+     *
+     * @param query       Template query.
+     * @param projection  Fields to return (e.g. <code>{name: 1, email: 1}</code>), null to return all fields.
+     * @param batchSize   Number of documents fetched per round trip, 0 to use the server default.
+     * @param callback    Callback called for each document.
+     * @param queryParams Params to be use in the template query. Must match the order of the templates.
+     * @throws org.craftercms.commons.mongo.MongoDataException If couldn't search for the documents.
+     */
+    void findEach(String query, String projection, int batchSize, Consumer<? super T> callback,
+                  Object... queryParams) throws MongoDataException;
+
+    /**
+     * Finds the page of documents that match the template query and come after the given key, sorted by the key
+     * field (keyset pagination). Unlike skip based pagination the cost of each page doesn't grow with the number
+     * of previous pages, as long as the key field is indexed. The key field must have unique values (e.g.
+     * <code>_id</code>).
+     *
+     * @param query       Template query.
+     * @param keyField    Field used to sort and paginate (a field name or dotted path).
+     * @param ascending   True to sort in ascending order, false in descending order.
+     * @param lastKey     Value of the key field of the last document of the previous page, null for the first page.
+     * @param pageSize    Max number of documents of the page, must be greater than 0.
+     * @param queryParams Params to be use in the template query. Must match the order of the templates.
+     * @return The documents of the page, an empty list if there are no more pages.
+     * @throws org.craftercms.commons.mongo.MongoDataException If couldn't search for the documents.
+     * @throws java.lang.IllegalArgumentException If the key field is not a valid field name or the page size is
+     *                                            not greater than 0.
+     */
+    List<T> findPageAfter(String query, String keyField, boolean ascending, Object lastKey, int pageSize,
+                          Object... queryParams) throws MongoDataException;
+
     /**
      * Search for documents of the given collection that match the query.<br/>In only return the first Document<br/>
      *
@@ -389,8 +441,38 @@ public interface CrudRepository<T> {
      */
     T findByStringId(String id) throws MongoDataException;
 
+    /**
+     * <p>Lists all the files whose name contains the given string.</p>
+     * @param filename String to look for in the file names.
+     * @return The info of the matching files.
+     * @see #listFilesByName(String, int, int)
+     */
     List<FileInfo> listFilesByName(String filename);
 
+    /**
+     * <p>Lists the files whose name contains the given string, sorted by name. The names are looked up in the
+     * index on the file names that GridFS creates.</p>
+     * <p>By default the string is matched literally as a substring of the names, which requires scanning all the
+     * names in the index. If the repository is configured to use a text index, the string is instead matched
+     * against whole words of the names (following the MongoDB text search rules), so it won't find partial
+     * words. The text index is not created by this method, see the repository implementation.</p>
+     * @param filename String to look for in the file names.
+     * @param skip Number of files to skip, for pagination.
+     * @param limit Max number of files to return, 0 for no limit.
+     * @return The info of the matching files.
+     */
+    List<FileInfo> listFilesByName(String filename, int skip, int limit);
+
+    /**
+     * <p>Lists the files whose name starts with the given prefix, sorted by name. Uses the GridFS index on the file
+     * names, so it's much faster than {@link #listFilesByName(String, int, int)} on large stores.</p>
+     * @param prefix Prefix of the file names, matched literally.
+     * @param skip Number of files to skip, for pagination.
+     * @param limit Max number of files to return, 0 for no limit.
+     * @return The info of the matching files.
+     */
+    List<FileInfo> listFilesByNamePrefix(String prefix, int skip, int limit);
+
     /**
      * <p>Removes by the Id.</p>
      * <p><b> No internal Modification is done, uses Mongodb default '_id' field name</b></p>
@@ -398,4 +480,23 @@ public interface CrudRepository<T> {
      */
     void removeByStringId(String id) throws MongoDataException;
 
+    /**
+     * <p>Creates a {@link BulkWriter} that collects inserts, updates, upserts and removes for this collection and
+     * sends them in batches of {@link BulkWriter#DEFAULT_BATCH_SIZE} operations.</p>
+     * @param ordered true if the operations should be executed in order, stopping at the first error. false if
+     *                they can be executed in any order, continuing after errors (faster).
+     * @return a new bulk writer.
+     */
+    BulkWriter<T> bulkWrite(boolean ordered);
+
+    /**
+     * <p>Creates a {@link BulkWriter} that collects inserts, updates, upserts and removes for this collection and
+     * sends them in batches of the given size.</p>
+     * @param ordered true if the operations should be executed in order, stopping at the first error. false if
+     *                they can be executed in any order, continuing after errors (faster).
+     * @param batchSize the max number of operations sent in a single bulk write.
+     * @return a new bulk writer.
+     */
+    BulkWriter<T> bulkWrite(boolean ordered, int batchSize);
+
 }
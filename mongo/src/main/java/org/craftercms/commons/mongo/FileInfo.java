@@ -58,6 +58,18 @@ public class FileInfo {
         attributes=new HashMap<>();
     }
 
+    FileInfo(final com.mongodb.client.gridfs.model.GridFSFile file, final InputStream inputStream) {
+        this.fileId = file.getObjectId();
+        this.contentType = file.getMetadata() != null?
+            file.getMetadata().getString(GridFsFileStore.METADATA_CONTENT_TYPE) : null;
+        this.fileSize = FileUtils.readableFileSize(file.getLength());
+        this.storeName = file.getFilename();
+        this.savedDate = file.getUploadDate();
+        this.fileSizeBytes = file.getLength();
+        this.inputStream = inputStream;
+        attributes=new HashMap<>();
+    }
+
     public FileInfo() {
         attributes=new HashMap<>();
     }
@@ -0,0 +1,386 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.mongo;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.gridfs.GridFSBucket;
+import com.mongodb.client.gridfs.GridFSBuckets;
+import com.mongodb.client.gridfs.GridFSDownloadStream;
+import com.mongodb.client.gridfs.GridFSUploadStream;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import com.mongodb.client.gridfs.model.GridFSUploadOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.FileExistsException;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.bson.BsonDocument;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * GridFS file store based on the {@link GridFSBucket} API of the sync driver, as an alternative to the legacy
+ * GridFS methods of {@link CrudRepository}. Besides plain uploads and downloads it supports:
+ * <ul>
+ *     <li>Streaming uploads through {@link #openUploadStream(String, String)}</li>
+ *     <li>Range reads that start at the chunk of the requested offset instead of reading all previous chunks</li>
+ *     <li>Reads that prefetch the next chunks in parallel, to reduce the time a thread spends serving large
+ *     files</li>
+ *     <li>Atomic updates: the new content is uploaded to a new file which then takes the name of the old one, so
+ *     the file is never missing during the upload</li>
+ * </ul>
+ * Files with the same name are revisions: lookups by name always return the most recent one.
+ *
+ * @since 4.2.0
+ */
+public class GridFsFileStore implements InitializingBean, DisposableBean {
+
+    public static final String DEFAULT_BUCKET_NAME = "fs";
+    public static final String METADATA_CONTENT_TYPE = "contentType";
+    public static final int DEFAULT_CHUNK_SIZE = 255 * 1024;
+    public static final int DEFAULT_PREFETCH_CHUNKS = 4;
+    public static final int DEFAULT_PREFETCH_THREADS = 8;
+
+    private static final String TEMP_NAME_SUFFIX = ".uploading-";
+
+    private static final Logger log = LoggerFactory.getLogger(GridFsFileStore.class);
+
+    protected final MongoDatabase database;
+    protected final String bucketName;
+    protected GridFSBucket bucket;
+    protected MongoCollection<BsonDocument> chunks;
+    protected int chunkSize;
+    protected int prefetchChunks;
+    protected ExecutorService prefetchExecutor;
+    protected boolean ownPrefetchExecutor;
+
+    public GridFsFileStore(final MongoDatabase database) {
+        this(database, DEFAULT_BUCKET_NAME);
+    }
+
+    public GridFsFileStore(final MongoDatabase database, final String bucketName) {
+        this.database = database;
+        this.bucketName = bucketName;
+        this.chunkSize = DEFAULT_CHUNK_SIZE;
+        this.prefetchChunks = DEFAULT_PREFETCH_CHUNKS;
+    }
+
+    public void setChunkSize(final int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public void setPrefetchChunks(final int prefetchChunks) {
+        this.prefetchChunks = prefetchChunks;
+    }
+
+    /**
+     * Sets the executor used to fetch chunks in parallel. If not set an executor with
+     * {@link #DEFAULT_PREFETCH_THREADS} threads is created, and shut down when this store is destroyed.
+     */
+    public void setPrefetchExecutor(final ExecutorService prefetchExecutor) {
+        this.prefetchExecutor = prefetchExecutor;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        bucket = GridFSBuckets.create(database, bucketName).withChunkSizeBytes(chunkSize);
+        chunks = database.getCollection(bucketName + ".chunks", BsonDocument.class);
+
+        if (prefetchExecutor == null) {
+            prefetchExecutor = Executors.newFixedThreadPool(DEFAULT_PREFETCH_THREADS, runnable -> {
+                Thread thread = new Thread(runnable, "gridfs-prefetch-" + bucketName);
+                thread.setDaemon(true);
+                return thread;
+            });
+            ownPrefetchExecutor = true;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (ownPrefetchExecutor) {
+            prefetchExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Saves the content of the given stream as a new file, streaming it to GridFS chunk by chunk.
+     *
+     * @param inputStream the content of the file
+     * @param storeName   the name of the file
+     * @param contentType the content type of the file
+     * @return the info of the saved file
+     * @throws FileExistsException if a file with the same name already exists
+     * @throws MongoDataException  if the file couldn't be saved
+     */
+    public FileInfo saveFile(final InputStream inputStream, final String storeName, final String contentType)
+            throws MongoDataException, FileExistsException {
+        try {
+            if (findLatest(storeName) != null) {
+                log.error("A file named {} already exists", storeName);
+                throw new FileExistsException("File with name " + storeName + " already Exists");
+            }
+
+            ObjectId fileId = bucket.uploadFromStream(storeName, inputStream, uploadOptions(contentType));
+
+            return getFileInfo(fileId);
+        } catch (MongoException | FileNotFoundException ex) {
+            log.error("Unable to save file {}", storeName, ex);
+            throw new MongoDataException("Unable to save file " + storeName + " to GridFs", ex);
+        }
+    }
+
+    /**
+     * Opens a stream to upload a new file. The file is visible once the stream is closed.
+     *
+     * @param storeName   the name of the file
+     * @param contentType the content type of the file
+     * @return the upload stream, whose {@link GridFSUploadStream#getObjectId()} is the id of the new file
+     */
+    public GridFSUploadStream openUploadStream(final String storeName, final String contentType) {
+        return bucket.openUploadStream(storeName, uploadOptions(contentType));
+    }
+
+    /**
+     * Replaces the content of the file with the given name. The new content is uploaded to a new file, which then
+     * takes the name of the old file, and only after that all the previous revisions are deleted. Readers always
+     * see either the old or the new content.
+     *
+     * @param inputStream the new content of the file
+     * @param storeName   the name of the file
+     * @param contentType the content type of the file
+     * @return the info of the new file
+     * @throws FileNotFoundException if there's no file with the given name
+     * @throws MongoDataException    if the file couldn't be updated
+     */
+    public FileInfo updateFile(final InputStream inputStream, final String storeName, final String contentType)
+            throws FileNotFoundException, MongoDataException {
+        List<ObjectId> oldIds = findIds(storeName);
+        if (oldIds.isEmpty()) {
+            throw new FileNotFoundException("File with file name " + storeName + " does not exist");
+        }
+
+        return replaceFiles(oldIds, inputStream, storeName, contentType);
+    }
+
+    /**
+     * Replaces the file with the given id by a new file with the given content and name, which can be different.
+     * The new file is completely uploaded before the old file is deleted.
+     *
+     * @param fileId      the id of the file to replace
+     * @param inputStream the new content of the file
+     * @param storeName   the name of the new file
+     * @param contentType the content type of the file
+     * @return the info of the new file
+     * @throws FileNotFoundException if there's no file with the given id
+     * @throws MongoDataException    if the file couldn't be updated
+     */
+    public FileInfo updateFile(final ObjectId fileId, final InputStream inputStream, final String storeName,
+                               final String contentType) throws FileNotFoundException, MongoDataException {
+        getFile(fileId);
+
+        return replaceFiles(List.of(fileId), inputStream, storeName, contentType);
+    }
+
+    public FileInfo getFileInfo(final ObjectId fileId) throws FileNotFoundException {
+        return new FileInfo(getFile(fileId), null);
+    }
+
+    public FileInfo getFileInfo(final String storeName) throws FileNotFoundException {
+        return new FileInfo(getFile(storeName), null);
+    }
+
+    /**
+     * Returns the info of the file with the given id, including a stream that reads the content sequentially.
+     */
+    public FileInfo readFile(final ObjectId fileId) throws FileNotFoundException {
+        GridFSFile file = getFile(fileId);
+        return new FileInfo(file, bucket.openDownloadStream(file.getObjectId()));
+    }
+
+    /**
+     * Returns the info of the latest revision of the file with the given name, including a stream that reads the
+     * content sequentially.
+     */
+    public FileInfo readFile(final String storeName) throws FileNotFoundException {
+        GridFSFile file = getFile(storeName);
+        return new FileInfo(file, bucket.openDownloadStream(file.getObjectId()));
+    }
+
+    /**
+     * Writes the content of the file with the given id to the given stream.
+     */
+    public void downloadFile(final ObjectId fileId, final OutputStream outputStream)
+            throws FileNotFoundException, MongoDataException {
+        getFile(fileId);
+        try {
+            bucket.downloadToStream(fileId, outputStream);
+        } catch (MongoException ex) {
+            log.error("Unable to download file {}", fileId, ex);
+            throw new MongoDataException("Unable to download file " + fileId + " from GridFs", ex);
+        }
+    }
+
+    /**
+     * Opens a stream with the given range of the content of the file. Reading starts directly at the chunk that
+     * contains the offset, the previous chunks are not read.
+     *
+     * @param fileId the id of the file
+     * @param offset the offset of the first byte to read
+     * @param length the max number of bytes to read, or -1 to read until the end of the file
+     * @return the stream with the range
+     * @throws FileNotFoundException if there's no file with the given id
+     * @throws IOException           if the stream couldn't be positioned at the offset
+     */
+    public InputStream openRange(final ObjectId fileId, final long offset, final long length) throws IOException {
+        GridFSFile file = getFile(fileId);
+        checkRange(file, offset);
+
+        GridFSDownloadStream stream = bucket.openDownloadStream(file.getObjectId());
+        try {
+            // The driver skips to the chunk that contains the offset without reading the chunks before it
+            stream.skip(offset);
+        } catch (MongoException ex) {
+            stream.close();
+            throw new IOException("Unable to seek to offset " + offset + " of file " + fileId, ex);
+        }
+
+        return length >= 0? new BoundedInputStream(stream, length) : stream;
+    }
+
+    /**
+     * Opens a stream with the given range of the content of the file, which fetches the next
+     * {@code prefetchChunks} chunks in parallel while the current one is being consumed.
+     *
+     * @param fileId the id of the file
+     * @param offset the offset of the first byte to read
+     * @param length the max number of bytes to read, or -1 to read until the end of the file
+     * @return the stream with the range
+     * @throws FileNotFoundException if there's no file with the given id
+     */
+    public InputStream openPrefetchingRange(final ObjectId fileId, final long offset, final long length)
+            throws FileNotFoundException {
+        GridFSFile file = getFile(fileId);
+        checkRange(file, offset);
+
+        long end = length >= 0? Math.min(file.getLength(), offset + length) : file.getLength();
+
+        return new PrefetchingChunkInputStream(chunks, file.getObjectId(), file.getChunkSize(), offset, end,
+                                               prefetchChunks, prefetchExecutor);
+    }
+
+    public void deleteFile(final ObjectId fileId) throws FileNotFoundException {
+        bucket.delete(getFile(fileId).getObjectId());
+    }
+
+    /**
+     * Deletes all the revisions of the file with the given name.
+     */
+    public void deleteFile(final String storeName) throws FileNotFoundException {
+        List<ObjectId> ids = findIds(storeName);
+        if (ids.isEmpty()) {
+            throw new FileNotFoundException("File with file name " + storeName + " does not exist");
+        }
+
+        ids.forEach(bucket::delete);
+    }
+
+    protected FileInfo replaceFiles(final List<ObjectId> oldIds, final InputStream inputStream,
+                                    final String storeName, final String contentType) throws MongoDataException {
+        ObjectId newId;
+        try {
+            newId = bucket.uploadFromStream(storeName + TEMP_NAME_SUFFIX + ObjectId.get(), inputStream,
+                                            uploadOptions(contentType));
+        } catch (MongoException ex) {
+            log.error("Unable to upload new content of file {}", storeName, ex);
+            throw new MongoDataException("Unable to upload new content of file " + storeName + " to GridFs", ex);
+        }
+
+        try {
+            // The new file is the latest revision, so it replaces the old ones for lookups by name right away
+            bucket.rename(newId, storeName);
+
+            for (ObjectId oldId : oldIds) {
+                bucket.delete(oldId);
+            }
+
+            return getFileInfo(newId);
+        } catch (MongoException | FileNotFoundException ex) {
+            log.error("Unable to swap file {} with its new content {}", storeName, newId, ex);
+            throw new MongoDataException("Unable to swap file " + storeName + " with its new content", ex);
+        }
+    }
+
+    protected GridFSFile getFile(final ObjectId fileId) throws FileNotFoundException {
+        GridFSFile file = bucket.find(Filters.eq("_id", fileId)).first();
+        if (file == null) {
+            log.error("A file with id {} does not exists", fileId);
+            throw new FileNotFoundException("File with id " + fileId + " does not exist");
+        }
+        return file;
+    }
+
+    protected GridFSFile getFile(final String storeName) throws FileNotFoundException {
+        GridFSFile file = findLatest(storeName);
+        if (file == null) {
+            log.error("A file with name {} does not exists", storeName);
+            throw new FileNotFoundException("File with file name " + storeName + " does not exist");
+        }
+        return file;
+    }
+
+    protected GridFSFile findLatest(final String storeName) {
+        return bucket.find(Filters.eq("filename", storeName))
+                     .sort(Sorts.descending("uploadDate"))
+                     .limit(1)
+                     .first();
+    }
+
+    protected List<ObjectId> findIds(final String storeName) {
+        List<ObjectId> ids = new ArrayList<>();
+        bucket.find(Filters.eq("filename", storeName)).forEach(file -> ids.add(file.getObjectId()));
+
+        return ids;
+    }
+
+    protected GridFSUploadOptions uploadOptions(final String contentType) {
+        return new GridFSUploadOptions()
+            .chunkSizeBytes(chunkSize)
+            .metadata(new org.bson.Document(METADATA_CONTENT_TYPE, contentType));
+    }
+
+    protected void checkRange(final GridFSFile file, final long offset) {
+        if (offset < 0 || offset > file.getLength()) {
+            throw new IllegalArgumentException("Offset " + offset + " is out of the bounds of file " +
+                                               file.getObjectId() + " with length " + file.getLength());
+        }
+    }
+
+}
@@ -18,14 +18,101 @@ package org.craftercms.commons.mongo;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
 
+import org.apache.commons.lang3.StringUtils;
 import org.craftercms.commons.properties.OverrideProperties;
 
 /**
  * Holds a Map of all the register MongoQueries.
+ * <p>
+ * The queries are normalized (whitespace collapsed) once when they're loaded, or reloaded, instead of every time
+ * they're used. Execution stats are kept per query name and survive reloads.
+ * </p>
  */
 public class JongoQueries extends OverrideProperties {
 
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * Normalized queries by name.
+     */
+    protected volatile Map<String, String> normalizedQueries = Collections.emptyMap();
+    /**
+     * Stats of the queries by normalized query, to find the stats of a query already resolved by name.
+     */
+    protected volatile Map<String, QueryStats> statsByQuery = Collections.emptyMap();
+    /**
+     * Stats of the queries by name.
+     */
+    protected final ConcurrentMap<String, QueryStats> stats = new ConcurrentHashMap<>();
+
+    @Override
+    public void init() {
+        super.init();
+        compile();
+    }
+
+    /**
+     * Builds the registry of normalized queries from the loaded properties.
+     */
+    protected void compile() {
+        Map<String, String> newNormalizedQueries = new HashMap<>();
+        Map<String, QueryStats> newStatsByQuery = new HashMap<>();
+
+        for (String name : properties.stringPropertyNames()) {
+            String query = properties.getProperty(name);
+            if (StringUtils.isNotBlank(query)) {
+                String normalizedQuery = normalize(query);
+
+                newNormalizedQueries.put(name, normalizedQuery);
+                newStatsByQuery.putIfAbsent(normalizedQuery, stats.computeIfAbsent(name, QueryStats::new));
+            }
+        }
+
+        normalizedQueries = newNormalizedQueries;
+        statsByQuery = newStatsByQuery;
+    }
+
+    /**
+     * Gets the normalized Query with the given name. Null if the query is not found or is blank.
+     *
+     * @param name Name of the query.
+     * @return Normalized query with the given name.
+     */
+    public String getNormalized(final String name) {
+        return normalizedQueries.get(name);
+    }
+
+    /**
+     * Gets the stats of the given normalized query (as returned by {@link #getNormalized(String)}).
+     *
+     * @param query the normalized query.
+     * @return the stats of the query, or null if it's not a registered query.
+     */
+    public QueryStats getStatsForQuery(final String query) {
+        return statsByQuery.get(query);
+    }
+
+    /**
+     * Gets the execution stats of all the queries, by name.
+     */
+    public Map<String, QueryStats> getStats() {
+        return Collections.unmodifiableMap(stats);
+    }
+
+    /**
+     * Trims the query and collapses all its whitespace into single spaces.
+     */
+    public static String normalize(final String query) {
+        return WHITESPACE.matcher(query.trim()).replaceAll(" ");
+    }
+
     @Override
     protected void readPropertyFile(final InputStream input) throws IOException {
         properties.loadFromXML(input);
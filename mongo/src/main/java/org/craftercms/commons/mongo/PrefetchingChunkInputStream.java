@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.mongo;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import org.bson.BsonDocument;
+import org.bson.types.ObjectId;
+
+/**
+ * Input stream that reads a range of a GridFS file straight from the chunks collection, keeping up to
+ * {@code window} chunks being fetched in parallel ahead of the current position. At most {@code window + 1}
+ * chunks are held in memory.
+ *
+ * @since 4.2.0
+ */
+class PrefetchingChunkInputStream extends InputStream {
+
+    private final MongoCollection<BsonDocument> chunks;
+    private final ObjectId fileId;
+    private final int chunkSize;
+    private final long end;
+    private final int window;
+    private final Executor executor;
+    private final Deque<CompletableFuture<byte[]>> pending;
+    private final int lastChunk;
+
+    private long position;
+    private int nextChunkToFetch;
+    private int currentChunk;
+    private byte[] current;
+    private int currentOffset;
+    private boolean closed;
+
+    PrefetchingChunkInputStream(final MongoCollection<BsonDocument> chunks, final ObjectId fileId,
+                                final int chunkSize, final long offset, final long end, final int window,
+                                final Executor executor) {
+        this.chunks = chunks;
+        this.fileId = fileId;
+        this.chunkSize = chunkSize;
+        this.end = end;
+        this.window = Math.max(1, window);
+        this.executor = executor;
+        this.pending = new ArrayDeque<>(this.window);
+        this.position = offset;
+        this.nextChunkToFetch = (int) (offset / chunkSize);
+        this.currentChunk = nextChunkToFetch - 1;
+        this.lastChunk = end > 0? (int) ((end - 1) / chunkSize) : -1;
+
+        fill();
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int read = read(single, 0, 1);
+
+        return read > 0? single[0] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= end) {
+            return -1;
+        }
+        if ((current == null || currentOffset >= current.length) && !nextChunk()) {
+            return -1;
+        }
+
+        int read = (int) Math.min(Math.min(len, current.length - currentOffset), end - position);
+        System.arraycopy(current, currentOffset, b, off, read);
+
+        currentOffset += read;
+        position += read;
+
+        return read;
+    }
+
+    @Override
+    public int available() {
+        return current != null? Math.max(0, Math.min(current.length - currentOffset, (int) (end - position))) : 0;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            pending.forEach(future -> future.cancel(false));
+            pending.clear();
+            current = null;
+        }
+    }
+
+    private boolean nextChunk() throws IOException {
+        CompletableFuture<byte[]> future = pending.poll();
+        if (future == null) {
+            return false;
+        }
+
+        fill();
+
+        try {
+            current = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading chunk of file " + fileId);
+        } catch (ExecutionException e) {
+            throw new IOException("Unable to read chunk " + (currentChunk + 1) + " of file " + fileId, e.getCause());
+        }
+
+        currentChunk++;
+        currentOffset = (int) (position - (long) currentChunk * chunkSize);
+
+        return true;
+    }
+
+    private void fill() {
+        while (pending.size() < window && nextChunkToFetch <= lastChunk) {
+            int n = nextChunkToFetch++;
+            pending.add(CompletableFuture.supplyAsync(() -> fetchChunk(n), executor));
+        }
+    }
+
+    private byte[] fetchChunk(final int n) {
+        BsonDocument chunk = chunks.find(Filters.and(Filters.eq("files_id", fileId), Filters.eq("n", n))).first();
+        if (chunk == null) {
+            throw new IllegalStateException("Chunk " + n + " of file " + fileId + " is missing");
+        }
+
+        return chunk.getBinary("data").getData();
+    }
+
+}
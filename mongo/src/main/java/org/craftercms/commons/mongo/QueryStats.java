@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.mongo;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Execution counters and latency histogram of a named query of {@link JongoQueries}.
+ * <p>
+ * For finds that return lazy results the latency only covers the creation of the cursor, not its iteration.
+ * </p>
+ *
+ * @since 4.2.0
+ */
+public class QueryStats {
+
+    /**
+     * Upper bounds (inclusive) in milliseconds of the buckets of the latency histogram. There's an additional
+     * bucket for latencies greater than the last bound.
+     */
+    private static final long[] BUCKET_BOUNDS_MILLIS = { 1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000 };
+
+    private final String name;
+    private final LongAdder count;
+    private final LongAdder errorCount;
+    private final LongAdder totalNanos;
+    private final LongAccumulator maxNanos;
+    private final LongAdder[] buckets;
+
+    public QueryStats(final String name) {
+        this.name = name;
+        this.count = new LongAdder();
+        this.errorCount = new LongAdder();
+        this.totalNanos = new LongAdder();
+        this.maxNanos = new LongAccumulator(Math::max, 0);
+        this.buckets = new LongAdder[BUCKET_BOUNDS_MILLIS.length + 1];
+
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records an execution of the query.
+     *
+     * @param nanos the time the execution took, in nanoseconds
+     */
+    public void recordExecution(final long nanos) {
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MILLIS.length && millis > BUCKET_BOUNDS_MILLIS[bucket]) {
+            bucket++;
+        }
+
+        buckets[bucket].increment();
+    }
+
+    /**
+     * Records a failed execution of the query.
+     */
+    public void recordError() {
+        errorCount.increment();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getErrorCount() {
+        return errorCount.sum();
+    }
+
+    public double getAverageMillis() {
+        long executions = count.sum();
+        return executions > 0? totalNanos.sum() / (executions * 1_000_000.0) : 0;
+    }
+
+    public double getMaxMillis() {
+        return maxNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * Returns the upper bounds in milliseconds of the buckets of the histogram, see {@link #getBucketCounts()}.
+     */
+    public long[] getBucketBoundsMillis() {
+        return BUCKET_BOUNDS_MILLIS.clone();
+    }
+
+    /**
+     * Returns the number of executions per latency bucket. The bucket {@code i} counts the executions that took
+     * at most {@code getBucketBoundsMillis()[i]} milliseconds (and more than the previous bound), the last bucket
+     * counts the executions that took longer than the last bound.
+     */
+    public long[] getBucketCounts() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+
+        return counts;
+    }
+
+    /**
+     * Resets all the counters.
+     */
+    public void reset() {
+        count.reset();
+        errorCount.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "QueryStats{" +
+               "name='" + name + '\'' +
+               ", count=" + getCount() +
+               ", errorCount=" + getErrorCount() +
+               ", averageMillis=" + getAverageMillis() +
+               ", maxMillis=" + getMaxMillis() +
+               '}';
+    }
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.mongo;
+
+/**
+ * Wraps a {@link MongoDataException} in an unchecked exception, for errors that happen while iterating the
+ * documents of a lazy result (like the {@code Stream} returned by
+ * {@link CrudRepository#findStream(String, String, int, Object...)}), where checked exceptions can't be thrown.
+ *
+ * @since 4.2.0
+ */
+public class UncheckedMongoDataException extends RuntimeException {
+
+    public UncheckedMongoDataException(MongoDataException cause) {
+        super(cause);
+    }
+
+    public UncheckedMongoDataException(String message, MongoDataException cause) {
+        super(message, cause);
+    }
+
+    @Override
+    public synchronized MongoDataException getCause() {
+        return (MongoDataException) super.getCause();
+    }
+
+}
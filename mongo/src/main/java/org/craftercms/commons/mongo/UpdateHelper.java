@@ -15,6 +15,7 @@
  */
 package org.craftercms.commons.mongo;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -65,9 +66,45 @@ public class UpdateHelper {
     }
 
     public void executeUpdate(String id, CrudRepository<?> repository) throws MongoDataException {
+        Map.Entry<String, Object[]> modifier = buildModifier();
+        if (modifier != null) {
+            repository.update(id, modifier.getKey(), false, false, modifier.getValue());
+        }
+    }
+
+    /**
+     * Adds the update to the given {@link BulkWriter} instead of executing it right away, so that the updates of
+     * several documents can be sent in a single request.
+     */
+    public void addUpdate(String id, BulkWriter<?> bulkWriter) throws MongoDataException {
+        Map.Entry<String, Object[]> modifier = buildModifier();
+        if (modifier != null) {
+            bulkWriter.updateById(id, modifier.getKey(), false, modifier.getValue());
+        }
+    }
+
+    /**
+     * Joins all the modifiers in a single template modifier.
+     *
+     * @return the template modifier and its params, or null if there's nothing to update
+     */
+    private Map.Entry<String, Object[]> buildModifier() {
         List<String> modifiers = new ArrayList<>();
         List<Map<String, Object>> params = new ArrayList<>();
 
+        buildModifiers(modifiers, params);
+
+        if(!modifiers.isEmpty() && !params.isEmpty()) {
+            String finalModifier = "{" + StringUtils.join(modifiers, ", ") + "}";
+            Object[] paramsArray = params.toArray(new Object[params.size()]);
+
+            return new AbstractMap.SimpleImmutableEntry<>(finalModifier, paramsArray);
+        } else {
+            return null;
+        }
+    }
+
+    protected void buildModifiers(List<String> modifiers, List<Map<String, Object>> params) {
         if (MapUtils.isNotEmpty(setValues)) {
             modifiers.add("$set: #");
             params.add(setValues);
@@ -84,13 +121,6 @@ public class UpdateHelper {
             modifiers.add("$pull: #");
             params.add(pullValues);
         }
-
-        if(!modifiers.isEmpty() && !params.isEmpty()) {
-            String finalModifier = "{" + StringUtils.join(modifiers, ", ") + "}";
-            Object[] paramsArray = params.toArray(new Object[params.size()]);
-
-            repository.update(id, finalModifier, false, false, paramsArray);
-        }
     }
 
     protected Map<String, Object> add(Map<String, Object> map, String field, Object value) {
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.mongo;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import com.mongodb.MongoException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link AsyncJongoRepository}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class AsyncJongoRepositoryTest {
+
+    private static final String QUERY = "{name: #}";
+
+    @Mock
+    private AbstractJongoRepository<TestPojo> repository;
+    private AsyncJongoRepository<TestPojo> asyncRepository;
+
+    @Before
+    public void setUp() throws Exception {
+        asyncRepository = new AsyncJongoRepository<>(repository, Runnable::run);
+    }
+
+    @Test
+    public void testFind() throws Exception {
+        TestPojo pojo1 = new TestPojo();
+        TestPojo pojo2 = new TestPojo();
+
+        when(repository.find(QUERY, "test")).thenReturn(Arrays.asList(pojo1, pojo2));
+
+        List<TestPojo> results = asyncRepository.find(QUERY, "test").get();
+
+        assertEquals(2, results.size());
+        assertSame(pojo1, results.get(0));
+    }
+
+    @Test
+    public void testExceptionMapping() throws Exception {
+        MongoDataException exception = new MongoDataException("error");
+
+        when(repository.findOne(QUERY, "test")).thenThrow(exception);
+
+        CompletableFuture<TestPojo> future = asyncRepository.findOne(QUERY, "test");
+        assertTrue(future.isCompletedExceptionally());
+
+        try {
+            future.get();
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertSame(exception, e.getCause());
+        }
+    }
+
+    @Test
+    public void testFindMapsIterationErrorsAndClosesCursor() throws Exception {
+        TestCursor cursor = new TestCursor(1, true);
+
+        when(repository.find(QUERY, "test")).thenReturn(cursor);
+
+        CompletableFuture<List<TestPojo>> future = asyncRepository.find(QUERY, "test");
+
+        try {
+            future.get();
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof MongoDataException);
+            assertTrue(e.getCause().getCause() instanceof MongoException);
+        }
+        assertTrue(cursor.closed);
+    }
+
+    @Test
+    public void testFindClosesCursor() throws Exception {
+        TestCursor cursor = new TestCursor(2, false);
+
+        when(repository.find(QUERY, "test")).thenReturn(cursor);
+
+        assertEquals(2, asyncRepository.find(QUERY, "test").get().size());
+        assertTrue(cursor.closed);
+    }
+
+    /**
+     * Lazy cursor that returns the given number of documents and then ends, or fails like a lost connection.
+     */
+    private static class TestCursor implements Iterable<TestPojo>, Closeable {
+
+        final int size;
+        final boolean fail;
+        boolean closed;
+
+        TestCursor(int size, boolean fail) {
+            this.size = size;
+            this.fail = fail;
+        }
+
+        @Override
+        public Iterator<TestPojo> iterator() {
+            return new Iterator<TestPojo>() {
+
+                int count;
+
+                @Override
+                public boolean hasNext() {
+                    if (count < size) {
+                        return true;
+                    }
+                    if (fail) {
+                        throw new MongoException("error");
+                    }
+                    return false;
+                }
+
+                @Override
+                public TestPojo next() {
+                    count++;
+                    return new TestPojo();
+                }
+
+            };
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+    }
+
+}
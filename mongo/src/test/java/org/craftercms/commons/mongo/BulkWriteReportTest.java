@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.mongo;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteError;
+import com.mongodb.BulkWriteResult;
+import com.mongodb.BulkWriteUpsert;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.craftercms.commons.mongo.BulkWriteOperationResult.OperationType;
+import org.craftercms.commons.mongo.BulkWriteOperationResult.Status;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link BulkWriteReport}.
+ */
+public class BulkWriteReportTest {
+
+    private static final List<OperationType> TYPES = Arrays.asList(OperationType.INSERT, OperationType.UPSERT,
+                                                                   OperationType.UPDATE, OperationType.REMOVE);
+
+    @Test
+    public void testSuccessfulBatch() {
+        BulkWriteReport report = new BulkWriteReport();
+        report.addBatch(TYPES, mockResult(1, 1, 1, 1, Collections.singletonList(new BulkWriteUpsert(1, "new"))),
+                        Collections.emptyList(), true);
+
+        assertFalse(report.hasErrors());
+        assertEquals(4, report.getResults().size());
+        assertEquals(1, report.getInsertedCount());
+        assertEquals(1, report.getUpsertedCount());
+        assertEquals("new", report.getResults().get(1).getUpsertedId());
+        assertTrue(report.getResults().stream().allMatch(BulkWriteOperationResult::isSuccess));
+    }
+
+    @Test
+    public void testOrderedBatchWithError() {
+        BulkWriteReport report = new BulkWriteReport();
+        report.addBatch(TYPES, mockResult(1, 0, 0, 0, Collections.emptyList()),
+                        Collections.singletonList(new BulkWriteError(11000, "duplicate", new BasicDBObject(), 1)),
+                        true);
+        report.addNotExecuted(Collections.singletonList(OperationType.INSERT));
+
+        List<BulkWriteOperationResult> results = report.getResults();
+
+        assertEquals(5, results.size());
+        assertEquals(Status.SUCCESS, results.get(0).getStatus());
+        assertEquals(Status.FAILED, results.get(1).getStatus());
+        assertEquals(11000, results.get(1).getErrorCode());
+        assertEquals(Status.NOT_EXECUTED, results.get(2).getStatus());
+        assertEquals(Status.NOT_EXECUTED, results.get(3).getStatus());
+        assertEquals(4, results.get(4).getIndex());
+        assertEquals(4, report.getFailedCount());
+    }
+
+    @Test
+    public void testUnorderedBatchWithError() {
+        BulkWriteReport report = new BulkWriteReport();
+        report.addBatch(TYPES, mockResult(1, 0, 1, 1, Collections.emptyList()),
+                        Collections.singletonList(new BulkWriteError(11000, "duplicate", new BasicDBObject(), 1)),
+                        false);
+
+        List<BulkWriteOperationResult> results = report.getResults();
+
+        assertEquals(Status.FAILED, results.get(1).getStatus());
+        assertEquals(Status.SUCCESS, results.get(2).getStatus());
+        assertEquals(Status.SUCCESS, results.get(3).getStatus());
+        assertEquals(1, report.getFailedCount());
+    }
+
+    private BulkWriteResult mockResult(int inserted, int matched, int modified, int removed,
+                                       List<BulkWriteUpsert> upserts) {
+        BulkWriteResult result = mock(BulkWriteResult.class);
+        when(result.isAcknowledged()).thenReturn(true);
+        when(result.getInsertedCount()).thenReturn(inserted);
+        when(result.getMatchedCount()).thenReturn(matched);
+        when(result.getModifiedCount()).thenReturn(modified);
+        when(result.getRemovedCount()).thenReturn(removed);
+        when(result.getUpserts()).thenReturn(upserts);
+
+        return result;
+    }
+
+}
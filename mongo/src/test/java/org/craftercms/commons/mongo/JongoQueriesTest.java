@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.mongo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ByteArrayResource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Unit tests for {@link JongoQueries}.
+ */
+public class JongoQueriesTest {
+
+    private static final String QUERIES_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                                              "<!DOCTYPE properties SYSTEM \"http://java.sun.com/dtd/properties.dtd\">\n" +
+                                              "<properties>\n" +
+                                              "    <entry key=\"byName\">\n" +
+                                              "        {name:   #,\n" +
+                                              "         enabled: true}\n" +
+                                              "    </entry>\n" +
+                                              "    <entry key=\"blank\">   </entry>\n" +
+                                              "</properties>";
+
+    private JongoQueries queries;
+
+    @Before
+    public void setUp() throws Exception {
+        queries = new JongoQueries();
+        queries.setResources(Collections.singletonList(new ByteArrayResource(
+            QUERIES_XML.getBytes(StandardCharsets.UTF_8))));
+        queries.init();
+    }
+
+    @Test
+    public void testNormalizedQueries() throws Exception {
+        assertEquals("{name: #, enabled: true}", queries.getNormalized("byName"));
+        assertNull(queries.getNormalized("blank"));
+        assertNull(queries.getNormalized("missing"));
+    }
+
+    @Test
+    public void testStatsSurviveReload() throws Exception {
+        QueryStats stats = queries.getStatsForQuery(queries.getNormalized("byName"));
+        stats.recordExecution(3_000_000);
+
+        queries.reload();
+
+        assertSame(stats, queries.getStatsForQuery(queries.getNormalized("byName")));
+        assertEquals(1, stats.getCount());
+        assertEquals(1, stats.getBucketCounts()[2]);
+    }
+
+}
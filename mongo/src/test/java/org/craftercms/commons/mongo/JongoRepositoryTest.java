@@ -16,9 +16,35 @@
 
 package org.craftercms.commons.mongo;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+import com.mongodb.gridfs.GridFS;
+import org.jongo.Find;
+import org.jongo.MongoCollection;
+import org.jongo.MongoCursor;
 import org.junit.Assert;
 import org.junit.Test;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
 /**
  * Created by cortiz on 1/10/14.
  */
@@ -26,6 +52,7 @@ public class JongoRepositoryTest {
 
     private static final String COLLECTION_NAME = "testPojo";
     public static final String TESTPOJO = "testpojo";
+    private static final String QUERY = "{name: #}";
 
     @Test
     public void testAnnotatedPojoRepository() throws Exception {
@@ -42,6 +69,183 @@ public class JongoRepositoryTest {
 
     }
 
+    @Test
+    public void testEscapeRegex() throws Exception {
+        TestSimple repository = new TestSimple();
+        Assert.assertEquals("report\\(1\\)\\.pdf", repository.escapeRegex("report(1).pdf"));
+        Assert.assertEquals("a\\\\b\\*", repository.escapeRegex("a\\b*"));
+    }
+
+    @Test
+    public void testFindStream() throws Exception {
+        TestPojo pojo1 = new TestPojo();
+        TestPojo pojo2 = new TestPojo();
+        MockedCollection repository = new MockedCollection();
+        Find find = repository.mockFind(QUERY, "test");
+        MongoCursor<TestPojo> cursor = repository.mockCursor(find);
+        when(cursor.hasNext()).thenReturn(true, true, false);
+        when(cursor.next()).thenReturn(pojo1, pojo2);
+
+        List<TestPojo> results;
+        try (Stream<TestPojo> stream = repository.findStream(QUERY, null, 0, "test")) {
+            results = stream.collect(Collectors.toList());
+        }
+
+        Assert.assertEquals(List.of(pojo1, pojo2), results);
+        verify(cursor, atLeastOnce()).close();
+    }
+
+    @Test
+    public void testFindStreamMapsIterationErrors() throws Exception {
+        MockedCollection repository = new MockedCollection();
+        Find find = repository.mockFind(QUERY, "test");
+        MongoCursor<TestPojo> cursor = repository.mockCursor(find);
+        when(cursor.hasNext()).thenReturn(true);
+        when(cursor.next()).thenReturn(new TestPojo()).thenThrow(new MongoException("error"));
+
+        try (Stream<TestPojo> stream = repository.findStream(QUERY, null, 0, "test")) {
+            stream.forEach(pojo -> {});
+            Assert.fail("Expected UncheckedMongoDataException");
+        } catch (UncheckedMongoDataException e) {
+            Assert.assertTrue(e.getCause().getCause() instanceof MongoException);
+        }
+
+        verify(cursor, atLeastOnce()).close();
+    }
+
+    @Test
+    public void testFindEachMapsIterationErrors() throws Exception {
+        MockedCollection repository = new MockedCollection();
+        Find find = repository.mockFind(QUERY, "test");
+        MongoCursor<TestPojo> cursor = repository.mockCursor(find);
+        when(cursor.hasNext()).thenReturn(true).thenThrow(new MongoException("error"));
+        when(cursor.next()).thenReturn(new TestPojo());
+
+        List<TestPojo> results = new ArrayList<>();
+        try {
+            repository.findEach(QUERY, null, 0, results::add, "test");
+            Assert.fail("Expected MongoDataException");
+        } catch (MongoDataException e) {
+            Assert.assertTrue(e.getCause() instanceof MongoException);
+        }
+
+        Assert.assertEquals(1, results.size());
+        verify(cursor, atLeastOnce()).close();
+    }
+
+    @Test
+    public void testFindPageAfter() throws Exception {
+        TestPojo pojo = new TestPojo();
+        MockedCollection repository = new MockedCollection();
+
+        Find firstPage = repository.mockFind(QUERY, "test");
+        MongoCursor<TestPojo> firstCursor = repository.mockCursor(firstPage);
+        when(firstCursor.hasNext()).thenReturn(true, false);
+        when(firstCursor.next()).thenReturn(pojo);
+
+        Assert.assertEquals(List.of(pojo), repository.findPageAfter(QUERY, "_id", true, null, 2, "test"));
+        verify(firstPage).sort("{\"_id\":1}");
+        verify(firstPage).limit(2);
+
+        Find nextPage = repository.mockFind("{$and: [" + QUERY + ", {\"_id\": {$lt: #}}]}", "test", "last");
+        MongoCursor<TestPojo> nextCursor = repository.mockCursor(nextPage);
+        when(nextCursor.hasNext()).thenReturn(false);
+
+        Assert.assertTrue(repository.findPageAfter(QUERY, "_id", false, "last", 2, "test").isEmpty());
+        verify(nextPage).sort("{\"_id\":-1}");
+        verify(nextCursor, atLeastOnce()).close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindPageAfterRejectsInvalidPageSize() throws Exception {
+        new MockedCollection().findPageAfter(QUERY, "_id", true, null, 0, "test");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindPageAfterRejectsInvalidKeyField() throws Exception {
+        new MockedCollection().findPageAfter(QUERY, "_id\": {$ne: 1}, \"name", true, "last", 10, "test");
+    }
+
+    @Test
+    public void testNamedQueryExecutionsAreRecorded() throws Exception {
+        QueryStats stats = new QueryStats("byName");
+        JongoQueries queries = mock(JongoQueries.class);
+        when(queries.getStatsForQuery(QUERY)).thenReturn(stats);
+
+        MockedCollection repository = new MockedCollection();
+        repository.setQueries(queries);
+        when(repository.collection.insert(QUERY, "test")).thenThrow(new MongoException("error"));
+        repository.mockCursor(repository.mockFind(QUERY, "test"));
+
+        repository.remove(QUERY, "test");
+        repository.findStream(QUERY, null, 0, "test").close();
+        try {
+            repository.save(QUERY, "test");
+            Assert.fail("Expected MongoDataException");
+        } catch (MongoDataException e) {
+            // expected
+        }
+
+        Assert.assertEquals(3, stats.getCount());
+        Assert.assertEquals(1, stats.getErrorCount());
+    }
+
+    @Test
+    public void testListFilesByNamePrefix() throws Exception {
+        MockedCollection repository = new MockedCollection();
+        DBCursor cursor = repository.mockFileList();
+
+        repository.listFilesByNamePrefix("report(1)", 0, 0);
+        repository.listFilesByNamePrefix("report(1)", 0, 0);
+
+        verify(repository.gridfs, times(2)).getFileList(
+            new BasicDBObject("filename", new BasicDBObject("$regex", "^report\\(1\\)")),
+            new BasicDBObject("filename", 1));
+        // Lookups never create indexes
+        verify(repository.filesCollection, never()).createIndex(any(DBObject.class));
+        verify(cursor, never()).skip(anyInt());
+        verify(cursor, never()).limit(anyInt());
+    }
+
+    @Test
+    public void testListFilesByNamePagination() throws Exception {
+        MockedCollection repository = new MockedCollection();
+        DBCursor cursor = repository.mockFileList();
+
+        repository.listFilesByName("report", 20, 10);
+
+        verify(repository.gridfs).getFileList(new BasicDBObject("filename", new BasicDBObject("$regex", "report")),
+                                              new BasicDBObject("filename", 1));
+        verify(cursor).skip(20);
+        verify(cursor).limit(10);
+        verify(cursor).close();
+    }
+
+    @Test
+    public void testListFilesByNameWithTextSearch() throws Exception {
+        MockedCollection repository = new MockedCollection();
+        repository.setTextFileNameSearch(true);
+        repository.mockFileList();
+
+        repository.listFilesByName("report", 0, 10);
+
+        verify(repository.gridfs).getFileList(new BasicDBObject("$text", new BasicDBObject("$search", "report")),
+                                              new BasicDBObject("filename", 1));
+        verify(repository.filesCollection, never()).createIndex(any(DBObject.class));
+    }
+
+    @Test
+    public void testEnsureIndexes() throws Exception {
+        MockedCollection repository = new MockedCollection();
+
+        repository.ensureIndexes();
+        verify(repository.filesCollection, never()).createIndex(any(DBObject.class));
+
+        repository.setTextFileNameSearch(true);
+        repository.ensureIndexes();
+        verify(repository.filesCollection).createIndex(new BasicDBObject("filename", "text"));
+    }
+
     private class TestAnnotated extends AbstractJongoRepository<TestAnnotatedPojo>{
 
         /**
@@ -60,4 +264,44 @@ public class JongoRepositoryTest {
         }
     }
 
+    private class MockedCollection extends AbstractJongoRepository<TestPojo> {
+
+        private final MongoCollection collection = mock(MongoCollection.class);
+        private final DBCollection filesCollection = mock(DBCollection.class);
+
+        public MockedCollection() throws Exception {
+            init();
+            gridfs = mock(GridFS.class);
+            when(gridfs.getFilesCollection()).thenReturn(filesCollection);
+        }
+
+        @Override
+        protected MongoCollection getCollection() {
+            return collection;
+        }
+
+        Find mockFind(String query, Object... params) {
+            Find find = mock(Find.class);
+            when(collection.find(query, params)).thenReturn(find);
+            when(find.sort(anyString())).thenReturn(find);
+            when(find.limit(anyInt())).thenReturn(find);
+            return find;
+        }
+
+        DBCursor mockFileList() {
+            DBCursor cursor = mock(DBCursor.class);
+            when(gridfs.getFileList(any(DBObject.class), any(DBObject.class))).thenReturn(cursor);
+            when(cursor.iterator()).thenReturn(Collections.emptyIterator());
+            return cursor;
+        }
+
+        @SuppressWarnings("unchecked")
+        MongoCursor<TestPojo> mockCursor(Find find) {
+            MongoCursor<TestPojo> cursor = mock(MongoCursor.class);
+            doReturn(cursor).when(find).as(TestPojo.class);
+            return cursor;
+        }
+
+    }
+
 }
\ No newline at end of file
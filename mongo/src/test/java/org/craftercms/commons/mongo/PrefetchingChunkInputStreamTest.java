@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.mongo;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.apache.commons.io.IOUtils;
+import org.bson.BsonBinary;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link PrefetchingChunkInputStream}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class PrefetchingChunkInputStreamTest {
+
+    private static final int CHUNK_SIZE = 4;
+    private static final byte[] CONTENT = "0123456789abcdefghij".getBytes();
+
+    @Mock
+    private MongoCollection<BsonDocument> chunks;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        when(chunks.find(any(Bson.class))).thenAnswer(invocation -> {
+            BsonDocument filter = invocation.<Bson>getArgument(0).toBsonDocument(
+                BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+            int n = filter.getArray("$and").get(1).asDocument().getInt32("n").getValue();
+            int start = n * CHUNK_SIZE;
+
+            BsonDocument chunk = new BsonDocument("n", new BsonInt32(n))
+                .append("data", new BsonBinary(Arrays.copyOfRange(CONTENT, start,
+                                                                  Math.min(CONTENT.length, start + CHUNK_SIZE))));
+
+            FindIterable<BsonDocument> iterable = mock(FindIterable.class);
+            when(iterable.first()).thenReturn(chunk);
+
+            return iterable;
+        });
+    }
+
+    @Test
+    public void testReadWholeFile() throws Exception {
+        try (InputStream in = open(0, CONTENT.length, 2)) {
+            assertArrayEquals(CONTENT, IOUtils.toByteArray(in));
+        }
+    }
+
+    @Test
+    public void testReadRange() throws Exception {
+        try (InputStream in = open(6, 13, 3)) {
+            assertArrayEquals("6789abc".getBytes(), IOUtils.toByteArray(in));
+        }
+    }
+
+    private InputStream open(long offset, long end, int window) {
+        return new PrefetchingChunkInputStream(chunks, ObjectId.get(), CHUNK_SIZE, offset, end, window,
+                                               Runnable::run);
+    }
+
+}
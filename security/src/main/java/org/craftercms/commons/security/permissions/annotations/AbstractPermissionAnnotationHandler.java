@@ -16,6 +16,8 @@
 package org.craftercms.commons.security.permissions.annotations;
 
 import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.craftercms.commons.aop.AopUtils;
 import org.craftercms.commons.security.exception.PermissionException;
 import org.craftercms.commons.security.permissions.PermissionEvaluator;
 import org.springframework.core.annotation.AnnotationUtils;
@@ -25,6 +27,9 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Base class for Permission Annotation Handlers.
@@ -35,10 +40,50 @@ public abstract class AbstractPermissionAnnotationHandler {
 
     protected final Map<Class<?>, PermissionEvaluator<?, ?>> permissionEvaluators;
 
+    /**
+     * Descriptors of the intercepted methods, by signature method and target class
+     */
+    protected final ConcurrentMap<MethodKey, ProtectedMethodDescriptor<?>> methodDescriptors =
+        new ConcurrentHashMap<>();
+
     public AbstractPermissionAnnotationHandler(Map<Class<?>, PermissionEvaluator<?, ?>> permissionEvaluators) {
         this.permissionEvaluators = permissionEvaluators;
     }
 
+    /**
+     * Returns the descriptor of the method being intercepted, resolving it only the first time the method is
+     * intercepted for the target class.
+     *
+     * @param pjp            the join point
+     * @param annotationType the desired annotation type
+     * @param <T>            the annotation type
+     * @return the descriptor of the actual method
+     */
+    @SuppressWarnings("unchecked")
+    protected <T extends Annotation> ProtectedMethodDescriptor<T> getMethodDescriptor(ProceedingJoinPoint pjp,
+                                                                                      Class<T> annotationType) {
+        Method signatureMethod = ((MethodSignature) pjp.getSignature()).getMethod();
+        Class<?> targetClass = getTargetClass(pjp);
+
+        return (ProtectedMethodDescriptor<T>) methodDescriptors.computeIfAbsent(
+            new MethodKey(signatureMethod, targetClass, annotationType),
+            // Static methods (intercepted with AspectJ weaving) have no target, and can't be overridden
+            key -> ProtectedMethodDescriptor.of(pjp.getTarget() != null? AopUtils.getActualMethod(pjp) :
+                                                signatureMethod, targetClass, annotationType));
+    }
+
+    /**
+     * Returns the class of the target of the join point, or the class that declares the method if there's no target
+     * (e.g. for static methods).
+     *
+     * @param pjp the join point
+     * @return the target class
+     */
+    protected Class<?> getTargetClass(ProceedingJoinPoint pjp) {
+        Object target = pjp.getTarget();
+        return target != null? target.getClass() : pjp.getSignature().getDeclaringType();
+    }
+
     /**
      * Get a permission annotation of the given type from the given method or its containing class if exists
      *
@@ -52,7 +97,7 @@ public abstract class AbstractPermissionAnnotationHandler {
         T hasPermission = method.getAnnotation(annotationType);
 
         if (hasPermission == null) {
-            Class<?> targetClass = pjp.getTarget().getClass();
+            Class<?> targetClass = getTargetClass(pjp);
             hasPermission = targetClass.getAnnotation(annotationType);
         }
 
@@ -131,4 +176,39 @@ public abstract class AbstractPermissionAnnotationHandler {
             throw new PermissionException(ERROR_KEY_EVALUATION_FAILED, e);
         }
     }
+
+    protected static class MethodKey {
+
+        protected final Method method;
+        protected final Class<?> targetClass;
+        protected final Class<?> annotationType;
+
+        protected MethodKey(Method method, Class<?> targetClass, Class<?> annotationType) {
+            this.method = method;
+            this.targetClass = targetClass;
+            this.annotationType = annotationType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            MethodKey that = (MethodKey) o;
+            return method.equals(that.method) &&
+                   targetClass == that.targetClass &&
+                   annotationType == that.annotationType;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(method, targetClass, annotationType);
+        }
+
+    }
+
 }
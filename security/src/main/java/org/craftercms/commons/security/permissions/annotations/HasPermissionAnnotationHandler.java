@@ -19,7 +19,6 @@ import org.apache.commons.lang3.StringUtils;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
-import org.craftercms.commons.aop.AopUtils;
 import org.craftercms.commons.http.RequestContext;
 import org.craftercms.commons.i10n.I10nLogger;
 import org.craftercms.commons.security.exception.ActionDeniedException;
@@ -64,11 +63,13 @@ public class HasPermissionAnnotationHandler extends AbstractPermissionAnnotation
     @Around("@within(org.craftercms.commons.security.permissions.annotations.HasPermission) || " +
             "@annotation(org.craftercms.commons.security.permissions.annotations.HasPermission)")
     public Object checkPermissions(ProceedingJoinPoint pjp) throws Throwable {
-        Method method = AopUtils.getActualMethod(pjp);
-        HasPermission hasPermission = getHasPermissionAnnotation(method, pjp, HasPermission.class);
-        Object securedResource = getAnnotatedProtectedResource(method, pjp.getArgs());
+        ProtectedMethodDescriptor<HasPermission> descriptor = getMethodDescriptor(pjp, HasPermission.class);
+        Method method = descriptor.getMethod();
+        HasPermission hasPermission = descriptor.getAnnotation();
+        Object[] args = pjp.getArgs();
+        Object securedResource = descriptor.getProtectedResource(args);
         if (securedResource == null) {
-            securedResource = getAnnotatedProtectedResourceIds(method, pjp.getArgs());
+            securedResource = descriptor.getProtectedResourceIds(args);
         }
 
         if (securedResource != null) {
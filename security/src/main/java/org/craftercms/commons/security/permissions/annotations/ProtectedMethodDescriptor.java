@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.security.permissions.annotations;
+
+import org.springframework.core.annotation.AnnotationUtils;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable permission metadata of a protected method: the permission annotation (from the method or its class), the
+ * index of the {@link ProtectedResource} parameter and the names of the {@link ProtectedResourceId} parameters.
+ * Resolved once per method and target class, so that the permission checks don't need any reflection afterwards.
+ *
+ * @param <T> the permission annotation type
+ * @since 4.2.0
+ */
+public class ProtectedMethodDescriptor<T extends Annotation> {
+
+    private final Method method;
+    private final T annotation;
+    private final int protectedResourceIndex;
+    private final String[] protectedResourceIdNames;
+    private final boolean hasProtectedResourceIds;
+
+    protected ProtectedMethodDescriptor(Method method, T annotation, int protectedResourceIndex,
+                                        String[] protectedResourceIdNames) {
+        this.method = method;
+        this.annotation = annotation;
+        this.protectedResourceIndex = protectedResourceIndex;
+        this.protectedResourceIdNames = protectedResourceIdNames;
+
+        boolean hasIds = false;
+        for (String name : protectedResourceIdNames) {
+            if (name != null) {
+                hasIds = true;
+                break;
+            }
+        }
+        this.hasProtectedResourceIds = hasIds;
+    }
+
+    /**
+     * Resolves the descriptor of the given method.
+     *
+     * @param method         the actual (implementation) method
+     * @param targetClass    the class of the target object, checked for the annotation if the method doesn't have it
+     * @param annotationType the permission annotation type
+     * @param <T>            the permission annotation type
+     * @return the descriptor of the method
+     */
+    public static <T extends Annotation> ProtectedMethodDescriptor<T> of(Method method, Class<?> targetClass,
+                                                                         Class<T> annotationType) {
+        T annotation = method.getAnnotation(annotationType);
+        if (annotation == null) {
+            annotation = targetClass.getAnnotation(annotationType);
+        }
+
+        int protectedResourceIndex = -1;
+        Annotation[][] paramAnnotations = method.getParameterAnnotations();
+
+        for (int i = 0; i < paramAnnotations.length && protectedResourceIndex < 0; i++) {
+            for (Annotation a : paramAnnotations[i]) {
+                if (a instanceof ProtectedResource) {
+                    protectedResourceIndex = i;
+                    break;
+                }
+            }
+        }
+
+        Parameter[] params = method.getParameters();
+        String[] protectedResourceIdNames = new String[params.length];
+
+        for (int i = 0; i < params.length; i++) {
+            ProtectedResourceId resourceIdAnnotation = AnnotationUtils.findAnnotation(params[i],
+                                                                                      ProtectedResourceId.class);
+            if (resourceIdAnnotation != null) {
+                protectedResourceIdNames[i] = resourceIdAnnotation.value();
+            }
+        }
+
+        return new ProtectedMethodDescriptor<>(method, annotation, protectedResourceIndex, protectedResourceIdNames);
+    }
+
+    /**
+     * Returns the actual (implementation) method.
+     */
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Returns the permission annotation of the method or its class, or null if none found.
+     */
+    public T getAnnotation() {
+        return annotation;
+    }
+
+    /**
+     * Returns the index of the {@link ProtectedResource} parameter, or -1 if there's none.
+     */
+    public int getProtectedResourceIndex() {
+        return protectedResourceIndex;
+    }
+
+    /**
+     * Returns the protected resource (parameter annotated with {@link ProtectedResource}) from the given arguments.
+     *
+     * @param args the method arguments
+     * @return the protected resource, or null if none found
+     */
+    public Object getProtectedResource(Object[] args) {
+        return protectedResourceIndex >= 0? args[protectedResourceIndex] : null;
+    }
+
+    /**
+     * Returns the protected resource ids (parameters annotated with {@link ProtectedResourceId}) from the given
+     * arguments.
+     *
+     * @param args the method arguments
+     * @return a map with the protected resource ids, or null if the method has none
+     */
+    public Map<String, Object> getProtectedResourceIds(Object[] args) {
+        if (!hasProtectedResourceIds) {
+            return null;
+        }
+
+        Map<String, Object> resourceIds = new HashMap<>();
+        for (int i = 0; i < protectedResourceIdNames.length; i++) {
+            if (protectedResourceIdNames[i] != null) {
+                resourceIds.put(protectedResourceIdNames[i], args[i]);
+            }
+        }
+
+        return resourceIds;
+    }
+
+}
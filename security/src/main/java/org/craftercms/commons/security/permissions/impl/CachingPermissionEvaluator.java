@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.security.permissions.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import jakarta.servlet.http.HttpServletRequest;
+import org.craftercms.commons.http.RequestContext;
+import org.craftercms.commons.i10n.I10nLogger;
+import org.craftercms.commons.security.exception.PermissionException;
+import org.craftercms.commons.security.exception.SubjectNotFoundException;
+import org.craftercms.commons.security.permissions.PermissionEvaluator;
+import org.craftercms.commons.security.permissions.SubjectResolver;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * {@link PermissionEvaluator} decorator that caches the decisions of the underlying evaluator, so that the permission
+ * of a subject on a resource is not resolved again and again (usually a DB or profile lookup) for every protected
+ * method call.
+ *
+ * <p>Decisions are cached at two levels: in the current HTTP request (if there's one bound to the thread through
+ * {@link RequestContext}), so they're never resolved twice in the same request, and in a shared cache bounded by
+ * size and TTL. The shared cache can be disabled by setting a TTL of 0. Decisions are keyed by subject, resource and
+ * action, where the subject and resource keys are generated by {@link #setSubjectKeyGenerator(Function)} and
+ * {@link #setResourceKeyGenerator(Function)} (the objects themselves by default, so they should implement
+ * {@code equals} and {@code hashCode}). Exceptions thrown by the underlying evaluator are never cached.</p>
+ *
+ * @param <S> the subject type
+ * @param <R> the resource type
+ * @since 4.2.0
+ */
+public class CachingPermissionEvaluator<S, R> implements PermissionEvaluator<S, R> {
+
+    private static final I10nLogger logger = new I10nLogger(CachingPermissionEvaluator.class,
+                                                            "crafter.security.messages.logging");
+
+    private static final String LOG_KEY_CACHED_DECISION = "security.permission.usingCachedDecision";
+
+    public static final long DEFAULT_CACHE_MAX_SIZE = 10000;
+    public static final long DEFAULT_CACHE_TTL_SECONDS = 60;
+
+    public static final String REQUEST_CACHE_ATTRIBUTE = CachingPermissionEvaluator.class.getName() + ".cache";
+
+    /**
+     * Key used for the global permission (null resource)
+     */
+    protected static final Object GLOBAL_RESOURCE_KEY = new Object();
+
+    protected SubjectResolver<S> subjectResolver;
+    protected PermissionEvaluator<S, R> actualEvaluator;
+    protected Function<S, Object> subjectKeyGenerator = subject -> subject;
+    protected Function<R, Object> resourceKeyGenerator = resource -> resource;
+    protected boolean requestCacheEnabled = true;
+
+    protected Cache<DecisionKey, Boolean> cache;
+
+    protected final LongAdder requestHits = new LongAdder();
+    protected final LongAdder hits = new LongAdder();
+    protected final LongAdder misses = new LongAdder();
+
+    public CachingPermissionEvaluator(SubjectResolver<S> subjectResolver, PermissionEvaluator<S, R> actualEvaluator) {
+        this(subjectResolver, actualEvaluator, DEFAULT_CACHE_MAX_SIZE, DEFAULT_CACHE_TTL_SECONDS);
+    }
+
+    public CachingPermissionEvaluator(SubjectResolver<S> subjectResolver, PermissionEvaluator<S, R> actualEvaluator,
+                                      long cacheMaxSize, long cacheTtlSeconds) {
+        this.subjectResolver = subjectResolver;
+        this.actualEvaluator = actualEvaluator;
+
+        if (cacheTtlSeconds > 0) {
+            this.cache = CacheBuilder.newBuilder()
+                                     .maximumSize(cacheMaxSize)
+                                     .expireAfterWrite(cacheTtlSeconds, TimeUnit.SECONDS)
+                                     .build();
+        }
+    }
+
+    public void setSubjectKeyGenerator(Function<S, Object> subjectKeyGenerator) {
+        this.subjectKeyGenerator = subjectKeyGenerator;
+    }
+
+    public void setResourceKeyGenerator(Function<R, Object> resourceKeyGenerator) {
+        this.resourceKeyGenerator = resourceKeyGenerator;
+    }
+
+    public void setRequestCacheEnabled(boolean requestCacheEnabled) {
+        this.requestCacheEnabled = requestCacheEnabled;
+    }
+
+    @Override
+    public boolean isAllowed(R resource, String action) throws PermissionException {
+        S subject = subjectResolver.getCurrentSubject();
+        if (subject == null) {
+            throw new SubjectNotFoundException();
+        }
+
+        return isAllowed(subject, resource, action);
+    }
+
+    @Override
+    public boolean isAllowed(S subject, R resource, String action) throws PermissionException {
+        DecisionKey key = new DecisionKey(subjectKeyGenerator.apply(subject), getResourceKey(resource), action);
+
+        Map<DecisionKey, Boolean> requestCache = getRequestCache();
+        Boolean allowed = requestCache != null? requestCache.get(key) : null;
+        if (allowed != null) {
+            requestHits.increment();
+            logger.debug(LOG_KEY_CACHED_DECISION, allowed, action, subject, resource);
+
+            return allowed;
+        }
+
+        allowed = cache != null? cache.getIfPresent(key) : null;
+        if (allowed != null) {
+            hits.increment();
+            logger.debug(LOG_KEY_CACHED_DECISION, allowed, action, subject, resource);
+        } else {
+            misses.increment();
+
+            allowed = actualEvaluator.isAllowed(subject, resource, action);
+            if (cache != null) {
+                cache.put(key, allowed);
+            }
+        }
+
+        if (requestCache != null) {
+            requestCache.put(key, allowed);
+        }
+
+        return allowed;
+    }
+
+    /**
+     * Removes all cached decisions, including the ones of the current request.
+     */
+    public void invalidateAll() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+
+        Map<DecisionKey, Boolean> requestCache = getRequestCache();
+        if (requestCache != null) {
+            requestCache.clear();
+        }
+    }
+
+    /**
+     * Removes the cached decisions of the given subject (e.g. when its roles change).
+     */
+    public void invalidateSubject(S subject) {
+        Object subjectKey = subjectKeyGenerator.apply(subject);
+
+        invalidateIf(key -> Objects.equals(key.subject, subjectKey));
+    }
+
+    /**
+     * Removes the cached decisions on the given resource (e.g. when its ACL changes). A null resource removes the
+     * cached decisions of the global permissions.
+     */
+    public void invalidateResource(R resource) {
+        Object resourceKey = getResourceKey(resource);
+
+        invalidateIf(key -> Objects.equals(key.resource, resourceKey));
+    }
+
+    public long getRequestHitCount() {
+        return requestHits.sum();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public double getHitRate() {
+        long hitCount = requestHits.sum() + hits.sum();
+        long total = hitCount + misses.sum();
+
+        return total == 0? 1.0 : (double) hitCount / total;
+    }
+
+    public long getSize() {
+        return cache != null? cache.size() : 0;
+    }
+
+    protected Object getResourceKey(R resource) {
+        return resource != null? resourceKeyGenerator.apply(resource) : GLOBAL_RESOURCE_KEY;
+    }
+
+    protected void invalidateIf(Predicate<DecisionKey> predicate) {
+        if (cache != null) {
+            cache.asMap().keySet().removeIf(predicate);
+        }
+
+        Map<DecisionKey, Boolean> requestCache = getRequestCache();
+        if (requestCache != null) {
+            requestCache.keySet().removeIf(predicate);
+        }
+    }
+
+    /**
+     * Returns the decision cache of the current request, creating it if it doesn't exist yet, or null if there's no
+     * current request or the request cache is disabled.
+     */
+    @SuppressWarnings("unchecked")
+    protected Map<DecisionKey, Boolean> getRequestCache() {
+        if (!requestCacheEnabled) {
+            return null;
+        }
+
+        RequestContext context = RequestContext.getCurrent();
+        if (context == null || context.getRequest() == null) {
+            return null;
+        }
+
+        HttpServletRequest request = context.getRequest();
+        Map<DecisionKey, Boolean> requestCache = (Map<DecisionKey, Boolean>) request.getAttribute(
+            REQUEST_CACHE_ATTRIBUTE);
+        if (requestCache == null) {
+            requestCache = new HashMap<>();
+            request.setAttribute(REQUEST_CACHE_ATTRIBUTE, requestCache);
+        }
+
+        return requestCache;
+    }
+
+    protected static class DecisionKey {
+
+        protected final Object subject;
+        protected final Object resource;
+        protected final String action;
+
+        protected DecisionKey(Object subject, Object resource, String action) {
+            this.subject = subject;
+            this.resource = resource;
+            this.action = action;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            DecisionKey that = (DecisionKey) o;
+            return Objects.equals(subject, that.subject) &&
+                   Objects.equals(resource, that.resource) &&
+                   Objects.equals(action, that.action);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(subject, resource, action);
+        }
+
+    }
+
+}
@@ -15,12 +15,16 @@
  */
 package org.craftercms.commons.security.permissions;
 
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.craftercms.commons.http.RequestContext;
 import org.craftercms.commons.security.exception.ActionDeniedException;
 import org.craftercms.commons.security.exception.PermissionException;
 import org.craftercms.commons.security.permissions.annotations.HasPermission;
 import org.craftercms.commons.security.permissions.annotations.HasPermissionAnnotationHandler;
+import org.craftercms.commons.security.permissions.annotations.ProtectedMethodDescriptor;
 import org.craftercms.commons.security.permissions.annotations.ProtectedResource;
+import org.craftercms.commons.security.permissions.annotations.ProtectedResourceId;
 import org.craftercms.commons.security.permissions.impl.PermissionEvaluatorImpl;
 import org.junit.Before;
 import org.junit.Test;
@@ -154,6 +158,58 @@ public class HasPermissionAnnotationHandlerTest {
         service.doSomethingNoTokenAllowed();
     }
 
+    @Test
+    public void testStaticMethod() throws Throwable {
+        // Static methods intercepted with AspectJ weaving have no target
+        MethodSignature signature = mock(MethodSignature.class);
+        when(signature.getMethod()).thenReturn(MockSecuredServiceImpl.class.getMethod("doSomethingStatic"));
+        when(signature.getDeclaringType()).thenReturn(MockSecuredServiceImpl.class);
+
+        ProceedingJoinPoint pjp = mock(ProceedingJoinPoint.class);
+        when(pjp.getSignature()).thenReturn(signature);
+        when(pjp.getArgs()).thenReturn(new Object[0]);
+        when(pjp.proceed()).thenReturn(MockSecuredServiceImpl.doSomethingStatic());
+
+        subjectResolver.subject = "user2";
+
+        assertEquals("I did something static", annotationHandler.checkPermissions(pjp));
+
+        subjectResolver.subject = "user1";
+
+        try {
+            annotationHandler.checkPermissions(pjp);
+            fail("ActionDeniedException expected");
+        } catch (ActionDeniedException e) {
+            // expected, so continue
+        }
+    }
+
+    @Test
+    public void testMethodDescriptor() throws Exception {
+        ProtectedMethodDescriptor<HasPermission> descriptor = ProtectedMethodDescriptor.of(
+            MockSecuredServiceImpl.class.getMethod("doSomethingWithObject", MockProtectedResource.class),
+            MockSecuredServiceImpl.class, HasPermission.class);
+        MockProtectedResource object1 = new MockProtectedResource();
+
+        assertEquals("doSomething", descriptor.getAnnotation().action());
+        assertEquals(0, descriptor.getProtectedResourceIndex());
+        assertSame(object1, descriptor.getProtectedResource(new Object[] { object1 }));
+        assertNull(descriptor.getProtectedResourceIds(new Object[] { object1 }));
+
+        descriptor = ProtectedMethodDescriptor.of(
+            MockSecuredServiceImpl.class.getMethod("doSomethingWithIds", String.class, int.class, String.class),
+            MockSecuredServiceImpl.class, HasPermission.class);
+
+        assertEquals("doSomethingWithIds", descriptor.getAnnotation().action());
+        assertEquals(-1, descriptor.getProtectedResourceIndex());
+
+        Map<String, Object> ids = descriptor.getProtectedResourceIds(new Object[] { "site1", 1, "/path" });
+
+        assertEquals(2, ids.size());
+        assertEquals("site1", ids.get("site"));
+        assertEquals("/path", ids.get("path"));
+    }
+
     private void createTestAnnotationHandler() throws PermissionException {
         Map<Class<?>, PermissionEvaluator<?, ?>> evaluators = new HashMap<>(1);
         evaluators.put(DefaultPermission.class, createTestPermissionEvaluator());
@@ -250,6 +306,11 @@ public class HasPermissionAnnotationHandlerTest {
             return "I did yet another thing";
         }
 
+        @HasPermission(type = DefaultPermission.class, action = "doYetAnotherThing")
+        public static String doSomethingStatic() {
+            return "I did something static";
+        }
+
         @HasPermission(type = Permission.class, action = "doSomething")
         public void doSomethingWrongPermissionType() {
         }
@@ -264,6 +325,12 @@ public class HasPermissionAnnotationHandlerTest {
             return "valid";
         }
 
+        @HasPermission(type = DefaultPermission.class, action = "doSomethingWithIds")
+        public String doSomethingWithIds(@ProtectedResourceId("site") String site, int count,
+                                         @ProtectedResourceId("path") String path) {
+            return "valid";
+        }
+
     }
 
 }
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.security.permissions.impl;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.craftercms.commons.http.RequestContext;
+import org.craftercms.commons.security.permissions.PermissionEvaluator;
+import org.craftercms.commons.security.permissions.SubjectResolver;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings("unchecked")
+public class CachingPermissionEvaluatorTest {
+
+    private SubjectResolver<String> subjectResolver;
+    private PermissionEvaluator<String, String> actualEvaluator;
+
+    @Before
+    public void setUp() throws Exception {
+        subjectResolver = mock(SubjectResolver.class);
+        when(subjectResolver.getCurrentSubject()).thenReturn("user1");
+
+        actualEvaluator = mock(PermissionEvaluator.class);
+        when(actualEvaluator.isAllowed("user1", "doc1", "read")).thenReturn(true);
+        when(actualEvaluator.isAllowed("user1", "doc1", "write")).thenReturn(false);
+    }
+
+    @After
+    public void tearDown() {
+        RequestContext.clear();
+    }
+
+    @Test
+    public void testDecisionsAreCached() throws Exception {
+        CachingPermissionEvaluator<String, String> evaluator =
+            new CachingPermissionEvaluator<>(subjectResolver, actualEvaluator);
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(evaluator.isAllowed("doc1", "read"));
+            assertFalse(evaluator.isAllowed("doc1", "write"));
+        }
+
+        verify(actualEvaluator, times(1)).isAllowed("user1", "doc1", "read");
+        verify(actualEvaluator, times(1)).isAllowed("user1", "doc1", "write");
+        assertEquals(4, evaluator.getHitCount());
+        assertEquals(2, evaluator.getMissCount());
+        assertEquals(2, evaluator.getSize());
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        CachingPermissionEvaluator<String, String> evaluator =
+            new CachingPermissionEvaluator<>(subjectResolver, actualEvaluator);
+
+        assertTrue(evaluator.isAllowed("doc1", "read"));
+        evaluator.invalidateResource("doc2");
+        assertTrue(evaluator.isAllowed("doc1", "read"));
+
+        verify(actualEvaluator, times(1)).isAllowed("user1", "doc1", "read");
+
+        evaluator.invalidateSubject("user1");
+        assertTrue(evaluator.isAllowed("doc1", "read"));
+
+        verify(actualEvaluator, times(2)).isAllowed("user1", "doc1", "read");
+        assertEquals(1, evaluator.getSize());
+    }
+
+    @Test
+    public void testRequestCache() throws Exception {
+        Map<String, Object> attributes = new HashMap<>();
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getAttribute(anyString())).thenAnswer(invocation -> attributes.get(invocation.getArgument(0)));
+        doAnswer(invocation -> attributes.put(invocation.getArgument(0), invocation.getArgument(1)))
+            .when(request).setAttribute(anyString(), any());
+
+        RequestContext.setCurrent(new RequestContext(request, null, null));
+
+        // No shared cache, only the request one
+        CachingPermissionEvaluator<String, String> evaluator =
+            new CachingPermissionEvaluator<>(subjectResolver, actualEvaluator, 0, 0);
+
+        assertTrue(evaluator.isAllowed("doc1", "read"));
+        assertTrue(evaluator.isAllowed("doc1", "read"));
+
+        verify(actualEvaluator, times(1)).isAllowed("user1", "doc1", "read");
+        assertEquals(1, evaluator.getRequestHitCount());
+
+        // New request
+        attributes.clear();
+
+        assertTrue(evaluator.isAllowed("doc1", "read"));
+
+        verify(actualEvaluator, times(2)).isAllowed("user1", "doc1", "read");
+    }
+
+}
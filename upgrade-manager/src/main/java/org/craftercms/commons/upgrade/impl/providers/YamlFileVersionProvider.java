@@ -18,6 +18,7 @@ package org.craftercms.commons.upgrade.impl.providers;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
 import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -27,7 +28,16 @@ import org.craftercms.commons.config.DisableClassLoadingConstructor;
 import org.yaml.snakeyaml.DumperOptions;
 import org.yaml.snakeyaml.LoaderOptions;
 import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.composer.Composer;
+import org.yaml.snakeyaml.nodes.MappingNode;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.NodeTuple;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.parser.ParserImpl;
+import org.yaml.snakeyaml.reader.StreamReader;
 import org.yaml.snakeyaml.representer.Representer;
+import org.yaml.snakeyaml.resolver.Resolver;
 
 /**
  * Implementation of {@link org.craftercms.commons.upgrade.VersionProvider} that handles YAML files
@@ -38,26 +48,59 @@ import org.yaml.snakeyaml.representer.Representer;
  */
 public class YamlFileVersionProvider<T> extends AbstractFileVersionProvider<T> {
 
+    /**
+     * Used to rewrite the file, since {@link Yaml} instances are not thread-safe access to it is synchronized
+     */
     protected final Yaml yaml;
 
+    protected final LoaderOptions loaderOptions = new LoaderOptions();
+
+    protected final Resolver resolver = new Resolver();
+
     public YamlFileVersionProvider() {
         DumperOptions options = new DumperOptions();
         options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
         options.setPrettyFlow(true);
-        yaml = new Yaml(new DisableClassLoadingConstructor(new LoaderOptions()), new Representer(options), options);
+        yaml = new Yaml(new DisableClassLoadingConstructor(loaderOptions), new Representer(options), options);
     }
 
     @SuppressWarnings("unchecked")
     protected Map<String, Object> loadFile(Path file) throws IOException {
         try (InputStream is = Files.newInputStream(file)) {
-            return (Map<String, Object>) yaml.load(is);
+            synchronized (yaml) {
+                return (Map<String, Object>) yaml.load(is);
+            }
         }
     }
 
     @Override
     protected String readVersionFromFile(final Path file) throws Exception {
-        Map<String, Object> values = loadFile(file);
-        return (String)values.get(VERSION);
+        // Reading the version doesn't need the whole file as a Map, and the version should be read as it was
+        // written (e.g. 4.10 is not the same version as 4.1), so use the source text of the composed scalar. The
+        // parser and composer are created for each read, so reads don't need to be synchronized
+        Node root;
+        try (Reader reader = Files.newBufferedReader(file)) {
+            root = new Composer(new ParserImpl(new StreamReader(reader), loaderOptions), resolver, loaderOptions)
+                    .getSingleNode();
+        }
+
+        if (!(root instanceof MappingNode)) {
+            return null;
+        }
+
+        for (NodeTuple tuple : ((MappingNode) root).getValue()) {
+            Node key = tuple.getKeyNode();
+            if (key instanceof ScalarNode && VERSION.equals(((ScalarNode) key).getValue())) {
+                Node value = tuple.getValueNode();
+                if (!(value instanceof ScalarNode)) {
+                    throw new IllegalStateException("The version in file " + file + " is not a scalar");
+                }
+
+                return Tag.NULL.equals(value.getTag())? null : ((ScalarNode) value).getValue();
+            }
+        }
+
+        return null;
     }
 
     @Override
@@ -65,7 +108,9 @@ public class YamlFileVersionProvider<T> extends AbstractFileVersionProvider<T> {
         Map<String, Object> values = loadFile(file);
         values.put(VERSION, version);
         try (Writer writer = Files.newBufferedWriter(file)) {
-            yaml.dump(values, writer);
+            synchronized (yaml) {
+                yaml.dump(values, writer);
+            }
         }
     }
 }
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.upgrade.impl.providers;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class YamlFileVersionProviderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private YamlFileVersionProvider<Object> versionProvider;
+
+    @Before
+    public void setUp() {
+        versionProvider = new YamlFileVersionProvider<>();
+    }
+
+    @Test
+    public void testVersionIsReadAsWritten() throws Exception {
+        assertEquals("4.10", versionProvider.readVersionFromFile(write("version: 4.10\nname: test\n")));
+        assertEquals("4.1.0", versionProvider.readVersionFromFile(write("name: test\nversion: '4.1.0'\n")));
+    }
+
+    @Test
+    public void testQuotedAndUnquotedVersions() throws Exception {
+        assertEquals("4.1", versionProvider.readVersionFromFile(write("version: 4.1\n")));
+        assertEquals("4.1", versionProvider.readVersionFromFile(write("version: '4.1'\n")));
+        assertEquals("4.1", versionProvider.readVersionFromFile(write("version: \"4.1\"\n")));
+    }
+
+    @Test
+    public void testMissingVersion() throws Exception {
+        assertNull(versionProvider.readVersionFromFile(write("name: test\n")));
+        assertNull(versionProvider.readVersionFromFile(write("version:\n")));
+    }
+
+    @Test
+    public void testWriteVersion() throws Exception {
+        Path file = write("version: 4.1\nname: test\n");
+
+        versionProvider.writeVersionToFile(file, "4.10");
+
+        assertEquals("4.10", versionProvider.readVersionFromFile(file));
+    }
+
+    private Path write(String content) throws Exception {
+        Path file = folder.newFile().toPath();
+        Files.writeString(file, content);
+        return file;
+    }
+
+}
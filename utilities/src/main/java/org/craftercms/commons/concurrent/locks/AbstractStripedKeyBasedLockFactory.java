@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.concurrent.locks;
+
+import java.util.Objects;
+
+/**
+ * Abstract implementation of {@link KeyBasedLockFactory} that uses a fixed number of locks (stripes), created
+ * eagerly, and maps each key to one of them by its hash code. Unlike {@link AbstractWeakKeyBasedLockFactory}, getting
+ * a lock doesn't require any synchronization, so threads working with different keys never contend on the factory
+ * itself. Different keys might share the same stripe, so the number of stripes should be big enough for the expected
+ * concurrency.
+ *
+ * @param <L> the class of the lock
+ *
+ * @since 4.2.0
+ */
+public abstract class AbstractStripedKeyBasedLockFactory<L> implements KeyBasedLockFactory<L> {
+
+    public static final int DEFAULT_STRIPES = 256;
+
+    private static final int MAX_STRIPES = 1 << 16;
+
+    protected final Object[] stripes;
+
+    private final int mask;
+
+    protected AbstractStripedKeyBasedLockFactory() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * Creates the factory with the given number of stripes, rounded up to the next power of two.
+     *
+     * @param stripes the minimum number of locks to create
+     */
+    protected AbstractStripedKeyBasedLockFactory(int stripes) {
+        if (stripes <= 0 || stripes > MAX_STRIPES) {
+            throw new IllegalArgumentException("Number of stripes must be between 1 and " + MAX_STRIPES);
+        }
+
+        int size = stripes == 1? 1 : Integer.highestOneBit(stripes - 1) << 1;
+
+        this.stripes = new Object[size];
+        this.mask = size - 1;
+
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = newLock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public L getLock(Object key) {
+        return (L) stripes[indexFor(key)];
+    }
+
+    /**
+     * Returns the number of locks (stripes) available in this factory.
+     */
+    public int getStripes() {
+        return stripes.length;
+    }
+
+    protected int indexFor(Object key) {
+        int h = Objects.hashCode(key);
+        // Spread the higher bits, since the mask only keeps the lower ones
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+
+        return h & mask;
+    }
+
+    protected abstract L newLock();
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.concurrent.locks;
+
+/**
+ * Handle to a key based lock that is currently held by the calling thread. Closing the lease releases the lock, so
+ * it can be used in a try-with-resources block:
+ *
+ * <pre>
+ * try (LockLease lease = lockFactory.acquire(siteId)) {
+ *     // critical section
+ * }
+ * </pre>
+ *
+ * @since 4.2.0
+ */
+public interface LockLease extends AutoCloseable {
+
+    /**
+     * Returns the key the lock was acquired for.
+     */
+    Object getKey();
+
+    /**
+     * Releases the lock. Calling this method more than once has no effect.
+     */
+    @Override
+    void close();
+
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.concurrent.locks;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Implementation of {@link KeyBasedLockFactory} that keeps a reference count for each key's lock, and removes the
+ * lock from the map as soon as the last holder releases it. The size of the map is bounded by the number of keys that
+ * are currently in use, instead of depending on when the GC clears weak keys.
+ *
+ * <p>The preferred way to use this factory is through {@link #acquire(Object)} and
+ * {@link #tryAcquire(Object, long, TimeUnit)}, which return a {@link LockLease} that can be closed in a
+ * try-with-resources block. The {@link Lock} returned by {@link #getLock(Object)} is a view that acquires a lease on
+ * {@link Lock#lock()} and releases it on {@link Lock#unlock()}.</p>
+ *
+ * @since 4.2.0
+ */
+public class ReferenceCountedKeyBasedLockFactory implements KeyBasedLockFactory<Lock> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReferenceCountedKeyBasedLockFactory.class);
+
+    private static final Object NULL_KEY = new Object();
+
+    protected final ConcurrentMap<Object, Entry> locks = new ConcurrentHashMap<>();
+
+    protected final boolean fair;
+
+    public ReferenceCountedKeyBasedLockFactory() {
+        this(false);
+    }
+
+    /**
+     * @param fair if the locks should use a fair ordering policy
+     */
+    public ReferenceCountedKeyBasedLockFactory(boolean fair) {
+        this.fair = fair;
+    }
+
+    @Override
+    public Lock getLock(Object key) {
+        return new KeyLock(mapKey(key));
+    }
+
+    /**
+     * Acquires the lock for the given key, waiting if necessary.
+     *
+     * @param key the key associated with the lock
+     *
+     * @return the lease that needs to be closed to release the lock
+     */
+    public LockLease acquire(Object key) {
+        logger.debug("Acquiring lock for key '{}'", key);
+
+        Object mappedKey = mapKey(key);
+        Entry entry = retain(mappedKey);
+        try {
+            entry.lock.lock();
+        } catch (RuntimeException | Error e) {
+            release(mappedKey, entry);
+            throw e;
+        }
+
+        return new Lease(mappedKey, entry);
+    }
+
+    /**
+     * Tries to acquire the lock for the given key, waiting up to the specified timeout.
+     *
+     * @param key     the key associated with the lock
+     * @param timeout the maximum time to wait for the lock
+     * @param unit    the time unit of the timeout
+     *
+     * @return the lease that needs to be closed to release the lock, or null if the timeout elapsed before the lock
+     * could be acquired
+     *
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    public LockLease tryAcquire(Object key, long timeout, TimeUnit unit) throws InterruptedException {
+        logger.debug("Trying to acquire lock for key '{}'", key);
+
+        Object mappedKey = mapKey(key);
+        Entry entry = retain(mappedKey);
+        boolean locked = false;
+        try {
+            locked = entry.lock.tryLock(timeout, unit);
+        } finally {
+            if (!locked) {
+                release(mappedKey, entry);
+            }
+        }
+
+        return locked? new Lease(mappedKey, entry) : null;
+    }
+
+    /**
+     * Returns the number of keys that currently have a lock held or waited on.
+     */
+    public int size() {
+        return locks.size();
+    }
+
+    protected Entry retain(Object key) {
+        return locks.compute(key, (k, entry) -> {
+            if (entry == null) {
+                entry = new Entry(fair);
+            }
+            entry.references++;
+
+            return entry;
+        });
+    }
+
+    protected void release(Object key, Entry entry) {
+        locks.computeIfPresent(key, (k, current) -> {
+            if (current != entry) {
+                return current;
+            }
+
+            return --current.references == 0? null : current;
+        });
+    }
+
+    private static Object mapKey(Object key) {
+        return key != null? key : NULL_KEY;
+    }
+
+    /**
+     * Lock plus the number of threads holding or waiting for it. The count is only modified inside the map's atomic
+     * compute methods.
+     */
+    protected static class Entry {
+
+        protected final ReentrantLock lock;
+
+        protected int references;
+
+        protected Entry(boolean fair) {
+            lock = new ReentrantLock(fair);
+        }
+
+    }
+
+    private class Lease implements LockLease {
+
+        private final Object key;
+        private final Entry entry;
+        private boolean closed;
+
+        private Lease(Object key, Entry entry) {
+            this.key = key;
+            this.entry = entry;
+        }
+
+        @Override
+        public Object getKey() {
+            return key != NULL_KEY? key : null;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                try {
+                    entry.lock.unlock();
+                } finally {
+                    release(key, entry);
+                }
+            }
+        }
+
+    }
+
+    private class KeyLock implements Lock {
+
+        private final Object key;
+
+        private KeyLock(Object key) {
+            this.key = key;
+        }
+
+        @Override
+        public void lock() {
+            Entry entry = retain(key);
+            try {
+                entry.lock.lock();
+            } catch (RuntimeException | Error e) {
+                release(key, entry);
+                throw e;
+            }
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            Entry entry = retain(key);
+            boolean locked = false;
+            try {
+                entry.lock.lockInterruptibly();
+                locked = true;
+            } finally {
+                if (!locked) {
+                    release(key, entry);
+                }
+            }
+        }
+
+        @Override
+        public boolean tryLock() {
+            Entry entry = retain(key);
+            boolean locked = false;
+            try {
+                locked = entry.lock.tryLock();
+            } finally {
+                if (!locked) {
+                    release(key, entry);
+                }
+            }
+
+            return locked;
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            Entry entry = retain(key);
+            boolean locked = false;
+            try {
+                locked = entry.lock.tryLock(time, unit);
+            } finally {
+                if (!locked) {
+                    release(key, entry);
+                }
+            }
+
+            return locked;
+        }
+
+        @Override
+        public void unlock() {
+            Entry entry = locks.get(key);
+            if (entry == null || !entry.lock.isHeldByCurrentThread()) {
+                throw new IllegalMonitorStateException("Lock for key '" + key + "' is not held by current thread");
+            }
+
+            try {
+                entry.lock.unlock();
+            } finally {
+                release(key, entry);
+            }
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException("Conditions are not supported by reference counted locks");
+        }
+
+    }
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.concurrent.locks;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Actual implementation of {@link AbstractStripedKeyBasedLockFactory} that uses {@link ReentrantLock}s.
+ *
+ * @since 4.2.0
+ */
+public class StripedReentrantLockFactory extends AbstractStripedKeyBasedLockFactory<ReentrantLock> {
+
+    public StripedReentrantLockFactory() {
+        super();
+    }
+
+    public StripedReentrantLockFactory(int stripes) {
+        super(stripes);
+    }
+
+    @Override
+    protected ReentrantLock newLock() {
+        return new ReentrantLock();
+    }
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.concurrent.locks;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Actual implementation of {@link AbstractStripedKeyBasedLockFactory} that uses {@link StampedLock}s, for callers
+ * that can benefit from optimistic reads. Keep in mind that {@link StampedLock}s are not reentrant.
+ *
+ * @since 4.2.0
+ */
+public class StripedStampedLockFactory extends AbstractStripedKeyBasedLockFactory<StampedLock> {
+
+    public StripedStampedLockFactory() {
+        super();
+    }
+
+    public StripedStampedLockFactory(int stripes) {
+        super(stripes);
+    }
+
+    @Override
+    protected StampedLock newLock() {
+        return new StampedLock();
+    }
+
+}
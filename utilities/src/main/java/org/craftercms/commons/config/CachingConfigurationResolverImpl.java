@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.config;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.configuration2.AbstractConfiguration;
+import org.apache.commons.configuration2.BaseHierarchicalConfiguration;
+import org.apache.commons.configuration2.HierarchicalConfiguration;
+import org.apache.commons.configuration2.tree.ImmutableNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.beans.ConstructorProperties;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Extension of {@link ConfigurationResolverImpl} that caches the parsed configurations by module, environment, path
+ * and lookup variables. A cached configuration is reused as long as the {@link ConfigurationProvider} returns the same
+ * {@link ConfigurationProvider#getConfigVersion(String)} for the resolved file. Providers that don't report a version
+ * are never cached.
+ *
+ * <p>The cached configurations are never returned directly: each call gets a new lightweight configuration that
+ * shares the (immutable) node tree and interpolator of the cached one, so changes made by callers are not visible to
+ * other callers.</p>
+ *
+ * @since 4.2.0
+ */
+public class CachingConfigurationResolverImpl extends ConfigurationResolverImpl {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachingConfigurationResolverImpl.class);
+
+    public static final long DEFAULT_CACHE_MAX_SIZE = 1000;
+
+    protected Cache<CacheKey, CachedConfiguration> cache;
+
+    protected final LongAdder hits = new LongAdder();
+    protected final LongAdder misses = new LongAdder();
+
+    @ConstructorProperties({"environment", "basePath", "envPath", "configurationReader"})
+    public CachingConfigurationResolverImpl(String environment, String basePath, String envPath,
+                                            EncryptionAwareConfigurationReader configurationReader) {
+        this(environment, basePath, envPath, configurationReader, DEFAULT_CACHE_MAX_SIZE);
+    }
+
+    @ConstructorProperties({"environment", "basePath", "envPath", "configurationReader", "cacheMaxSize"})
+    public CachingConfigurationResolverImpl(String environment, String basePath, String envPath,
+                                            EncryptionAwareConfigurationReader configurationReader,
+                                            long cacheMaxSize) {
+        super(environment, basePath, envPath, configurationReader);
+        this.cache = CacheBuilder.newBuilder().maximumSize(cacheMaxSize).build();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public HierarchicalConfiguration<?> getXmlConfiguration(String module, String path, ConfigurationProvider provider)
+            throws ConfigurationException {
+        String url = resolveUrl(module, path, provider);
+        if (url == null) {
+            return null;
+        }
+
+        String version = provider.getConfigVersion(url);
+        if (version == null) {
+            misses.increment();
+            return readXmlConfiguration(url, provider);
+        }
+
+        CacheKey key = new CacheKey(module, environment, path, provider.getLookupVariables());
+        CachedConfiguration cached = cache.getIfPresent(key);
+
+        if (cached != null && cached.url.equals(url) && cached.version.equals(version)) {
+            hits.increment();
+        } else {
+            misses.increment();
+
+            logger.debug("Reading configuration file at {} (version {})", url, version);
+
+            HierarchicalConfiguration<?> config = readXmlConfiguration(url, provider);
+            if (config == null) {
+                return null;
+            }
+
+            cached = new CachedConfiguration(url, version, (HierarchicalConfiguration<ImmutableNode>) config);
+            cache.put(key, cached);
+        }
+
+        return cached.newView();
+    }
+
+    /**
+     * Removes all cached configurations.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Removes the cached configurations of the given module and path, for all lookup variables.
+     */
+    public void invalidate(String module, String path) {
+        cache.asMap().keySet().removeIf(key -> Objects.equals(key.module, module) && Objects.equals(key.path, path));
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+
+        return total == 0? 1.0 : (double) hitCount / total;
+    }
+
+    public long getSize() {
+        return cache.size();
+    }
+
+    protected static class CacheKey {
+
+        protected final String module;
+        protected final String environment;
+        protected final String path;
+        protected final Map<String, String> lookupVariables;
+
+        protected CacheKey(String module, String environment, String path, Map<String, String> lookupVariables) {
+            this.module = module;
+            this.environment = environment;
+            this.path = path;
+            this.lookupVariables = lookupVariables;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            CacheKey that = (CacheKey) o;
+            return Objects.equals(module, that.module) &&
+                   Objects.equals(environment, that.environment) &&
+                   Objects.equals(path, that.path) &&
+                   Objects.equals(lookupVariables, that.lookupVariables);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(module, environment, path, lookupVariables);
+        }
+
+    }
+
+    protected static class CachedConfiguration {
+
+        protected final String url;
+        protected final String version;
+        protected final HierarchicalConfiguration<ImmutableNode> config;
+
+        protected CachedConfiguration(String url, String version, HierarchicalConfiguration<ImmutableNode> config) {
+            this.url = url;
+            this.version = version;
+            this.config = config;
+        }
+
+        protected HierarchicalConfiguration<ImmutableNode> newView() {
+            // The copy shares the immutable root node, so this doesn't copy the actual tree
+            BaseHierarchicalConfiguration view = new BaseHierarchicalConfiguration(config);
+            view.setInterpolator(config.getInterpolator());
+            if (config instanceof AbstractConfiguration) {
+                view.setListDelimiterHandler(((AbstractConfiguration) config).getListDelimiterHandler());
+            }
+
+            return view;
+        }
+
+    }
+
+}
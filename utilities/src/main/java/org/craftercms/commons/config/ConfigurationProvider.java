@@ -49,4 +49,15 @@ public interface ConfigurationProvider {
      */
     Map<String, String> getLookupVariables();
 
+    /**
+     * Get a value that identifies the current version of the given configuration file, like a checksum or the last
+     * modified date. Caching resolvers use it to detect when a configuration needs to be read again.
+     * @param path the configuration path
+     * @return the version of the configuration, or null if it's not known (the configuration won't be cached)
+     * @since 4.2.0
+     */
+    default String getConfigVersion(String path) {
+        return null;
+    }
+
 }
@@ -37,4 +37,18 @@ public interface ConfigurationResolver {
     HierarchicalConfiguration<?> getXmlConfiguration(String module, String path, ConfigurationProvider provider)
             throws ConfigurationException;
 
+    /**
+     * Get a value that identifies the current version of a given configuration file, as reported by
+     * {@link ConfigurationProvider#getConfigVersion(String)} for the file resolved for the active environment.
+     *
+     * @param module the name of the module
+     * @param path the path of the file
+     * @param provider the provider to read the file
+     * @return the version of the configuration, or null if it's not known
+     * @since 4.2.0
+     */
+    default String getConfigVersion(String module, String path, ConfigurationProvider provider) {
+        return null;
+    }
+
 }
@@ -68,28 +68,62 @@ public class ConfigurationResolverImpl implements ConfigurationResolver {
     @Override
     public HierarchicalConfiguration<?> getXmlConfiguration(String module, String path, ConfigurationProvider provider)
             throws ConfigurationException {
+        String url = resolveUrl(module, path, provider);
+        if (url != null) {
+            return readXmlConfiguration(url, provider);
+        }
+        return null;
+    }
+
+    @Override
+    public String getConfigVersion(String module, String path, ConfigurationProvider provider) {
+        String url = resolveUrl(module, path, provider);
+        if (url != null) {
+            return provider.getConfigVersion(url);
+        }
+        return null;
+    }
+
+    /**
+     * Resolves the actual path of the configuration file, taking into account the active environment.
+     *
+     * @param module the name of the module
+     * @param path the path of the file
+     * @param provider the provider to read the file
+     * @return the path of the file, or null if it doesn't exist in the environment or the default location
+     */
+    protected String resolveUrl(String module, String path, ConfigurationProvider provider) {
         Map<String, String> values = new HashMap<>();
         values.put(PLACEHOLDER_MODULE, module);
         values.put(PLACEHOLDER_ENVIRONMENT, environment);
         StrSubstitutor substitutor = new StrSubstitutor(values, "{", "}");
 
-        String url = null;
-
-        try {
-            if (!StringUtils.equals(environment, DEFAULT_ENVIRONMENT)) {
-                url = Paths.get(substitutor.replace(envPath), path).toString();
-
-                if (!provider.configExists(url)) {
-                    url = Paths.get(substitutor.replace(basePath), path).toString();
-                }
-            } else {
-                url = Paths.get(substitutor.replace(basePath), path).toString();
-            }
-
+        if (!StringUtils.equals(environment, DEFAULT_ENVIRONMENT)) {
+            String url = Paths.get(substitutor.replace(envPath), path).toString();
             if (provider.configExists(url)) {
-                return configurationReader.readXmlConfiguration(provider.getConfig(url), provider.getLookupVariables());
+                return url;
             }
-            return null;
+        }
+
+        String url = Paths.get(substitutor.replace(basePath), path).toString();
+        if (provider.configExists(url)) {
+            return url;
+        }
+        return null;
+    }
+
+    /**
+     * Reads the XML configuration file at the given (already resolved) path.
+     *
+     * @param url the path of the file
+     * @param provider the provider to read the file
+     * @return the configuration instance
+     * @throws ConfigurationException if there is any error reading the configuration
+     */
+    protected HierarchicalConfiguration<?> readXmlConfiguration(String url, ConfigurationProvider provider)
+            throws ConfigurationException {
+        try {
+            return configurationReader.readXmlConfiguration(provider.getConfig(url), provider.getLookupVariables());
         } catch (IOException e) {
             throw new ConfigurationException("Error reading configuration file at " + url, e);
         }
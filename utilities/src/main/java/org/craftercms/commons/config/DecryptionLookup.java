@@ -15,6 +15,8 @@
  */
 package org.craftercms.commons.config;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.commons.configuration2.interpol.Lookup;
 import org.craftercms.commons.crypto.CryptoException;
 import org.craftercms.commons.crypto.SimpleCipher;
@@ -22,8 +24,11 @@ import org.craftercms.commons.crypto.TextEncryptor;
 import org.craftercms.commons.i10n.I10nLogger;
 import org.craftercms.commons.i10n.I10nUtils;
 
+import java.util.concurrent.TimeUnit;
+
 /**
- * Implementation of {@code Lookup} that decrypts the variable.
+ * Implementation of {@code Lookup} that decrypts the variable. Optionally, the decrypted values can be kept in a
+ * bounded cache with a time to live, so that reloading the same configuration doesn't decrypt them again.
  *
  * @author avasquez
  */
@@ -35,14 +40,51 @@ public class DecryptionLookup implements Lookup {
 
     protected TextEncryptor encryptor;
 
+    protected Cache<String, String> cache;
+
     public DecryptionLookup(TextEncryptor encryptor) {
         this.encryptor = encryptor;
     }
 
+    /**
+     * @param encryptor     the encryptor used to decrypt the values
+     * @param cacheMaxSize  the max number of decrypted values to keep. If 0 or less the values are not cached
+     * @param cacheTtlSecs  the time in seconds a decrypted value is kept in the cache. If 0 the values only leave the
+     *                      cache when it's full
+     */
+    public DecryptionLookup(TextEncryptor encryptor, long cacheMaxSize, long cacheTtlSecs) {
+        if (cacheTtlSecs < 0) {
+            throw new IllegalArgumentException("cacheTtlSecs can't be negative");
+        }
+
+        this.encryptor = encryptor;
+
+        if (cacheMaxSize > 0) {
+            CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(cacheMaxSize);
+            if (cacheTtlSecs > 0) {
+                builder.expireAfterWrite(cacheTtlSecs, TimeUnit.SECONDS);
+            }
+
+            cache = builder.build();
+        }
+    }
+
     @Override
     public Object lookup(String variable) {
+        if (cache != null) {
+            String decrypted = cache.getIfPresent(variable);
+            if (decrypted != null) {
+                return decrypted;
+            }
+        }
+
         try {
-            variable = encryptor.decrypt(variable);
+            String decrypted = encryptor.decrypt(variable);
+            if (cache != null && decrypted != null) {
+                cache.put(variable, decrypted);
+            }
+
+            variable = decrypted;
         } catch (CryptoException e) {
             logger.error(LOG_KEY_DECRYPTION_ERROR, e);
         }
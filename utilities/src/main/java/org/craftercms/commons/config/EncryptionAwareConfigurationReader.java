@@ -71,6 +71,26 @@ public class EncryptionAwareConfigurationReader {
         this.maxAliasesForCollections = maxAliasesForCollections;
     }
 
+    /**
+     * Creates a reader that caches the decrypted values, see {@link DecryptionLookup}.
+     *
+     * @since 4.2.0
+     */
+    @ConstructorProperties({"textEncryptor", "maxAliasesForCollections", "decryptionCacheMaxSize",
+                            "decryptionCacheTtlSecs"})
+    public EncryptionAwareConfigurationReader(TextEncryptor textEncryptor, int maxAliasesForCollections,
+                                              long decryptionCacheMaxSize, long decryptionCacheTtlSecs) {
+        this.textEncryptor = textEncryptor;
+
+        if (textEncryptor != null) {
+            prefixLookups = singletonMap(encryptedValuePrefix,
+                                         new DecryptionLookup(textEncryptor, decryptionCacheMaxSize,
+                                                              decryptionCacheTtlSecs));
+        }
+
+        this.maxAliasesForCollections = maxAliasesForCollections;
+    }
+
     public EncryptionAwareConfigurationReader(char configListDelimiter, String encryptedValuePrefix,
                                               TextEncryptor textEncryptor) {
         this(textEncryptor);
@@ -33,7 +33,6 @@ import org.apache.commons.configuration2.tree.ImmutableNode;
 import org.craftercms.commons.i10n.I10nLogger;
 import org.craftercms.commons.i10n.I10nUtils;
 import org.yaml.snakeyaml.LoaderOptions;
-import org.yaml.snakeyaml.Yaml;
 
 /**
  * <p>
@@ -101,16 +100,13 @@ public class YamlConfiguration extends BaseHierarchicalConfiguration implements
                                                                               ERROR_KEY_WRITE_NOT_SUPPORTED));
     }
 
-    @SuppressWarnings("unchecked")
     protected void load(Reader in) throws ConfigurationException {
         try {
-            Yaml yaml = new Yaml(new DisableClassLoadingConstructor(loaderOptions));
-
-            Map<String, Object> yamlObj = (Map<String, Object>) yaml.load(in);
+            ImmutableNode root = YamlNodeLoader.load(in, loaderOptions);
 
-            logger.debug(LOG_KEY_YAML_LOADED, yamlObj);
+            logger.debug(LOG_KEY_YAML_LOADED, root.getChildren().size() + " root nodes");
 
-            buildConfig(yamlObj);
+            addNodes(null, root.getChildren());
         } catch (Exception e) {
             throw new ConfigurationException(I10nUtils.getLocalizedMessage(I10nUtils.DEFAULT_ERROR_MESSAGE_BUNDLE_NAME,
                                                                            ERROR_KEY_LOAD_ERROR), e);
@@ -0,0 +1,543 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.config;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.apache.commons.configuration2.tree.ImmutableNode;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.comments.CommentLine;
+import org.yaml.snakeyaml.composer.Composer;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.AliasEvent;
+import org.yaml.snakeyaml.events.CollectionStartEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.NodeEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.nodes.MappingNode;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.parser.Parser;
+import org.yaml.snakeyaml.parser.ParserImpl;
+import org.yaml.snakeyaml.reader.StreamReader;
+import org.yaml.snakeyaml.representer.Representer;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+/**
+ * Loads a YAML document directly into an Apache Commons Configuration {@link ImmutableNode} tree, consuming the
+ * SnakeYAML event stream instead of building the intermediate node graph and {@code Map} that
+ * {@code Yaml.load()} creates. Mappings become nodes with children, sequences become sibling nodes with the same
+ * name and scalars are resolved to the same Java types the standard SnakeYAML constructor would produce.
+ *
+ * <p>Anchors and aliases (including {@code <<} merge keys) are supported, limited by
+ * {@link LoaderOptions#getMaxAliasesForCollections()}, and duplicate keys are rejected unless
+ * {@link LoaderOptions#isAllowDuplicateKeys()}. Collections tagged {@code !!set}, {@code !!omap} or
+ * {@code !!pairs} are built with the standard constructor and then converted to nodes (the keys and values of their
+ * entries can be aliases of anchors defined before the collection), other explicit collection tags (which would
+ * require class loading) are rejected, like {@link DisableClassLoadingConstructor} does.</p>
+ *
+ * <p>The scalar constructor is expensive to create, so one instance is kept per thread and reused between
+ * loads.</p>
+ *
+ * @since 4.2.0
+ */
+public class YamlNodeLoader {
+
+    public static final String MERGE_KEY = "<<";
+
+    /**
+     * Collection tags that are supported by building the collection with the standard constructor.
+     */
+    private static final Set<String> CONSTRUCTED_COLLECTION_TAGS =
+            Set.of(Tag.SET.getValue(), Tag.OMAP.getValue(), Tag.PAIRS.getValue());
+
+    private static final Resolver resolver = new Resolver();
+
+    private static final ThreadLocal<ScalarConstructor> scalarConstructor =
+            ThreadLocal.withInitial(() -> new ScalarConstructor(new LoaderOptions()));
+
+    private YamlNodeLoader() {
+    }
+
+    /**
+     * Loads the single YAML document from the given reader. The document root must be a mapping (or empty).
+     *
+     * @param reader        the reader to load the document from
+     * @param loaderOptions the SnakeYAML loader options
+     *
+     * @return the root node of the configuration, whose children are the top level keys of the document
+     *
+     * @throws YAMLException if the document can't be parsed or contains unsupported constructs
+     */
+    public static ImmutableNode load(Reader reader, LoaderOptions loaderOptions) {
+        Parser parser = new ParserImpl(new StreamReader(reader), loaderOptions);
+
+        return new DocumentLoader(parser, loaderOptions, scalarConstructor.get()).load();
+    }
+
+    /**
+     * Constructor used only to resolve scalar values, bypassing the object cache of the base constructor.
+     */
+    private static class ScalarConstructor extends DisableClassLoadingConstructor {
+
+        ScalarConstructor(LoaderOptions loadingConfig) {
+            super(loadingConfig);
+        }
+
+        Object constructScalarValue(ScalarNode node) {
+            return getConstructor(node).construct(node);
+        }
+
+        Object constructCollection(Node node) {
+            return constructDocument(node);
+        }
+
+    }
+
+    /**
+     * Composer used only to compose the node of a single collection, from the current position of the parser.
+     * Aliases used as keys or values of the collection entries that don't refer to an anchor of the collection
+     * itself are resolved with the anchors of the enclosing document.
+     */
+    private static class CollectionComposer extends Composer {
+
+        private final Function<String, Node> outerAliasResolver;
+        private final Set<String> innerAnchors = new HashSet<>();
+
+        CollectionComposer(Parser parser, LoaderOptions loadingConfig, Function<String, Node> outerAliasResolver) {
+            super(parser, resolver, loadingConfig);
+            this.outerAliasResolver = outerAliasResolver;
+        }
+
+        Node composeCollection(String anchor) {
+            return parser.checkEvent(Event.ID.MappingStart)? composeMappingNode(anchor) : composeSequenceNode(anchor);
+        }
+
+        @Override
+        protected Node composeScalarNode(String anchor, List<CommentLine> blockComments) {
+            addInnerAnchor(anchor);
+            return super.composeScalarNode(anchor, blockComments);
+        }
+
+        @Override
+        protected Node composeSequenceNode(String anchor) {
+            addInnerAnchor(anchor);
+            return super.composeSequenceNode(anchor);
+        }
+
+        @Override
+        protected Node composeMappingNode(String anchor) {
+            addInnerAnchor(anchor);
+            return super.composeMappingNode(anchor);
+        }
+
+        @Override
+        protected Node composeKeyNode(MappingNode node) {
+            Node outer = composeOuterAlias();
+            return outer != null? outer : super.composeKeyNode(node);
+        }
+
+        @Override
+        protected Node composeValueNode(MappingNode node) {
+            Node outer = composeOuterAlias();
+            return outer != null? outer : super.composeValueNode(node);
+        }
+
+        private void addInnerAnchor(String anchor) {
+            if (anchor != null) {
+                innerAnchors.add(anchor);
+            }
+        }
+
+        private Node composeOuterAlias() {
+            if (parser.checkEvent(Event.ID.Alias)) {
+                String anchor = ((AliasEvent) parser.peekEvent()).getAnchor();
+                if (!innerAnchors.contains(anchor)) {
+                    parser.getEvent();
+                    return outerAliasResolver.apply(anchor);
+                }
+            }
+
+            return null;
+        }
+
+    }
+
+    /**
+     * A loaded YAML value that hasn't been given a name yet: a scalar, the children of a mapping or the items of
+     * a sequence.
+     */
+    private static class Value {
+
+        final Object scalar;
+        final List<ImmutableNode> children;
+        final List<Value> items;
+
+        Value(Object scalar, List<ImmutableNode> children, List<Value> items) {
+            this.scalar = scalar;
+            this.children = children;
+            this.items = items;
+        }
+
+        boolean isScalar() {
+            return children == null && items == null;
+        }
+
+        boolean isMapping() {
+            return children != null;
+        }
+
+        /**
+         * Converts the value back to the objects the standard constructor would build: mappings become maps (where
+         * repeated names, that come from sequences, become lists), sequences become lists.
+         */
+        Object toObject() {
+            if (isMapping()) {
+                return toObject(children);
+            } else if (items != null) {
+                List<Object> list = new ArrayList<>(items.size());
+                items.forEach(item -> list.add(item.toObject()));
+
+                return list;
+            } else {
+                return scalar;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        static Map<String, Object> toObject(List<ImmutableNode> nodes) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            for (ImmutableNode node : nodes) {
+                Object value = node.getChildren().isEmpty()? node.getValue() : toObject(node.getChildren());
+                if (map.containsKey(node.getNodeName())) {
+                    // Node values are never lists, those are always sibling nodes
+                    Object current = map.get(node.getNodeName());
+                    if (current instanceof List) {
+                        ((List<Object>) current).add(value);
+                    } else {
+                        List<Object> list = new ArrayList<>();
+                        list.add(current);
+                        list.add(value);
+
+                        map.put(node.getNodeName(), list);
+                    }
+                } else {
+                    map.put(node.getNodeName(), value);
+                }
+            }
+
+            return map;
+        }
+
+        /**
+         * Converts an object built by the standard constructor, like the previous map based loading did: maps
+         * become mappings, other collections become sequences and anything else is a scalar.
+         */
+        static Value of(Object object) {
+            if (object instanceof Map) {
+                List<ImmutableNode> children = new ArrayList<>();
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+                    of(entry.getValue()).addTo(String.valueOf(entry.getKey()), children);
+                }
+
+                return new Value(null, children, null);
+            } else if (object instanceof Collection) {
+                List<Value> items = new ArrayList<>();
+                for (Object item : (Collection<?>) object) {
+                    items.add(of(item));
+                }
+
+                return new Value(null, null, items);
+            } else {
+                return new Value(object, null, null);
+            }
+        }
+
+        void addTo(String name, List<ImmutableNode> nodes) {
+            if (isMapping()) {
+                nodes.add(new ImmutableNode.Builder(children.size()).name(name).addChildren(children).create());
+            } else if (items != null) {
+                for (Value item : items) {
+                    item.addTo(name, nodes);
+                }
+            } else {
+                nodes.add(new ImmutableNode.Builder().name(name).value(scalar).create());
+            }
+        }
+
+    }
+
+    /**
+     * Holds the state of a single load.
+     */
+    private static class DocumentLoader {
+
+        private final Parser parser;
+        private final LoaderOptions loaderOptions;
+        private final ScalarConstructor constructor;
+        private final Map<String, Value> anchors = new HashMap<>();
+        private int collectionAliasesCount;
+        private Representer representer;
+
+        DocumentLoader(Parser parser, LoaderOptions loaderOptions, ScalarConstructor constructor) {
+            this.parser = parser;
+            this.loaderOptions = loaderOptions;
+            this.constructor = constructor;
+        }
+
+        ImmutableNode load() {
+            ImmutableNode.Builder root = new ImmutableNode.Builder();
+
+            expect(Event.ID.StreamStart);
+
+            if (!parser.checkEvent(Event.ID.StreamEnd)) {
+                expect(Event.ID.DocumentStart);
+
+                Value value = readValue();
+                if (value.isMapping()) {
+                    root.addChildren(value.children);
+                } else if (!value.isScalar() || value.scalar != null) {
+                    throw new YAMLException("The root of the YAML document must be a mapping");
+                }
+
+                expect(Event.ID.DocumentEnd);
+
+                if (!parser.checkEvent(Event.ID.StreamEnd)) {
+                    throw new YAMLException("Expected a single document in the stream but found another document");
+                }
+            }
+
+            expect(Event.ID.StreamEnd);
+
+            return root.create();
+        }
+
+        private void expect(Event.ID id) {
+            Event event = parser.getEvent();
+            if (!event.is(id)) {
+                throw new YAMLException("Expected " + id + " but found " + event);
+            }
+        }
+
+        private Value readValue() {
+            if (isConstructedCollection(parser.peekEvent())) {
+                return readConstructedCollection();
+            }
+
+            Event event = parser.getEvent();
+            Value value;
+
+            if (event instanceof AliasEvent) {
+                return resolveAlias(((AliasEvent) event).getAnchor());
+            } else if (event instanceof ScalarEvent) {
+                value = new Value(constructScalar((ScalarEvent) event), null, null);
+            } else if (event.is(Event.ID.MappingStart)) {
+                checkCollectionTag((CollectionStartEvent) event, Tag.MAP);
+                value = readMapping();
+            } else if (event.is(Event.ID.SequenceStart)) {
+                checkCollectionTag((CollectionStartEvent) event, Tag.SEQ);
+                value = readSequence();
+            } else {
+                throw new YAMLException("Unexpected event " + event);
+            }
+
+            String anchor = ((NodeEvent) event).getAnchor();
+            if (anchor != null) {
+                anchors.put(anchor, value);
+            }
+
+            return value;
+        }
+
+        private Value readMapping() {
+            // Duplicate keys (when allowed) replace the previous value, like they would in a Map
+            Map<String, List<ImmutableNode>> entries = new LinkedHashMap<>();
+            List<Value> merged = null;
+
+            while (!parser.checkEvent(Event.ID.MappingEnd)) {
+                String key = readKey();
+                Value value = readValue();
+
+                if (MERGE_KEY.equals(key)) {
+                    if (merged == null) {
+                        merged = new ArrayList<>();
+                    }
+                    if (value.items != null) {
+                        merged.addAll(value.items);
+                    } else {
+                        merged.add(value);
+                    }
+                } else {
+                    if (!loaderOptions.isAllowDuplicateKeys() && entries.containsKey(key)) {
+                        throw new YAMLException("Found duplicate key " + key);
+                    }
+
+                    List<ImmutableNode> nodes = new ArrayList<>(1);
+                    value.addTo(key, nodes);
+
+                    entries.put(key, nodes);
+                }
+            }
+            parser.getEvent();
+
+            List<ImmutableNode> children = new ArrayList<>(entries.size());
+            entries.values().forEach(children::addAll);
+
+            if (merged != null) {
+                // Explicit keys override merged ones, and earlier merged mappings override later ones
+                Set<String> seen = new HashSet<>(entries.keySet());
+                for (Value source : merged) {
+                    if (!source.isMapping()) {
+                        throw new YAMLException("Expected a mapping for merging but found " + source.scalar);
+                    }
+
+                    Set<String> sourceNames = new HashSet<>();
+                    for (ImmutableNode child : source.children) {
+                        if (!seen.contains(child.getNodeName())) {
+                            children.add(child);
+                            sourceNames.add(child.getNodeName());
+                        }
+                    }
+                    seen.addAll(sourceNames);
+                }
+            }
+
+            return new Value(null, children, null);
+        }
+
+        private Value readSequence() {
+            List<Value> items = new ArrayList<>();
+
+            while (!parser.checkEvent(Event.ID.SequenceEnd)) {
+                items.add(readValue());
+            }
+            parser.getEvent();
+
+            return new Value(null, null, items);
+        }
+
+        private String readKey() {
+            if (parser.checkEvent(Event.ID.Scalar)) {
+                // Keys are always used as strings, so don't resolve their type
+                ScalarEvent event = (ScalarEvent) parser.getEvent();
+                if (event.getAnchor() != null) {
+                    anchors.put(event.getAnchor(), new Value(event.getValue(), null, null));
+                }
+
+                return event.getValue();
+            }
+
+            Value value = readValue();
+            if (!value.isScalar()) {
+                throw new YAMLException("Only scalar keys are supported");
+            }
+
+            return String.valueOf(value.scalar);
+        }
+
+        private Value resolveAlias(String anchor) {
+            Value value = anchors.get(anchor);
+            if (value == null) {
+                throw new YAMLException("Found undefined alias " + anchor);
+            }
+
+            if (!value.isScalar() && ++collectionAliasesCount > loaderOptions.getMaxAliasesForCollections()) {
+                throw new YAMLException("Number of aliases for non-scalar nodes exceeds the specified max=" +
+                                        loaderOptions.getMaxAliasesForCollections());
+            }
+
+            return value;
+        }
+
+        private Object constructScalar(ScalarEvent event) {
+            String tagName = event.getTag();
+            Tag tag;
+            boolean resolved = false;
+
+            if (tagName == null || tagName.equals("!")) {
+                tag = resolver.resolve(NodeId.scalar, event.getValue(), event.getImplicit().canOmitTagInPlainScalar());
+                resolved = true;
+            } else {
+                tag = new Tag(tagName);
+            }
+
+            if (Tag.STR.equals(tag)) {
+                return event.getValue();
+            }
+
+            return constructor.constructScalarValue(new ScalarNode(tag, resolved, event.getValue(),
+                                                                   event.getStartMark(), event.getEndMark(),
+                                                                   event.getScalarStyle()));
+        }
+
+        private boolean isConstructedCollection(Event event) {
+            if (event instanceof CollectionStartEvent) {
+                String tagName = ((CollectionStartEvent) event).getTag();
+                return tagName != null && CONSTRUCTED_COLLECTION_TAGS.contains(tagName);
+            }
+
+            return false;
+        }
+
+        private Value readConstructedCollection() {
+            String anchor = ((NodeEvent) parser.peekEvent()).getAnchor();
+            Node node = new CollectionComposer(parser, loaderOptions, this::resolveOuterAlias).composeCollection(anchor);
+            Value value = Value.of(constructor.constructCollection(node));
+
+            if (anchor != null) {
+                anchors.put(anchor, value);
+            }
+
+            return value;
+        }
+
+        /**
+         * Returns the node of an anchor defined before the collection being composed, represented back from its
+         * objects so that the standard constructor builds the same value.
+         */
+        private Node resolveOuterAlias(String anchor) {
+            if (representer == null) {
+                DumperOptions options = new DumperOptions();
+                representer = new Representer(options);
+                representer.setDefaultScalarStyle(options.getDefaultScalarStyle());
+                representer.setDefaultFlowStyle(options.getDefaultFlowStyle());
+            }
+
+            return representer.represent(resolveAlias(anchor).toObject());
+        }
+
+        private void checkCollectionTag(CollectionStartEvent event, Tag expected) {
+            String tagName = event.getTag();
+            if (tagName != null && !tagName.equals("!") && !expected.getValue().equals(tagName)) {
+                throw new YAMLException("Unsupported tag " + tagName + " for " + event);
+            }
+        }
+
+    }
+
+}
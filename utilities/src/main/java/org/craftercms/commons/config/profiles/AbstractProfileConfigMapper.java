@@ -19,17 +19,34 @@ import org.apache.commons.configuration2.HierarchicalConfiguration;
 import org.apache.commons.configuration2.tree.ImmutableNode;
 import org.craftercms.commons.config.*;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 import static java.lang.String.format;
 
 /**
  * Base class for configuration mappers that read configuration profiles and map them to profile classes.
  *
+ * <p>The profiles of each configuration file are indexed by id, so that the file is read and searched only once
+ * for the same version of the configuration, as reported by
+ * {@link ConfigurationResolver#getConfigVersion(String, String, ConfigurationProvider)}. Configurations without a
+ * version are read and indexed again on every call, so the index only takes effect when the
+ * {@link ConfigurationProvider} reports a version ({@link ConfigurationProvider#getConfigVersion(String)}), which
+ * none of the providers in this project do. The indexes are kept in a cache of at most {@code indexCacheMaxSize}
+ * files (one per module, path and lookup variables), least recently used first out.</p>
+ *
+ * <p>Each call returns a new profile instance, mapped from the indexed configuration, so callers can modify it
+ * without affecting others.</p>
+ *
  * @author avasquez
  */
 public abstract class AbstractProfileConfigMapper<T extends ConfigurationProfile> implements ConfigurationMapper<T> {
 
+    public static final int DEFAULT_INDEX_CACHE_MAX_SIZE = 1000;
+
     private static final String CONFIG_KEY_PROFILE = "profile";
     private static final String CONFIG_KEY_ID = "id";
 
@@ -37,30 +54,58 @@ public abstract class AbstractProfileConfigMapper<T extends ConfigurationProfile
 
     protected ConfigurationResolver configurationResolver;
 
+    protected Map<IndexKey, ProfileIndex> indexes;
+
     public AbstractProfileConfigMapper(String serviceName, ConfigurationResolver configurationResolver) {
         this.serviceName = serviceName;
         this.configurationResolver = configurationResolver;
+        this.indexes = createIndexCache(DEFAULT_INDEX_CACHE_MAX_SIZE);
+    }
+
+    /**
+     * Sets the max number of configuration files whose profiles are kept indexed. Discards the current indexes.
+     * Only configurations whose provider reports a version are indexed, see
+     * {@link ConfigurationProvider#getConfigVersion(String)}.
+     */
+    public void setIndexCacheMaxSize(int indexCacheMaxSize) {
+        this.indexes = createIndexCache(indexCacheMaxSize);
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public T readConfig(ConfigurationProvider provider, String module, String path, String encoding, String profileId)
             throws ConfigurationException, ConfigurationProfileNotFoundException {
-        HierarchicalConfiguration<ImmutableNode> config =
-                (HierarchicalConfiguration<ImmutableNode>)
-                        configurationResolver.getXmlConfiguration(module, path, provider);
+        ProfileIndex index = getIndex(provider, module, path);
+        if (index == null || !index.contains(profileId)) {
+            throw new ConfigurationProfileNotFoundException(format("Profile '%s' not found", profileId));
+        }
 
-        List<HierarchicalConfiguration<ImmutableNode>> profiles =
-            config.configurationsAt(serviceName + "." + CONFIG_KEY_PROFILE);
-        HierarchicalConfiguration<ImmutableNode> profileConfig = profiles
-                .stream()
-                .filter(c -> profileId.equals(c.getString(CONFIG_KEY_ID)))
-                .findFirst()
-                .orElseThrow(() -> new ConfigurationProfileNotFoundException(format("Profile '%s' not found", profileId)));
-
-        T profile = processConfig(profileConfig);
-        profile.setProfileId(profileId);
-        return profile;
+        return index.mapProfile(profileId);
+    }
+
+    /**
+     * Maps all the profiles of the given configuration file.
+     *
+     * @param provider the provider to read the configuration file
+     * @param module the name of the module
+     * @param path the path of the configuration file
+     *
+     * @return the mapped profiles, by id
+     *
+     * @throws ConfigurationException if an error occurs while reading the configuration or mapping a profile
+     */
+    public Map<String, T> loadAllProfiles(ConfigurationProvider provider, String module, String path)
+            throws ConfigurationException {
+        ProfileIndex index = getIndex(provider, module, path);
+        if (index == null) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, T> profiles = new LinkedHashMap<>();
+        for (String profileId : index.profileConfigs.keySet()) {
+            profiles.put(profileId, index.mapProfile(profileId));
+        }
+
+        return profiles;
     }
 
     @Override
@@ -68,6 +113,111 @@ public abstract class AbstractProfileConfigMapper<T extends ConfigurationProfile
         return mapProfile(config);
     }
 
+    @SuppressWarnings("unchecked")
+    protected ProfileIndex getIndex(ConfigurationProvider provider, String module, String path)
+            throws ConfigurationException {
+        IndexKey key = new IndexKey(module, path, provider.getLookupVariables());
+        String version = configurationResolver.getConfigVersion(module, path, provider);
+
+        if (version != null) {
+            ProfileIndex index = indexes.get(key);
+            if (index != null && version.equals(index.version)) {
+                return index;
+            }
+        }
+
+        HierarchicalConfiguration<ImmutableNode> config =
+                (HierarchicalConfiguration<ImmutableNode>)
+                        configurationResolver.getXmlConfiguration(module, path, provider);
+        if (config == null) {
+            indexes.remove(key);
+            return null;
+        }
+
+        ProfileIndex index = new ProfileIndex(version, config.configurationsAt(serviceName + "." + CONFIG_KEY_PROFILE));
+        if (version != null) {
+            indexes.put(key, index);
+        } else {
+            // Without a version there's no way to know when the index is stale
+            indexes.remove(key);
+        }
+
+        return index;
+    }
+
     protected abstract T mapProfile(HierarchicalConfiguration<ImmutableNode> profileConfig) throws ConfigurationException;
 
+    /**
+     * Creates a synchronized map that keeps at most the given number of indexes, least recently used first out.
+     */
+    protected Map<IndexKey, ProfileIndex> createIndexCache(int maxSize) {
+        return Collections.synchronizedMap(new LinkedHashMap<IndexKey, ProfileIndex>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<IndexKey, ProfileIndex> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    /**
+     * Identifies a configuration file, for the lookup variables of a given provider.
+     */
+    protected static class IndexKey {
+
+        protected final String module;
+        protected final String path;
+        protected final Map<String, String> lookupVariables;
+
+        protected IndexKey(String module, String path, Map<String, String> lookupVariables) {
+            this.module = module;
+            this.path = path;
+            this.lookupVariables = lookupVariables;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            IndexKey that = (IndexKey) o;
+            return Objects.equals(module, that.module) &&
+                   Objects.equals(path, that.path) &&
+                   Objects.equals(lookupVariables, that.lookupVariables);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(module, path, lookupVariables);
+        }
+
+    }
+
+    /**
+     * The profile configurations of a specific version of a configuration file, by id.
+     */
+    protected class ProfileIndex {
+
+        protected final String version;
+        protected final Map<String, HierarchicalConfiguration<ImmutableNode>> profileConfigs;
+
+        protected ProfileIndex(String version, List<HierarchicalConfiguration<ImmutableNode>> configs) {
+            this.version = version;
+            this.profileConfigs = new LinkedHashMap<>();
+
+            // If there are duplicated ids, the first profile wins
+            configs.forEach(c -> profileConfigs.putIfAbsent(c.getString(CONFIG_KEY_ID), c));
+        }
+
+        protected boolean contains(String profileId) {
+            return profileConfigs.containsKey(profileId);
+        }
+
+        protected T mapProfile(String profileId) throws ConfigurationException {
+            T profile = processConfig(profileConfigs.get(profileId));
+            profile.setProfileId(profileId);
+
+            return profile;
+        }
+
+    }
+
 }
@@ -15,12 +15,19 @@
  */
 package org.craftercms.commons.crypto;
 
+import java.security.GeneralSecurityException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.List;
+import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 
 import org.apache.commons.lang3.StringUtils;
+import org.craftercms.commons.crypto.impl.Argon2PasswordHasher;
+import org.craftercms.commons.crypto.impl.DelegatingPasswordHasher;
+import org.craftercms.commons.crypto.impl.Pbkdf2PasswordHasher;
+import org.craftercms.commons.crypto.impl.SimpleDigestPasswordHasher;
 
 /**
  * Utility methods for encryption/decryption and message digest.
@@ -34,9 +41,22 @@ public class CryptoUtils {
     public static final String AES_CIPHER_ALGORITHM = "AES";
     public static final int AES_KEY_BYTE_SIZE = 16;
     public static final String DEFAULT_AES_CIPHER_TRANSFORMATION = "AES/CBC/PKCS5Padding";
+    public static final String AES_GCM_CIPHER_TRANSFORMATION = "AES/GCM/NoPadding";
 
     public static final String PASSWORD_SEP = "|";
 
+    private static final ThreadLocal<Cipher> defaultAesCiphers = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(DEFAULT_AES_CIPHER_TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            // Should NEVER happen
+            throw new IllegalStateException("JVM doesn't support " + DEFAULT_AES_CIPHER_TRANSFORMATION, e);
+        }
+    });
+
+    private static volatile PasswordHasher passwordHasher = new DelegatingPasswordHasher(
+            new SimpleDigestPasswordHasher(), List.of(new Pbkdf2PasswordHasher(), new Argon2PasswordHasher()));
+
     private CryptoUtils() {
     }
 
@@ -91,18 +111,50 @@ public class CryptoUtils {
     }
 
     /**
-     * Hashes a password using a {@link org.craftercms.commons.crypto.SimpleDigest}. The generated salt is appended
+     * Returns a {@link Cipher} for the {@link #DEFAULT_AES_CIPHER_TRANSFORMATION} that is reused by the current
+     * thread, to avoid the cost of looking up the provider on every encryption/decryption. The cipher must be
+     * initialized before each use and must not be shared with other threads.
+     *
+     * @return the cipher for the current thread
+     */
+    public static Cipher getThreadLocalAesCipher() {
+        return defaultAesCiphers.get();
+    }
+
+    /**
+     * Returns the {@link PasswordHasher} used by {@link #hashPassword(String)} and
+     * {@link #matchPassword(String, String)}.
+     */
+    public static PasswordHasher getPasswordHasher() {
+        return passwordHasher;
+    }
+
+    /**
+     * Sets the {@link PasswordHasher} used by {@link #hashPassword(String)} and
+     * {@link #matchPassword(String, String)}. By default, a {@link DelegatingPasswordHasher} is used that generates
+     * {@link SimpleDigest} hashes (for backwards compatibility) but can also match PBKDF2 and Argon2 hashes.
+     *
+     * @param passwordHasher the password hasher
+     */
+    public static void setPasswordHasher(PasswordHasher passwordHasher) {
+        CryptoUtils.passwordHasher = passwordHasher;
+    }
+
+    /**
+     * Hashes a password using the configured {@link PasswordHasher} (see {@link #setPasswordHasher(PasswordHasher)}).
+     * By default, a {@link org.craftercms.commons.crypto.SimpleDigest} is used, and the generated salt is appended
      * to the password, using the {@link #PASSWORD_SEP}.
      *
      * @param clearPswd the password to hash, in clear
-     * @return the hashed password + {@link #PASSWORD_SEP} + salt
+     * @return the hashed password
      */
     public static String hashPassword(String clearPswd) {
         if (StringUtils.isNotEmpty(clearPswd)) {
-            SimpleDigest digest = new SimpleDigest();
-            String hashedPswd = digest.digestBase64(clearPswd);
-
-            return hashedPswd + PASSWORD_SEP + digest.getBase64Salt();
+            try {
+                return passwordHasher.hash(clearPswd);
+            } catch (CryptoException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
         } else {
             return null;
         }
@@ -111,21 +163,17 @@ public class CryptoUtils {
     /**
      * Returns true if it's a password match, that is, if the hashed clear password equals the given hash.
      *
-     * @param hashedPswdAndSalt the hashed password + {@link #PASSWORD_SEP} + salt, as returned by
-     *                          {@link #hashPassword(String)}
+     * @param hashedPswdAndSalt the hashed password, as returned by {@link #hashPassword(String)}
      * @param clearPswd         the password that we're trying to match, in clear
      * @return if the password matches
      */
     public static boolean matchPassword(String hashedPswdAndSalt, String clearPswd) {
         if (StringUtils.isNotEmpty(hashedPswdAndSalt) && StringUtils.isNotEmpty(clearPswd)) {
-            int idxOfSep = hashedPswdAndSalt.indexOf(PASSWORD_SEP);
-            String storedHash = hashedPswdAndSalt.substring(0, idxOfSep);
-            String salt = hashedPswdAndSalt.substring(idxOfSep + 1);
-            SimpleDigest digest = new SimpleDigest();
-
-            digest.setBase64Salt(salt);
-
-            return storedHash.equals(digest.digestBase64(clearPswd));
+            try {
+                return passwordHasher.matches(hashedPswdAndSalt, clearPswd);
+            } catch (CryptoException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
         } else if (hashedPswdAndSalt == null && clearPswd == null) {
             return true;
         } else if (hashedPswdAndSalt.isEmpty() && clearPswd.isEmpty()) {
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.crypto;
+
+/**
+ * Thread-safe service that hashes passwords and matches clear passwords against stored hashes. Hashes should be
+ * self-describing (include the algorithm, cost parameters and salt), so that implementations can tell if a hash was
+ * generated by them and if it needs to be regenerated with the current parameters.
+ *
+ * @since 4.2.0
+ */
+public interface PasswordHasher {
+
+    /**
+     * Hashes the specified clear password, using a new random salt.
+     *
+     * @param clearPassword the password to hash, in clear
+     *
+     * @return the hash, including all the information required to match it later
+     */
+    String hash(String clearPassword) throws CryptoException;
+
+    /**
+     * Returns true if the clear password matches the given hash.
+     *
+     * @param hashedPassword the hash, as returned by {@link #hash(String)}
+     * @param clearPassword  the password that we're trying to match, in clear
+     *
+     * @return if the password matches
+     */
+    boolean matches(String hashedPassword, String clearPassword) throws CryptoException;
+
+    /**
+     * Returns true if the given hash was generated by this hasher (or one with the same algorithm).
+     *
+     * @param hashedPassword the hash to check
+     */
+    boolean supports(String hashedPassword);
+
+    /**
+     * Returns true if the given hash should be regenerated, for example because it was generated with a lower cost
+     * than the current one.
+     *
+     * @param hashedPassword the hash to check
+     */
+    default boolean needsRehash(String hashedPassword) {
+        return false;
+    }
+
+}
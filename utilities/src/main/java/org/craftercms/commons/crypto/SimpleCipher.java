@@ -15,11 +15,21 @@
  */
 package org.craftercms.commons.crypto;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.security.GeneralSecurityException;
 import java.security.Key;
 import java.security.NoSuchAlgorithmException;
+import java.security.spec.AlgorithmParameterSpec;
 import javax.crypto.Cipher;
 import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 
 import org.apache.commons.codec.binary.Base64;
@@ -31,6 +41,14 @@ import org.craftercms.commons.i10n.I10nUtils;
  * Utility class for simplifying encryption/decryption with the {@link javax.crypto.Cipher} class. By default, the
  * algorithm used is AES.
  *
+ * <p>Besides byte arrays, data can be encrypted/decrypted from streams and channels using fixed size direct buffers
+ * that are reused for the whole data (and between calls), so memory use doesn't depend on the size of the data, and
+ * the data isn't copied through the Java heap with channels that work on direct buffers (like file channels).
+ * Ciphers that use GCM (like {@link CryptoUtils#AES_GCM_CIPHER_TRANSFORMATION}) are also supported, but keep in mind
+ * that the JDK providers buffer all the encrypted data during GCM decryption until the authentication tag can be
+ * verified (so the final output is as big as the data), and that a key + IV pair can't be reused for GCM
+ * encryption.</p>
+ *
  * @author Sumer Jabri
  * @author Alfonso Vásquez
  */
@@ -47,11 +65,18 @@ public class SimpleCipher {
     public static final String ERROR_KEY_ENC_ERROR = "crypto.cipher.encryptionError";
     public static final String ERROR_KEY_DEC_ERROR = "crypto.cipher.decryptionError";
 
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private static final int GCM_TAG_BIT_LENGTH = 128;
+
     private static final I10nLogger logger = new I10nLogger(SimpleCipher.class, I10nUtils.DEFAULT_LOGGING_MESSAGE_BUNDLE_NAME);
 
     private Key key;
     private byte[] iv;
     private Cipher cipher;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private ByteBuffer inputBuffer;
+    private ByteBuffer outputBuffer;
 
     public Key getKey() {
         return key;
@@ -77,29 +102,98 @@ public class SimpleCipher {
         this.cipher = cipher;
     }
 
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Sets the size of the buffers used to encrypt/decrypt streams and channels.
+     */
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
     public String encryptBase64(String clear) throws CryptoException {
         return Base64.encodeBase64String(encrypt(StringUtils.getBytesUtf8(clear)));
     }
 
     public byte[] encrypt(byte[] clear) throws CryptoException {
-        if (key == null) {
-            key = CryptoUtils.generateAesKey();
+        return encrypt(clear, 0, clear.length);
+    }
 
-            logger.debug(LOG_KEY_KEY_GEN);
+    /**
+     * Encrypts {@code length} bytes of the given array, starting at {@code offset}, without copying them first.
+     */
+    public byte[] encrypt(byte[] clear, int offset, int length) throws CryptoException {
+        try {
+            initForEncryption();
+
+            return cipher.doFinal(clear, offset, length);
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(ERROR_KEY_ENC_ERROR, e);
+        } finally {
+            logger.debug(LOG_KEY_ENC_SUCCESSFUL);
         }
-        if (iv == null) {
-            iv = CryptoUtils.generateAesIv();
+    }
 
-            logger.debug(LOG_KEY_IV_GEN);
+    public String decryptBase64(String encrypted) throws CryptoException {
+        return StringUtils.newStringUtf8(decrypt(Base64.decodeBase64(encrypted)));
+    }
+
+    public byte[] decrypt(byte[] encrypted) throws CryptoException {
+        return decrypt(encrypted, 0, encrypted.length);
+    }
+
+    /**
+     * Decrypts {@code length} bytes of the given array, starting at {@code offset}, without copying them first.
+     */
+    public byte[] decrypt(byte[] encrypted, int offset, int length) throws CryptoException {
+        try {
+            initForDecryption();
+
+            return cipher.doFinal(encrypted, offset, length);
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(ERROR_KEY_DEC_ERROR, e);
+        } finally {
+            logger.debug(LOG_KEY_DEC_SUCCESSFUL);
         }
-        if (cipher == null) {
-            cipher = createDefaultCipher();
+    }
+
+    /**
+     * Encrypts all the data of the input stream and writes it to the output stream. Neither stream is closed.
+     */
+    public void encrypt(InputStream in, OutputStream out) throws CryptoException, IOException {
+        try {
+            initForEncryption();
+            doCipher(in, out);
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(ERROR_KEY_ENC_ERROR, e);
+        } finally {
+            logger.debug(LOG_KEY_ENC_SUCCESSFUL);
         }
+    }
 
+    /**
+     * Decrypts all the data of the input stream and writes it to the output stream. Neither stream is closed.
+     */
+    public void decrypt(InputStream in, OutputStream out) throws CryptoException, IOException {
         try {
-            cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(iv));
+            initForDecryption();
+            doCipher(in, out);
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(ERROR_KEY_DEC_ERROR, e);
+        } finally {
+            logger.debug(LOG_KEY_DEC_SUCCESSFUL);
+        }
+    }
 
-            return cipher.doFinal(clear);
+    /**
+     * Encrypts all the data of the input channel and writes it to the output channel. Neither channel is closed.
+     */
+    public void encrypt(ReadableByteChannel in, WritableByteChannel out) throws CryptoException, IOException {
+        try {
+            initForEncryption();
+            doCipher(in, out);
         } catch (GeneralSecurityException e) {
             throw new CryptoException(ERROR_KEY_ENC_ERROR, e);
         } finally {
@@ -107,11 +201,39 @@ public class SimpleCipher {
         }
     }
 
-    public String decryptBase64(String encrypted) throws CryptoException {
-        return StringUtils.newStringUtf8(decrypt(Base64.decodeBase64(encrypted)));
+    /**
+     * Decrypts all the data of the input channel and writes it to the output channel. Neither channel is closed.
+     */
+    public void decrypt(ReadableByteChannel in, WritableByteChannel out) throws CryptoException, IOException {
+        try {
+            initForDecryption();
+            doCipher(in, out);
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(ERROR_KEY_DEC_ERROR, e);
+        } finally {
+            logger.debug(LOG_KEY_DEC_SUCCESSFUL);
+        }
     }
 
-    public byte[] decrypt(byte[] encrypted) throws CryptoException {
+    protected void initForEncryption() throws GeneralSecurityException {
+        if (key == null) {
+            key = CryptoUtils.generateAesKey();
+
+            logger.debug(LOG_KEY_KEY_GEN);
+        }
+        if (iv == null) {
+            iv = CryptoUtils.generateAesIv();
+
+            logger.debug(LOG_KEY_IV_GEN);
+        }
+        if (cipher == null) {
+            cipher = createDefaultCipher();
+        }
+
+        cipher.init(Cipher.ENCRYPT_MODE, key, createParameterSpec());
+    }
+
+    protected void initForDecryption() throws CryptoException, GeneralSecurityException {
         if (key == null) {
             throw new CryptoException(ERROR_KEY_KEY_NOT_SET);
         }
@@ -122,14 +244,92 @@ public class SimpleCipher {
             cipher = createDefaultCipher();
         }
 
+        cipher.init(Cipher.DECRYPT_MODE, key, createParameterSpec());
+    }
+
+    protected AlgorithmParameterSpec createParameterSpec() {
+        if (cipher.getAlgorithm().toUpperCase().contains("/GCM/")) {
+            return new GCMParameterSpec(GCM_TAG_BIT_LENGTH, iv);
+        } else {
+            return new IvParameterSpec(iv);
+        }
+    }
+
+    protected void doCipher(InputStream in, OutputStream out) throws GeneralSecurityException, IOException {
+        doCipher(Channels.newChannel(in), Channels.newChannel(out));
+    }
+
+    protected void doCipher(ReadableByteChannel in, WritableByteChannel out)
+            throws GeneralSecurityException, IOException {
+        ByteBuffer input = getInputBuffer();
+        ByteBuffer output = getOutputBuffer();
+
+        while (in.read(input) != -1) {
+            input.flip();
+            output = update(input, output, out);
+            input.clear();
+        }
+
+        // The final output can be as big as all the data buffered by the cipher, so it's only sized here, and a
+        // bigger buffer isn't kept for the next calls
+        int finalSize = cipher.getOutputSize(0);
+        ByteBuffer finalOutput = output.capacity() >= finalSize? output : ByteBuffer.allocateDirect(finalSize);
+
+        // Everything read has been passed to the cipher already
+        input.flip();
+        finalOutput.clear();
+        cipher.doFinal(input, finalOutput);
+        finalOutput.flip();
+        writeFully(finalOutput, out);
+    }
+
+    private ByteBuffer update(ByteBuffer input, ByteBuffer output, WritableByteChannel out)
+            throws GeneralSecurityException, IOException {
+        output.clear();
         try {
-            cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(iv));
+            cipher.update(input, output);
+        } catch (ShortBufferException e) {
+            // The input isn't consumed, so it can be retried with a bigger buffer, which is kept for the next updates
+            output = ByteBuffer.allocateDirect(Math.max(output.capacity() * 2, cipher.getOutputSize(input.remaining())));
+            outputBuffer = output;
+            cipher.update(input, output);
+        }
 
-            return cipher.doFinal(encrypted);
-        } catch (GeneralSecurityException e) {
-            throw new CryptoException(ERROR_KEY_DEC_ERROR, e);
-        } finally {
-            logger.debug(LOG_KEY_DEC_SUCCESSFUL);
+        output.flip();
+        writeFully(output, out);
+
+        return output;
+    }
+
+    /**
+     * Returns the direct buffer used to read the input data, which is reused between calls.
+     */
+    private ByteBuffer getInputBuffer() {
+        if (inputBuffer == null || inputBuffer.capacity() != bufferSize) {
+            inputBuffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+
+        inputBuffer.clear();
+
+        return inputBuffer;
+    }
+
+    /**
+     * Returns the direct buffer where the cipher writes the output data, which is reused between calls.
+     */
+    private ByteBuffer getOutputBuffer() {
+        // On update, ciphers hold back at most a block (GCM decryption doesn't return anything until the end)
+        int capacity = bufferSize + cipher.getBlockSize();
+        if (outputBuffer == null || outputBuffer.capacity() < capacity) {
+            outputBuffer = ByteBuffer.allocateDirect(capacity);
+        }
+
+        return outputBuffer;
+    }
+
+    private static void writeFully(ByteBuffer buffer, WritableByteChannel out) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
         }
     }
 
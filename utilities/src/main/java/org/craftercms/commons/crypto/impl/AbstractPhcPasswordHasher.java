@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.crypto.impl;
+
+import org.apache.commons.lang3.StringUtils;
+import org.craftercms.commons.crypto.CryptoException;
+import org.craftercms.commons.crypto.CryptoUtils;
+import org.craftercms.commons.crypto.PasswordHasher;
+
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Base class for {@link PasswordHasher}s that generate hashes in the PHC string format:
+ * {@code $<id>[$v=<version>]$<param>=<value>(,<param>=<value>)*$<salt>$<hash>}, where the salt and hash are Base 64
+ * encoded without padding. Since the parameters are part of the hash, they can be changed at any time: old hashes
+ * still match, and {@link #needsRehash(String)} reports them so they can be upgraded.
+ *
+ * @since 4.2.0
+ */
+public abstract class AbstractPhcPasswordHasher implements PasswordHasher {
+
+    public static final String SEPARATOR = "$";
+    public static final String PARAM_SEPARATOR = ",";
+    public static final String VALUE_SEPARATOR = "=";
+    public static final String VERSION_PARAM = "v";
+
+    public static final String ERROR_KEY_HASH_ERROR = "crypto.passwordHasher.hashError";
+    public static final String ERROR_KEY_INVALID_HASH = "crypto.passwordHasher.invalidHash";
+
+    public static final int DEFAULT_SALT_SIZE = 16;
+    public static final int DEFAULT_HASH_SIZE = 32;
+
+    private static final Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+    private static final Base64.Decoder decoder = Base64.getDecoder();
+
+    protected int saltSize = DEFAULT_SALT_SIZE;
+    protected int hashSize = DEFAULT_HASH_SIZE;
+
+    public void setSaltSize(int saltSize) {
+        this.saltSize = saltSize;
+    }
+
+    public void setHashSize(int hashSize) {
+        this.hashSize = hashSize;
+    }
+
+    @Override
+    public String hash(String clearPassword) throws CryptoException {
+        byte[] salt = CryptoUtils.generateRandomBytes(saltSize);
+        Map<String, Integer> params = getParameters();
+        byte[] hash = derive(clearPassword, salt, params, hashSize);
+
+        StringBuilder result = new StringBuilder(SEPARATOR).append(getId());
+        if (getVersion() != null) {
+            result.append(SEPARATOR).append(VERSION_PARAM).append(VALUE_SEPARATOR).append(getVersion());
+        }
+
+        result.append(SEPARATOR);
+        params.forEach((name, value) -> {
+            if (result.charAt(result.length() - 1) != SEPARATOR.charAt(0)) {
+                result.append(PARAM_SEPARATOR);
+            }
+            result.append(name).append(VALUE_SEPARATOR).append(value);
+        });
+
+        return result.append(SEPARATOR).append(encoder.encodeToString(salt))
+                     .append(SEPARATOR).append(encoder.encodeToString(hash))
+                     .toString();
+    }
+
+    @Override
+    public boolean matches(String hashedPassword, String clearPassword) throws CryptoException {
+        PhcHash phcHash = parse(hashedPassword);
+        byte[] hash = derive(clearPassword, phcHash.salt, phcHash.params, phcHash.hash.length);
+
+        return MessageDigest.isEqual(phcHash.hash, hash);
+    }
+
+    @Override
+    public boolean supports(String hashedPassword) {
+        return StringUtils.startsWith(hashedPassword, SEPARATOR + getId() + SEPARATOR);
+    }
+
+    @Override
+    public boolean needsRehash(String hashedPassword) {
+        try {
+            PhcHash phcHash = parse(hashedPassword);
+
+            return !phcHash.params.equals(getParameters()) || phcHash.hash.length != hashSize ||
+                   phcHash.salt.length != saltSize;
+        } catch (CryptoException e) {
+            return true;
+        }
+    }
+
+    protected PhcHash parse(String hashedPassword) throws CryptoException {
+        if (!supports(hashedPassword)) {
+            throw new CryptoException(ERROR_KEY_INVALID_HASH);
+        }
+
+        // The string starts with the separator, so the first part is always empty
+        String[] parts = StringUtils.splitPreserveAllTokens(hashedPassword, SEPARATOR);
+        int paramsIdx = getVersion() != null? 3 : 2;
+        if (parts.length != paramsIdx + 3) {
+            throw new CryptoException(ERROR_KEY_INVALID_HASH);
+        }
+
+        try {
+            Map<String, Integer> params = new LinkedHashMap<>();
+            for (String param : StringUtils.split(parts[paramsIdx], PARAM_SEPARATOR)) {
+                String[] nameAndValue = StringUtils.split(param, VALUE_SEPARATOR);
+                params.put(nameAndValue[0], Integer.valueOf(nameAndValue[1]));
+            }
+
+            return new PhcHash(params, decoder.decode(parts[paramsIdx + 1]), decoder.decode(parts[paramsIdx + 2]));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new CryptoException(ERROR_KEY_INVALID_HASH, e);
+        }
+    }
+
+    /**
+     * Returns the id of the algorithm, used as the first part of the hash.
+     */
+    protected abstract String getId();
+
+    /**
+     * Returns the version of the algorithm to include in the hash, or null if the hash doesn't have a version.
+     */
+    protected String getVersion() {
+        return null;
+    }
+
+    /**
+     * Returns the current cost parameters of the algorithm, in the order they should appear in the hash.
+     */
+    protected abstract Map<String, Integer> getParameters();
+
+    /**
+     * Derives the hash of the password with the given salt and parameters.
+     */
+    protected abstract byte[] derive(String clearPassword, byte[] salt, Map<String, Integer> params, int length)
+            throws CryptoException;
+
+    protected static class PhcHash {
+
+        protected final Map<String, Integer> params;
+        protected final byte[] salt;
+        protected final byte[] hash;
+
+        protected PhcHash(Map<String, Integer> params, byte[] salt, byte[] hash) {
+            this.params = params;
+            this.salt = salt;
+            this.hash = hash;
+        }
+
+    }
+
+}
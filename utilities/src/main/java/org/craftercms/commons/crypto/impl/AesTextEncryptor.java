@@ -16,10 +16,10 @@
 package org.craftercms.commons.crypto.impl;
 
 import java.security.Key;
+import java.util.Arrays;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.codec.binary.StringUtils;
-import org.apache.commons.lang3.ArrayUtils;
 import org.craftercms.commons.crypto.CryptoUtils;
 import org.craftercms.commons.crypto.CryptoException;
 import org.craftercms.commons.crypto.SimpleCipher;
@@ -27,7 +27,8 @@ import org.craftercms.commons.crypto.TextEncryptor;
 
 /**
  * Implementation of {@link org.craftercms.commons.crypto.TextEncryptor} that uses AES as it's cipher algorithm and
- * Base 64 to encode raw bytes.
+ * Base 64 to encode raw bytes. The underlying {@link javax.crypto.Cipher}s are reused per thread (see
+ * {@link CryptoUtils#getThreadLocalAesCipher()}), so instances of this class are thread safe and cheap to call.
  *
  * @author avasquez
  */
@@ -45,13 +46,15 @@ public class AesTextEncryptor implements TextEncryptor {
     }
 
     protected String doEncrypt(String clear, Key key) throws CryptoException {
-        SimpleCipher cipher = new SimpleCipher();
-        cipher.setKey(key != null? key : this.key);
+        SimpleCipher cipher = createCipher(key);
 
         byte[] encrypted = cipher.encrypt(StringUtils.getBytesUtf8(clear));
         byte[] iv = cipher.getIv();
 
-        return Base64.encodeBase64String(ArrayUtils.addAll(iv, encrypted));
+        byte[] ivAndEncrypted = Arrays.copyOf(iv, iv.length + encrypted.length);
+        System.arraycopy(encrypted, 0, ivAndEncrypted, iv.length, encrypted.length);
+
+        return Base64.encodeBase64String(ivAndEncrypted);
     }
 
     @Override
@@ -61,14 +64,23 @@ public class AesTextEncryptor implements TextEncryptor {
 
     protected String doDecrypt(String encrypted, Key key) throws CryptoException {
         byte[] decoded = Base64.decodeBase64(encrypted);
-        byte[] iv = ArrayUtils.subarray(decoded, 0, CryptoUtils.AES_KEY_BYTE_SIZE);
-        byte[] encryptedBytes = ArrayUtils.subarray(decoded, CryptoUtils.AES_KEY_BYTE_SIZE, decoded.length);
+        int ivSize = CryptoUtils.AES_KEY_BYTE_SIZE;
+
+        SimpleCipher cipher = createCipher(key);
+        cipher.setIv(Arrays.copyOf(decoded, Math.min(decoded.length, ivSize)));
+
+        // Decrypt directly from the decoded array, instead of copying the encrypted bytes to a new one
+        int offset = Math.min(decoded.length, ivSize);
+
+        return StringUtils.newStringUtf8(cipher.decrypt(decoded, offset, decoded.length - offset));
+    }
 
+    protected SimpleCipher createCipher(Key key) {
         SimpleCipher cipher = new SimpleCipher();
         cipher.setKey(key != null? key : this.key);
-        cipher.setIv(iv);
+        cipher.setCipher(CryptoUtils.getThreadLocalAesCipher());
 
-        return StringUtils.newStringUtf8(cipher.decrypt(encryptedBytes));
+        return cipher;
     }
 
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.crypto.impl;
+
+import org.bouncycastle.crypto.generators.Argon2BytesGenerator;
+import org.bouncycastle.crypto.params.Argon2Parameters;
+import org.craftercms.commons.crypto.CryptoException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link org.craftercms.commons.crypto.PasswordHasher} that uses Argon2id (through Bouncy Castle). Hashes have the
+ * standard format {@code $argon2id$v=19$m=<memory KB>,t=<iterations>,p=<parallelism>$<salt>$<hash>}.
+ *
+ * @since 4.2.0
+ */
+public class Argon2PasswordHasher extends AbstractPhcPasswordHasher {
+
+    public static final String ID = "argon2id";
+    public static final String MEMORY_PARAM = "m";
+    public static final String ITERATIONS_PARAM = "t";
+    public static final String PARALLELISM_PARAM = "p";
+
+    /**
+     * Current OWASP recommendation for Argon2id (19 MiB of memory, 2 iterations, 1 degree of parallelism)
+     */
+    public static final int DEFAULT_MEMORY_KB = 19456;
+    public static final int DEFAULT_ITERATIONS = 2;
+    public static final int DEFAULT_PARALLELISM = 1;
+
+    protected int memoryKb = DEFAULT_MEMORY_KB;
+    protected int iterations = DEFAULT_ITERATIONS;
+    protected int parallelism = DEFAULT_PARALLELISM;
+
+    public void setMemoryKb(int memoryKb) {
+        this.memoryKb = memoryKb;
+    }
+
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    protected String getId() {
+        return ID;
+    }
+
+    @Override
+    protected String getVersion() {
+        return String.valueOf(Argon2Parameters.ARGON2_VERSION_13);
+    }
+
+    @Override
+    protected Map<String, Integer> getParameters() {
+        Map<String, Integer> params = new LinkedHashMap<>();
+        params.put(MEMORY_PARAM, memoryKb);
+        params.put(ITERATIONS_PARAM, iterations);
+        params.put(PARALLELISM_PARAM, parallelism);
+
+        return params;
+    }
+
+    @Override
+    protected byte[] derive(String clearPassword, byte[] salt, Map<String, Integer> params, int length)
+            throws CryptoException {
+        Integer memory = params.get(MEMORY_PARAM);
+        Integer iterations = params.get(ITERATIONS_PARAM);
+        Integer parallelism = params.get(PARALLELISM_PARAM);
+        if (memory == null || iterations == null || parallelism == null) {
+            throw new CryptoException(ERROR_KEY_INVALID_HASH);
+        }
+
+        Argon2Parameters argon2Params = new Argon2Parameters.Builder(Argon2Parameters.ARGON2_id)
+                .withVersion(Argon2Parameters.ARGON2_VERSION_13)
+                .withMemoryAsKB(memory)
+                .withIterations(iterations)
+                .withParallelism(parallelism)
+                .withSalt(salt)
+                .build();
+
+        Argon2BytesGenerator generator = new Argon2BytesGenerator();
+        generator.init(argon2Params);
+
+        byte[] hash = new byte[length];
+        generator.generateBytes(clearPassword.toCharArray(), hash);
+
+        return hash;
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.crypto.impl;
+
+import org.craftercms.commons.crypto.CryptoException;
+import org.craftercms.commons.crypto.PasswordHasher;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link PasswordHasher} decorator that runs all the hashing in a dedicated, bounded thread pool. At most
+ * {@code maxThreads} hashes are calculated at the same time, and at most {@code queueCapacity} requests can wait for
+ * a thread, so a burst of logins can't use all the CPU or all the request threads. Requests that don't fit in the
+ * queue, or that wait longer than {@code timeoutMillis}, fail with a {@link CryptoException}.
+ *
+ * @since 4.2.0
+ */
+public class BoundedExecutorPasswordHasher implements PasswordHasher, DisposableBean {
+
+    public static final String ERROR_KEY_BUSY = "crypto.passwordHasher.busy";
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 100;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 10000;
+
+    protected PasswordHasher actualHasher;
+    protected ThreadPoolExecutor executor;
+    protected long timeoutMillis;
+
+    public BoundedExecutorPasswordHasher(PasswordHasher actualHasher) {
+        this(actualHasher, Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY,
+             DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    public BoundedExecutorPasswordHasher(PasswordHasher actualHasher, int maxThreads, int queueCapacity,
+                                         long timeoutMillis) {
+        AtomicInteger threadCount = new AtomicInteger();
+
+        this.actualHasher = actualHasher;
+        this.timeoutMillis = timeoutMillis;
+        this.executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+                                               new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "password-hasher-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public String hash(String clearPassword) throws CryptoException {
+        return execute(() -> actualHasher.hash(clearPassword));
+    }
+
+    @Override
+    public boolean matches(String hashedPassword, String clearPassword) throws CryptoException {
+        return execute(() -> actualHasher.matches(hashedPassword, clearPassword));
+    }
+
+    /**
+     * Hashes the password without blocking the calling thread.
+     */
+    public CompletableFuture<String> hashAsync(String clearPassword) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return actualHasher.hash(clearPassword);
+            } catch (CryptoException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Matches the password without blocking the calling thread.
+     */
+    public CompletableFuture<Boolean> matchesAsync(String hashedPassword, String clearPassword) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return actualHasher.matches(hashedPassword, clearPassword);
+            } catch (CryptoException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    @Override
+    public boolean supports(String hashedPassword) {
+        return actualHasher.supports(hashedPassword);
+    }
+
+    @Override
+    public boolean needsRehash(String hashedPassword) {
+        return actualHasher.needsRehash(hashedPassword);
+    }
+
+    /**
+     * Returns the number of requests currently waiting for a thread.
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Returns the number of hashes currently being calculated.
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    protected <T> T execute(Callable<T> task) throws CryptoException {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw new CryptoException(ERROR_KEY_BUSY, e);
+        }
+
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new CryptoException(ERROR_KEY_BUSY, e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CryptoException(AbstractPhcPasswordHasher.ERROR_KEY_HASH_ERROR, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CryptoException) {
+                throw (CryptoException) e.getCause();
+            }
+            throw new CryptoException(AbstractPhcPasswordHasher.ERROR_KEY_HASH_ERROR, e.getCause());
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.crypto.impl;
+
+import org.craftercms.commons.crypto.CryptoException;
+import org.craftercms.commons.crypto.PasswordHasher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * {@link PasswordHasher} that hashes new passwords with a default hasher, but can match hashes generated by any of a
+ * list of hashers (for example, the ones with older algorithms). Through
+ * {@link #matches(String, String, Consumer)} callers can transparently upgrade hashes that were not generated by the
+ * default hasher or with its current parameters.
+ *
+ * @since 4.2.0
+ */
+public class DelegatingPasswordHasher implements PasswordHasher {
+
+    protected PasswordHasher defaultHasher;
+    protected List<PasswordHasher> hashers;
+
+    /**
+     * @param defaultHasher the hasher used for new hashes
+     * @param otherHashers  other hashers that can be used to match existing hashes
+     */
+    public DelegatingPasswordHasher(PasswordHasher defaultHasher, List<PasswordHasher> otherHashers) {
+        this.defaultHasher = defaultHasher;
+        this.hashers = new ArrayList<>();
+        this.hashers.add(defaultHasher);
+        this.hashers.addAll(otherHashers);
+    }
+
+    @Override
+    public String hash(String clearPassword) throws CryptoException {
+        return defaultHasher.hash(clearPassword);
+    }
+
+    @Override
+    public boolean matches(String hashedPassword, String clearPassword) throws CryptoException {
+        PasswordHasher hasher = getHasher(hashedPassword);
+
+        return hasher != null && hasher.matches(hashedPassword, clearPassword);
+    }
+
+    /**
+     * Returns true if the clear password matches the given hash. If it matches and the hash should be upgraded, a new
+     * hash is generated with the default hasher and passed to the {@code rehashCallback}, so that it can be stored.
+     *
+     * @param hashedPassword the stored hash
+     * @param clearPassword  the password that we're trying to match, in clear
+     * @param rehashCallback receives the new hash, only called when a rehash was needed
+     *
+     * @return if the password matches
+     */
+    public boolean matches(String hashedPassword, String clearPassword, Consumer<String> rehashCallback)
+            throws CryptoException {
+        boolean matches = matches(hashedPassword, clearPassword);
+        if (matches && needsRehash(hashedPassword)) {
+            rehashCallback.accept(hash(clearPassword));
+        }
+
+        return matches;
+    }
+
+    @Override
+    public boolean supports(String hashedPassword) {
+        return getHasher(hashedPassword) != null;
+    }
+
+    @Override
+    public boolean needsRehash(String hashedPassword) {
+        return !defaultHasher.supports(hashedPassword) || defaultHasher.needsRehash(hashedPassword);
+    }
+
+    protected PasswordHasher getHasher(String hashedPassword) {
+        for (PasswordHasher hasher : hashers) {
+            if (hasher.supports(hashedPassword)) {
+                return hasher;
+            }
+        }
+
+        return null;
+    }
+
+}
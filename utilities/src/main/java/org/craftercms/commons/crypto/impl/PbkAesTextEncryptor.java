@@ -18,7 +18,13 @@ package org.craftercms.commons.crypto.impl;
 import java.beans.ConstructorProperties;
 import java.security.GeneralSecurityException;
 import java.security.Key;
-import java.security.spec.KeySpec;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.crypto.Mac;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
@@ -36,6 +42,12 @@ import static org.apache.commons.lang3.StringUtils.startsWithIgnoreCase;
  * Wrapper for {@link org.craftercms.commons.crypto.impl.AesTextEncryptor} that generates the encryption key based
  * on a password and salt.
  *
+ * <p>The keys are derived when the encryptor is created, and only the derived keys are kept: the password is never
+ * stored. Since the key derivation is expensive, the derived keys are also cached for the whole process (up to
+ * {@value #MAX_CACHED_KEYS} keys, least recently used first out), so creating several encryptors with the same
+ * password and salt only derives the keys once. The cache is keyed by an HMAC of the password and salt with a random
+ * secret generated for each process, so the keys of the cache can't be used to guess the passwords.</p>
+ *
  * @author avasquez
  */
 public class PbkAesTextEncryptor implements TextEncryptor {
@@ -44,29 +56,90 @@ public class PbkAesTextEncryptor implements TextEncryptor {
     private static final int PBK_ITER = 65536;
     private static final int PBK_LEN = 128;
     private static final String NO_ENCODE_PREFIX = "CCE-V1#";
+    private static final String CACHE_KEY_ALGORITHM = "HmacSHA256";
+    private static final int CACHE_KEY_SECRET_LEN = 32;
+
+    static final int MAX_CACHED_KEYS = 100;
+
+    private static final byte[] cacheKeySecret = new byte[CACHE_KEY_SECRET_LEN];
+    private static final Map<String, Key> derivedKeys = Collections.synchronizedMap(
+            new LinkedHashMap<String, Key>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Key> eldest) {
+                    return size() > MAX_CACHED_KEYS;
+                }
+            });
+    private static final LongAdder keyDerivations = new LongAdder();
+
+    static {
+        new SecureRandom().nextBytes(cacheKeySecret);
+    }
 
     private TextEncryptor actualTextEncryptor;
     private TextEncryptor legacyTextEncryptor;
 
+    private static Key getKey(String password, byte[] salt) throws CryptoException {
+        String cacheKey = getCacheKey(password, salt);
+        Key key = derivedKeys.get(cacheKey);
+        if (key == null) {
+            // Derived outside the lock, concurrent encryptors for the same key might derive it more than once
+            key = generateKey(password, salt);
+            derivedKeys.put(cacheKey, key);
+        }
+
+        return key;
+    }
+
+    private static String getCacheKey(String password, byte[] salt) throws CryptoException {
+        try {
+            Mac mac = Mac.getInstance(CACHE_KEY_ALGORITHM);
+            mac.init(new SecretKeySpec(cacheKeySecret, CACHE_KEY_ALGORITHM));
+
+            // Prefix the salt with its length, so that different password and salt pairs can't collide
+            byte[] saltLength = { (byte) (salt.length >>> 24), (byte) (salt.length >>> 16),
+                                  (byte) (salt.length >>> 8), (byte) salt.length };
+            mac.update(saltLength);
+            mac.update(salt);
+            mac.update(password.getBytes(UTF_8));
+
+            return Base64.encodeBase64String(mac.doFinal());
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException("Unable to generate PBK key cache key", e);
+        }
+    }
+
     private static Key generateKey(String password, byte[] salt) throws CryptoException {
+        keyDerivations.increment();
+
+        char[] passwordChars = password.toCharArray();
+        PBEKeySpec keySpec = new PBEKeySpec(passwordChars, salt, PBK_ITER, PBK_LEN);
         try {
-            KeySpec keySpec = new PBEKeySpec(password.toCharArray(), salt, PBK_ITER, PBK_LEN);
             SecretKeyFactory factory = SecretKeyFactory.getInstance(PBK_ALGORITHM);
 
             return new SecretKeySpec(factory.generateSecret(keySpec).getEncoded(), CryptoUtils.AES_CIPHER_ALGORITHM);
         } catch (GeneralSecurityException e) {
             throw new CryptoException("Unable to generate PBK key", e);
+        } finally {
+            keySpec.clearPassword();
+            Arrays.fill(passwordChars, '\0');
         }
     }
 
     @ConstructorProperties({"password", "salt"})
     public PbkAesTextEncryptor(String password, String salt) throws CryptoException {
-        actualTextEncryptor = new AesTextEncryptor(generateKey(password, salt.getBytes(UTF_8)));
+        actualTextEncryptor = new AesTextEncryptor(getKey(password, salt.getBytes(UTF_8)));
         if (Base64.isBase64(salt)) {
-            legacyTextEncryptor = new AesTextEncryptor(generateKey(password, Base64.decodeBase64(salt)));
+            legacyTextEncryptor = new AesTextEncryptor(getKey(password, Base64.decodeBase64(salt)));
         }
     }
 
+    /**
+     * Returns the number of keys derived so far by the process.
+     */
+    static long getKeyDerivationCount() {
+        return keyDerivations.sum();
+    }
+
     @Override
     public String encrypt(String clear) throws CryptoException {
         return NO_ENCODE_PREFIX + actualTextEncryptor.encrypt(clear);
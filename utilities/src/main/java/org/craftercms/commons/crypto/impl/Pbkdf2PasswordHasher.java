@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.crypto.impl;
+
+import org.craftercms.commons.crypto.CryptoException;
+
+import java.security.GeneralSecurityException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * {@link org.craftercms.commons.crypto.PasswordHasher} that uses PBKDF2 with HMAC-SHA256. Hashes have the format
+ * {@code $pbkdf2-sha256$i=<iterations>$<salt>$<hash>}.
+ *
+ * @since 4.2.0
+ */
+public class Pbkdf2PasswordHasher extends AbstractPhcPasswordHasher {
+
+    public static final String ID = "pbkdf2-sha256";
+    public static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    public static final String ITERATIONS_PARAM = "i";
+
+    /**
+     * Current OWASP recommendation for PBKDF2-HMAC-SHA256
+     */
+    public static final int DEFAULT_ITERATIONS = 600000;
+
+    protected int iterations = DEFAULT_ITERATIONS;
+
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    @Override
+    protected String getId() {
+        return ID;
+    }
+
+    @Override
+    protected Map<String, Integer> getParameters() {
+        Map<String, Integer> params = new LinkedHashMap<>();
+        params.put(ITERATIONS_PARAM, iterations);
+
+        return params;
+    }
+
+    @Override
+    protected byte[] derive(String clearPassword, byte[] salt, Map<String, Integer> params, int length)
+            throws CryptoException {
+        Integer iterations = params.get(ITERATIONS_PARAM);
+        if (iterations == null) {
+            throw new CryptoException(ERROR_KEY_INVALID_HASH);
+        }
+
+        PBEKeySpec keySpec = new PBEKeySpec(clearPassword.toCharArray(), salt, iterations, length * 8);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(keySpec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(ERROR_KEY_HASH_ERROR, e);
+        } finally {
+            keySpec.clearPassword();
+        }
+    }
+
+}
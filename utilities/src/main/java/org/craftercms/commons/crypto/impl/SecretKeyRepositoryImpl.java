@@ -20,6 +20,12 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.UserPrincipal;
 import java.security.GeneralSecurityException;
 import java.security.KeyStore;
 import javax.crypto.SecretKey;
@@ -46,6 +52,7 @@ public class SecretKeyRepositoryImpl implements SecretKeyRepository, Initializin
     public static final String LOG_KEY_KEY_SAVED = "crypto.keyRepo.keySaved";
     public static final String LOG_KEY_KEY_STORE_LOADED = "crypto.keyRepo.keyStoreLoaded";
     public static final String LOG_KEY_KEY_STORE_STORED = "crypto.keyRepo.keyStoreStored";
+    public static final String LOG_KEY_KEY_STORE_OWNER_NOT_COPIED = "crypto.keyRepo.keyStoreOwnerNotCopied";
     public static final String ERROR_KEY_KEY_STORE_LOAD_ERROR = "crypto.keyRepo.keyStoreLoadError";
     public static final String ERROR_KEY_KEY_STORE_STORE_ERROR = "crypto.keyRepo.keyStoreStoreError";
     public static final String ERROR_KEY_GET_KEY_ERROR = "crypto.keyRepo.getKeyError";
@@ -132,14 +139,57 @@ public class SecretKeyRepositoryImpl implements SecretKeyRepository, Initializin
     }
 
     protected void storeKeyStore() throws CryptoException {
+        Path keyStorePath = keyStoreFile.toPath().toAbsolutePath();
+        Path tmpPath = null;
         try {
-            try (OutputStream out = FileUtils.openOutputStream(keyStoreFile)) {
+            // Write to a temp file first and then replace the actual file, so that a failure while writing never
+            // leaves a corrupted keystore
+            Path parent = Files.createDirectories(keyStorePath.getParent());
+            tmpPath = Files.createTempFile(parent, keyStorePath.getFileName() + ".", ".tmp");
+            copyFileAttributes(keyStorePath, tmpPath);
+
+            try (OutputStream out = Files.newOutputStream(tmpPath)) {
                 keyStore.store(out, keyStorePassword);
             }
 
+            try {
+                Files.move(tmpPath, keyStorePath, StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpPath, keyStorePath, StandardCopyOption.REPLACE_EXISTING);
+            }
+            tmpPath = null;
+
             logger.debug(LOG_KEY_KEY_STORE_STORED, keyStoreFile);
         } catch (GeneralSecurityException | IOException e) {
-            throw new CryptoException(ERROR_KEY_KEY_STORE_STORE_ERROR, e);
+            throw new CryptoException(ERROR_KEY_KEY_STORE_STORE_ERROR, e, keyStoreFile);
+        } finally {
+            if (tmpPath != null) {
+                FileUtils.deleteQuietly(tmpPath.toFile());
+            }
+        }
+    }
+
+    /**
+     * Copies the POSIX permissions and owner of the current keystore file (if any) to the new one, so replacing the
+     * file doesn't change who can read it.
+     */
+    protected void copyFileAttributes(Path source, Path target) throws IOException {
+        if (!Files.exists(source) || Files.getFileAttributeView(source, PosixFileAttributeView.class) == null) {
+            return;
+        }
+
+        Files.setPosixFilePermissions(target, Files.getPosixFilePermissions(source));
+
+        UserPrincipal owner = Files.getOwner(source);
+        if (!owner.equals(Files.getOwner(target))) {
+            // Only privileged processes can change the owner, so the permissions are the best that can be done
+            // otherwise
+            try {
+                Files.setOwner(target, owner);
+            } catch (IOException e) {
+                logger.debug(LOG_KEY_KEY_STORE_OWNER_NOT_COPIED, e, owner, keyStoreFile);
+            }
         }
     }
 
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.crypto.impl;
+
+import org.apache.commons.lang3.StringUtils;
+import org.craftercms.commons.crypto.CryptoUtils;
+import org.craftercms.commons.crypto.PasswordHasher;
+import org.craftercms.commons.crypto.SimpleDigest;
+
+import java.security.MessageDigest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * {@link PasswordHasher} that uses a {@link SimpleDigest} (iterated SHA-256), generating hashes with the
+ * {@code hash|salt} format historically returned by {@link CryptoUtils#hashPassword(String)}. It's mainly kept to
+ * match existing hashes, new hashes should be generated with {@link Pbkdf2PasswordHasher} or
+ * {@link Argon2PasswordHasher}.
+ *
+ * @since 4.2.0
+ */
+public class SimpleDigestPasswordHasher implements PasswordHasher {
+
+    @Override
+    public String hash(String clearPassword) {
+        SimpleDigest digest = new SimpleDigest();
+        String hashedPswd = digest.digestBase64(clearPassword);
+
+        return hashedPswd + CryptoUtils.PASSWORD_SEP + digest.getBase64Salt();
+    }
+
+    @Override
+    public boolean matches(String hashedPassword, String clearPassword) {
+        int idxOfSep = hashedPassword.indexOf(CryptoUtils.PASSWORD_SEP);
+        String storedHash = hashedPassword.substring(0, idxOfSep);
+        String salt = hashedPassword.substring(idxOfSep + 1);
+        SimpleDigest digest = new SimpleDigest();
+
+        digest.setBase64Salt(salt);
+
+        return MessageDigest.isEqual(storedHash.getBytes(UTF_8), digest.digestBase64(clearPassword).getBytes(UTF_8));
+    }
+
+    @Override
+    public boolean supports(String hashedPassword) {
+        return StringUtils.contains(hashedPassword, CryptoUtils.PASSWORD_SEP) &&
+               !StringUtils.startsWith(hashedPassword, AbstractPhcPasswordHasher.SEPARATOR);
+    }
+
+}
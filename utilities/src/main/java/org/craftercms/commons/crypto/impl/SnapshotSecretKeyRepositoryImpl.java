@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.crypto.impl;
+
+import java.io.File;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.crypto.SecretKey;
+
+import org.craftercms.commons.crypto.CryptoException;
+import org.craftercms.commons.crypto.CryptoUtils;
+import org.craftercms.commons.i10n.I10nLogger;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Extension of {@link SecretKeyRepositoryImpl} that decrypts all the keys of the keystore once, at startup, into an
+ * immutable snapshot map. Reads just go to the current snapshot, without any locking or decryption. Writes replace
+ * the snapshot (copy-on-write) and update the keystore file.
+ *
+ * <p>By default the keystore file is written on every save, like in {@link SecretKeyRepositoryImpl}. If
+ * {@code flushDelayMillis} is greater than 0, saves that happen within that window are coalesced into a single
+ * write. If the write fails, it's retried after the same delay. Keep in mind that keys saved in that window will be
+ * lost if the process dies before the flush, so data encrypted with them won't be recoverable.</p>
+ *
+ * @since 4.2.0
+ */
+public class SnapshotSecretKeyRepositoryImpl extends SecretKeyRepositoryImpl implements DisposableBean {
+
+    public static final String LOG_KEY_KEY_STORE_FLUSH_ERROR = "crypto.keyRepo.keyStoreFlushError";
+
+    private static final I10nLogger logger = new I10nLogger(SnapshotSecretKeyRepositoryImpl.class);
+
+    protected volatile Map<String, SecretKey> keys = Collections.emptyMap();
+
+    protected long flushDelayMillis;
+    protected ScheduledExecutorService flushService;
+    protected boolean flushPending;
+
+    protected final LongAdder lookupCount = new LongAdder();
+    protected final LongAdder lookupTimeNanos = new LongAdder();
+
+    public SnapshotSecretKeyRepositoryImpl(File keyStoreFile, String keyStorePassword) {
+        super(keyStoreFile, keyStorePassword);
+    }
+
+    public void setFlushDelayMillis(long flushDelayMillis) {
+        this.flushDelayMillis = flushDelayMillis;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws CryptoException {
+        super.afterPropertiesSet();
+
+        Map<String, SecretKey> loadedKeys = new HashMap<>();
+        try {
+            Enumeration<String> aliases = keyStore.aliases();
+            while (aliases.hasMoreElements()) {
+                String alias = aliases.nextElement();
+                Key key = keyStore.getKey(alias, keyStorePassword);
+                if (key instanceof SecretKey) {
+                    loadedKeys.put(alias, (SecretKey) key);
+                }
+            }
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(ERROR_KEY_KEY_STORE_LOAD_ERROR, e, keyStoreFile);
+        }
+
+        keys = Collections.unmodifiableMap(loadedKeys);
+
+        if (flushDelayMillis > 0) {
+            flushService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "secret-key-repository-flush");
+                thread.setDaemon(true);
+
+                return thread;
+            });
+        }
+    }
+
+    @Override
+    public void destroy() throws CryptoException {
+        if (flushService != null) {
+            flushService.shutdownNow();
+        }
+
+        flush();
+    }
+
+    @Override
+    public SecretKey getKey(String name, boolean create) throws CryptoException {
+        long start = System.nanoTime();
+        try {
+            SecretKey key = keys.get(name);
+            if (key == null && create) {
+                synchronized (this) {
+                    // Check again, just in case the key was created by another concurrent thread
+                    key = keys.get(name);
+                    if (key == null) {
+                        try {
+                            key = CryptoUtils.generateKey(defaultKeyAlgorithm);
+                        } catch (GeneralSecurityException e) {
+                            throw new CryptoException(ERROR_KEY_GET_KEY_ERROR, e, name);
+                        }
+
+                        saveKey(name, key);
+
+                        logger.debug(LOG_KEY_KEY_CREATED, name);
+                    }
+                }
+            }
+
+            return key;
+        } finally {
+            lookupCount.increment();
+            lookupTimeNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public synchronized void saveKey(String name, SecretKey key) throws CryptoException {
+        try {
+            keyStore.setEntry(name, new KeyStore.SecretKeyEntry(key), new KeyStore.PasswordProtection(keyStorePassword));
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(ERROR_KEY_SAVE_KEY_ERROR, e, name);
+        }
+
+        logger.debug(LOG_KEY_KEY_SAVED, name);
+
+        Map<String, SecretKey> newKeys = new HashMap<>(keys);
+        newKeys.put(name, key);
+        keys = Collections.unmodifiableMap(newKeys);
+
+        if (flushService != null) {
+            if (!flushPending) {
+                flushPending = true;
+                flushService.schedule(this::flushQuietly, flushDelayMillis, TimeUnit.MILLISECONDS);
+            }
+        } else {
+            storeKeyStore();
+        }
+    }
+
+    /**
+     * Writes the keystore file if there are pending changes.
+     */
+    public synchronized void flush() throws CryptoException {
+        if (flushPending) {
+            // Only clear the flag after a successful write, so a failed flush is retried
+            storeKeyStore();
+            flushPending = false;
+        }
+    }
+
+    /**
+     * Returns the number of key lookups done so far.
+     */
+    public long getLookupCount() {
+        return lookupCount.sum();
+    }
+
+    /**
+     * Returns the average time of a key lookup, in nanoseconds.
+     */
+    public double getAverageLookupTimeNanos() {
+        long count = lookupCount.sum();
+
+        return count > 0? (double) lookupTimeNanos.sum() / count : 0;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (CryptoException e) {
+            logger.error(LOG_KEY_KEY_STORE_FLUSH_ERROR, e, keyStoreFile);
+
+            // The changes are still pending, so try again later (destroy() also tries one last time)
+            try {
+                flushService.schedule(this::flushQuietly, flushDelayMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException ree) {
+                // Shutting down
+            }
+        }
+    }
+
+}
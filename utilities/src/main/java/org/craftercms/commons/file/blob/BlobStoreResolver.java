@@ -18,7 +18,7 @@ package org.craftercms.commons.file.blob;
 import org.craftercms.commons.config.ConfigurationException;
 import org.craftercms.commons.config.ConfigurationProvider;
 
-import java.io.IOException;
+import java.util.List;
 
 /**
  * Provides access to all known implementations of {@link BlobStore}
@@ -36,4 +36,35 @@ public interface BlobStoreResolver {
      */
     BlobStore getById(ConfigurationProvider provider, String storeId) throws ConfigurationException;
 
+    /**
+     * Returns the ids of all the configured stores, in the order of the configuration file
+     * @param provider provider to read the configuration file
+     * @return the ids of the stores
+     * @throws UnsupportedOperationException if the implementation can't list the stores
+     * @since 4.2.0
+     */
+    default List<String> getStoreIds(ConfigurationProvider provider) throws ConfigurationException {
+        throw new UnsupportedOperationException("Listing blob stores is not supported");
+    }
+
+    /**
+     * Returns the first {@link BlobStore} (in the configuration file) that is compatible with the given path. By
+     * default each store listed by {@link #getStoreIds(ConfigurationProvider)} is checked in order with
+     * {@link BlobStore#isCompatible(String)}, implementations can override it to avoid getting every store.
+     * @param provider provider to read the configuration file
+     * @param path the path
+     * @return the blob store, or null if none matches the path
+     * @throws UnsupportedOperationException if the implementation can't list the stores
+     * @since 4.2.0
+     */
+    default BlobStore resolveByPath(ConfigurationProvider provider, String path) throws ConfigurationException {
+        for (String storeId : getStoreIds(provider)) {
+            BlobStore store = getById(provider, storeId);
+            if (store.isCompatible(path)) {
+                return store;
+            }
+        }
+        return null;
+    }
+
 }
@@ -28,6 +28,7 @@ import org.springframework.core.io.Resource;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.regex.Pattern;
 
 import static org.craftercms.commons.config.ConfigUtils.getRequiredStringProperty;
 
@@ -49,6 +50,11 @@ public abstract class AbstractBlobStore<T extends ConfigurationProfile> implemen
      */
     protected String pattern;
 
+    /**
+     * The compiled regex to check for compatible paths
+     */
+    protected Pattern compiledPattern;
+
     /**
      * The mappings for the different environments
      */
@@ -79,6 +85,7 @@ public abstract class AbstractBlobStore<T extends ConfigurationProfile> implemen
 
     public void setPattern(String pattern) {
         this.pattern = pattern;
+        this.compiledPattern = Pattern.compile(pattern);
     }
 
     public void setProfileMapper(ConfigurationMapper<T> profileMapper) {
@@ -91,13 +98,13 @@ public abstract class AbstractBlobStore<T extends ConfigurationProfile> implemen
 
     @Override
     public boolean isCompatible(String path) {
-        return path != null && path.matches(pattern);
+        return path != null && compiledPattern.matcher(path).matches();
     }
 
     @Override
     public void init(HierarchicalConfiguration<ImmutableNode> config) throws ConfigurationException {
         id = getRequiredStringProperty(config, CONFIG_KEY_ID);
-        pattern = getRequiredStringProperty(config, CONFIG_KEY_PATTERN);
+        setPattern(getRequiredStringProperty(config, CONFIG_KEY_PATTERN));
 
         mappings = new LinkedHashMap<>();
         config.configurationsAt(CONFIG_KEY_MAPPING).forEach(bucketConfig -> {
@@ -31,6 +31,12 @@ import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Predicate;
 
@@ -46,6 +52,8 @@ import static org.craftercms.commons.file.blob.BlobStore.*;
 @SuppressWarnings("rawtypes, unchecked")
 public class BlobStoreResolverImpl implements BlobStoreResolver, ApplicationContextAware {
 
+    public static final int DEFAULT_ROUTER_CACHE_MAX_SIZE = 100;
+
     protected final Logger logger = LoggerFactory.getLogger(getClass());
 
     /**
@@ -62,6 +70,18 @@ public class BlobStoreResolverImpl implements BlobStoreResolver, ApplicationCont
 
     protected ApplicationContext applicationContext;
 
+    /**
+     * The routers built for the store patterns (least recently used first out), so that the patterns are only
+     * compiled again when they change
+     */
+    protected Map<List<Map.Entry<String, String>>, PathRouter<String>> routers = Collections.synchronizedMap(
+            new LinkedHashMap<List<Map.Entry<String, String>>, PathRouter<String>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry eldest) {
+                    return size() > DEFAULT_ROUTER_CACHE_MAX_SIZE;
+                }
+            });
+
     @Override
     public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
         this.applicationContext = applicationContext;
@@ -94,27 +114,35 @@ public class BlobStoreResolverImpl implements BlobStoreResolver, ApplicationCont
 
     protected BlobStore findStore(HierarchicalConfiguration config, Predicate<HierarchicalConfiguration> predicate)
             throws ConfigurationException {
+        return createStore(findStoreConfig(config, predicate));
+    }
+
+    protected HierarchicalConfiguration findStoreConfig(HierarchicalConfiguration config,
+                                                        Predicate<HierarchicalConfiguration> predicate) {
         if (config == null || config.isEmpty()) {
             throw new BlobStoreConfigurationMissingException("No blob store configuration found");
         }
         Optional<HierarchicalConfiguration> storeConfig =
                 config.configurationsAt(CONFIG_KEY_STORE).stream().filter(predicate).findFirst();
         if (storeConfig.isPresent()) {
-            HierarchicalConfiguration store = storeConfig.get();
-            String type = store.getString(CONFIG_KEY_TYPE);
-            try {
-                BlobStore instance = applicationContext.getBean(type, BlobStore.class);
-                instance.init(store);
-                return instance;
-            } catch (NoSuchBeanDefinitionException e) {
-                throw new BlobStoreMissingException(
-                        format("No blob store found with id '%s'", store.getString(CONFIG_KEY_ID)));
-            }
+            return storeConfig.get();
         } else {
             throw new BlobStoreMissingException("Blob store not found in the configuration file");
         }
     }
 
+    protected BlobStore createStore(HierarchicalConfiguration store) throws ConfigurationException {
+        String type = store.getString(CONFIG_KEY_TYPE);
+        try {
+            BlobStore instance = applicationContext.getBean(type, BlobStore.class);
+            instance.init(store);
+            return instance;
+        } catch (NoSuchBeanDefinitionException e) {
+            throw new BlobStoreMissingException(
+                    format("No blob store found with id '%s'", store.getString(CONFIG_KEY_ID)));
+        }
+    }
+
     protected HierarchicalConfiguration getConfiguration(ConfigurationProvider provider) throws ConfigurationException {
         logger.debug("Reading blob store configuration");
         try {
@@ -130,6 +158,70 @@ public class BlobStoreResolverImpl implements BlobStoreResolver, ApplicationCont
         return getById(getConfiguration(provider), storeId);
     }
 
+    @Override
+    public List<String> getStoreIds(ConfigurationProvider provider) throws ConfigurationException {
+        HierarchicalConfiguration config = getConfiguration(provider);
+        if (config == null || config.isEmpty()) {
+            throw new BlobStoreConfigurationMissingException("No blob store configuration found");
+        }
+        List<String> storeIds = new ArrayList<>();
+        for (Object storeConfig : config.configurationsAt(CONFIG_KEY_STORE)) {
+            storeIds.add(((HierarchicalConfiguration) storeConfig).getString(CONFIG_KEY_ID));
+        }
+        return storeIds;
+    }
+
+    @Override
+    public BlobStore resolveByPath(ConfigurationProvider provider, String path) throws ConfigurationException {
+        HierarchicalConfiguration config = getConfiguration(provider);
+        String storeId = getRouter(getStorePatterns(config)).route(path);
+        if (storeId == null) {
+            logger.debug("No blob store found for path {}", path);
+            return null;
+        }
+        return getById(config, storeId);
+    }
+
+    /**
+     * Returns the patterns and ids of all the stores in the given configuration, in order
+     */
+    protected List<Map.Entry<String, String>> getStorePatterns(HierarchicalConfiguration config) {
+        if (config == null || config.isEmpty()) {
+            throw new BlobStoreConfigurationMissingException("No blob store configuration found");
+        }
+        List<Map.Entry<String, String>> patterns = new ArrayList<>();
+        for (Object storeConfig : config.configurationsAt(CONFIG_KEY_STORE)) {
+            HierarchicalConfiguration store = (HierarchicalConfiguration) storeConfig;
+            String pattern = store.getString(CONFIG_KEY_PATTERN);
+            if (StringUtils.isNotEmpty(pattern)) {
+                patterns.add(new AbstractMap.SimpleImmutableEntry<>(pattern, store.getString(CONFIG_KEY_ID)));
+            }
+        }
+        return patterns;
+    }
+
+    /**
+     * Returns the router for the given store patterns, building it only if there isn't one for the same patterns
+     */
+    protected PathRouter<String> getRouter(List<Map.Entry<String, String>> patterns) {
+        PathRouter<String> router = routers.get(patterns);
+        if (router == null) {
+            logger.debug("Building blob store router");
+            router = buildRouter(patterns);
+            routers.put(patterns, router);
+        }
+        return router;
+    }
+
+    /**
+     * Builds a router from the given store patterns to the store ids
+     */
+    protected PathRouter<String> buildRouter(List<Map.Entry<String, String>> patterns) {
+        PathRouter<String> router = new PathRouter<>();
+        patterns.forEach(pattern -> router.addRoute(pattern.getKey(), pattern.getValue()));
+        return router;
+    }
+
     protected BlobStore getById(HierarchicalConfiguration config, String storeId) throws ConfigurationException {
         logger.debug("Looking blob store with id {}", storeId);
         return findStore(config, store -> StringUtils.equals(storeId, store.getString(CONFIG_KEY_ID)));
@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.file.blob.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.configuration2.HierarchicalConfiguration;
+import org.apache.commons.lang3.StringUtils;
+import org.craftercms.commons.concurrent.locks.LockLease;
+import org.craftercms.commons.concurrent.locks.ReferenceCountedKeyBasedLockFactory;
+import org.craftercms.commons.config.ConfigurationException;
+import org.craftercms.commons.config.ConfigurationProvider;
+import org.craftercms.commons.file.blob.BlobStore;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.craftercms.commons.file.blob.BlobStore.CONFIG_KEY_ID;
+
+/**
+ * Extension of {@link BlobStoreResolverImpl} that keeps the initialized {@link BlobStore} instances, by provider
+ * (identified by its lookup variables, see {@link #getProviderKey(ConfigurationProvider)}) and store id, instead of
+ * creating and initializing a new one on every lookup.
+ *
+ * <p>If the configuration resolver reports a version for the configuration file
+ * ({@link org.craftercms.commons.config.ConfigurationResolver#getConfigVersion(String, String, ConfigurationProvider)})
+ * and it hasn't changed, the cached store is returned without reading the configuration at all. Otherwise the
+ * configuration is read and the store is only rebuilt if its configuration actually changed. Concurrent lookups that
+ * need to rebuild the same store wait for a single rebuild. The {@link PathRouter} used by
+ * {@link #resolveByPath(ConfigurationProvider, String)} is cached the same way, so the store patterns are only
+ * compiled again when they change.</p>
+ *
+ * @since 4.2.0
+ */
+@SuppressWarnings("rawtypes")
+public class CachingBlobStoreResolverImpl extends BlobStoreResolverImpl {
+
+    public static final long DEFAULT_CACHE_MAX_SIZE = 1000;
+
+    protected Cache<StoreKey, CachedStore> cache;
+
+    protected Cache<Object, CachedRouter> routerCache;
+
+    protected final ReferenceCountedKeyBasedLockFactory lockFactory = new ReferenceCountedKeyBasedLockFactory();
+
+    protected final LongAdder hits = new LongAdder();
+    protected final LongAdder misses = new LongAdder();
+    protected final LongAdder lookupCount = new LongAdder();
+    protected final LongAdder lookupNanos = new LongAdder();
+    protected final LongAccumulator maxLookupNanos = new LongAccumulator(Long::max, 0);
+
+    public CachingBlobStoreResolverImpl() {
+        this(DEFAULT_CACHE_MAX_SIZE);
+    }
+
+    public CachingBlobStoreResolverImpl(long cacheMaxSize) {
+        cache = CacheBuilder.newBuilder().maximumSize(cacheMaxSize).build();
+        routerCache = CacheBuilder.newBuilder().maximumSize(cacheMaxSize).build();
+    }
+
+    @Override
+    public BlobStore getById(ConfigurationProvider provider, String storeId) throws ConfigurationException {
+        long start = System.nanoTime();
+        try {
+            return getCachedById(provider, storeId);
+        } finally {
+            recordLookup(start, "id", storeId);
+        }
+    }
+
+    @Override
+    public BlobStore resolveByPath(ConfigurationProvider provider, String path) throws ConfigurationException {
+        long start = System.nanoTime();
+        try {
+            String storeId = getCachedRouter(provider).route(path);
+            if (storeId == null) {
+                logger.debug("No blob store found for path {}", path);
+                return null;
+            }
+            return getCachedById(provider, storeId);
+        } finally {
+            recordLookup(start, "path", path);
+        }
+    }
+
+    protected void recordLookup(long start, String by, String value) {
+        long elapsed = System.nanoTime() - start;
+        lookupCount.increment();
+        lookupNanos.add(elapsed);
+        maxLookupNanos.accumulate(elapsed);
+
+        logger.debug("Lookup of blob store by {} {} took {} ms", by, value, TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    /**
+     * Returns the router for the stores of the given provider, building it again only if the patterns or ids of the
+     * stores changed.
+     */
+    protected PathRouter<String> getCachedRouter(ConfigurationProvider provider) throws ConfigurationException {
+        Object providerKey = getProviderKey(provider);
+        String version = configurationResolver.getConfigVersion(configModule, configPath, provider);
+
+        CachedRouter cached = routerCache.getIfPresent(providerKey);
+        if (cached != null && version != null && version.equals(cached.version)) {
+            return cached.router;
+        }
+
+        List<Map.Entry<String, String>> patterns = getStorePatterns(getConfiguration(provider));
+
+        PathRouter<String> router;
+        if (cached != null && cached.patterns.equals(patterns)) {
+            router = cached.router;
+        } else {
+            router = getRouter(patterns);
+        }
+
+        routerCache.put(providerKey, new CachedRouter(version, patterns, router));
+
+        return router;
+    }
+
+    protected BlobStore getCachedById(ConfigurationProvider provider, String storeId) throws ConfigurationException {
+        StoreKey key = new StoreKey(getProviderKey(provider), storeId);
+        String version = configurationResolver.getConfigVersion(configModule, configPath, provider);
+
+        CachedStore cached = cache.getIfPresent(key);
+        if (cached != null && version != null && version.equals(cached.version)) {
+            hits.increment();
+            return cached.store;
+        }
+
+        // The version is unknown or has changed, so check if the store configuration actually changed
+        HierarchicalConfiguration storeConfig = findStoreConfig(getConfiguration(provider),
+                store -> StringUtils.equals(storeId, store.getString(CONFIG_KEY_ID)));
+        Map<String, Object> properties = getProperties(storeConfig);
+
+        if (cached != null && cached.properties.equals(properties)) {
+            hits.increment();
+            cache.put(key, new CachedStore(version, properties, cached.store));
+
+            return cached.store;
+        }
+
+        try (LockLease lease = lockFactory.acquire(key)) {
+            // Another thread might have rebuilt the store while waiting for the lock
+            cached = cache.getIfPresent(key);
+            if (cached != null && cached.properties.equals(properties)) {
+                hits.increment();
+                return cached.store;
+            }
+
+            misses.increment();
+
+            logger.debug("Initializing blob store with id {}", storeId);
+
+            BlobStore store = createStore(storeConfig);
+            cache.put(key, new CachedStore(version, properties, store));
+
+            return store;
+        }
+    }
+
+    /**
+     * Returns the key that identifies the given provider in the cache. By default the lookup variables (which
+     * identify the site or environment of the provider) are used, or the provider itself if it doesn't have any.
+     */
+    protected Object getProviderKey(ConfigurationProvider provider) {
+        Map<String, String> lookupVariables = provider.getLookupVariables();
+        return lookupVariables != null? lookupVariables : provider;
+    }
+
+    /**
+     * Returns all the (raw) properties of the given store configuration, used to detect if it has changed.
+     */
+    protected Map<String, Object> getProperties(HierarchicalConfiguration storeConfig) {
+        Map<String, Object> properties = new HashMap<>();
+        for (Iterator<String> iter = storeConfig.getKeys(); iter.hasNext();) {
+            String key = iter.next();
+            properties.put(key, storeConfig.getProperty(key));
+        }
+
+        return properties;
+    }
+
+    /**
+     * Removes all cached stores, so they're initialized again on the next lookup.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+        routerCache.invalidateAll();
+        routers.clear();
+    }
+
+    /**
+     * Removes the cached stores with the given id, for all providers.
+     */
+    public void invalidate(String storeId) {
+        cache.asMap().keySet().removeIf(key -> Objects.equals(key.storeId, storeId));
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getSize() {
+        return cache.size();
+    }
+
+    public long getLookupCount() {
+        return lookupCount.sum();
+    }
+
+    public double getAverageLookupMillis() {
+        long count = lookupCount.sum();
+        return count == 0? 0 : lookupNanos.sum() / (count * 1_000_000.0);
+    }
+
+    public double getMaxLookupMillis() {
+        return maxLookupNanos.get() / 1_000_000.0;
+    }
+
+    protected static class StoreKey {
+
+        protected final Object providerKey;
+        protected final String storeId;
+
+        protected StoreKey(Object providerKey, String storeId) {
+            this.providerKey = providerKey;
+            this.storeId = storeId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            StoreKey that = (StoreKey) o;
+            return Objects.equals(providerKey, that.providerKey) && Objects.equals(storeId, that.storeId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(providerKey, storeId);
+        }
+
+    }
+
+    protected static class CachedRouter {
+
+        protected final String version;
+        protected final List<Map.Entry<String, String>> patterns;
+        protected final PathRouter<String> router;
+
+        protected CachedRouter(String version, List<Map.Entry<String, String>> patterns,
+                               PathRouter<String> router) {
+            this.version = version;
+            this.patterns = patterns;
+            this.router = router;
+        }
+
+    }
+
+    protected static class CachedStore {
+
+        protected final String version;
+        protected final Map<String, Object> properties;
+        protected final BlobStore store;
+
+        protected CachedStore(String version, Map<String, Object> properties, BlobStore store) {
+            this.version = version;
+            this.properties = properties;
+            this.store = store;
+        }
+
+    }
+
+}
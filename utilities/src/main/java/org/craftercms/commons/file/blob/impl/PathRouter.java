@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.file.blob.impl;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Routes paths to targets (e.g. blob stores) by regex, returning the first target (in the order they were added) whose
+ * pattern fully matches the path. All patterns are compiled once and indexed in a trie by their literal prefix (the
+ * part before the first regex construct), so routing a path only evaluates the patterns whose literal prefix is a
+ * prefix of the path, plus the ones that don't have a literal prefix.
+ *
+ * <p>Routes should be added before the router is shared, after that it's safe for concurrent use.</p>
+ *
+ * @param <T> the type of the targets
+ * @since 4.2.0
+ */
+public class PathRouter<T> {
+
+    private static final String REGEX_SPECIAL_CHARS = "\\.[]{}()*+?^$|";
+
+    protected final List<Route<T>> routes = new ArrayList<>();
+    protected final Node root = new Node();
+
+    /**
+     * Adds a route for the given pattern.
+     *
+     * @param pattern the regex that paths need to fully match
+     * @param target  the target of the route
+     * @return this router, for chaining
+     */
+    public PathRouter<T> addRoute(String pattern, T target) {
+        int index = routes.size();
+        routes.add(new Route<>(Pattern.compile(pattern), target));
+
+        Node node = root;
+        for (char c : getLiteralPrefix(pattern).toCharArray()) {
+            node = node.children.computeIfAbsent(c, key -> new Node());
+        }
+        node.routes.set(index);
+
+        return this;
+    }
+
+    /**
+     * Returns the target of the first route whose pattern fully matches the given path.
+     *
+     * @param path the path
+     * @return the target, or null if no route matches
+     */
+    public T route(String path) {
+        if (path == null) {
+            return null;
+        }
+
+        BitSet candidates = (BitSet) root.routes.clone();
+        Node node = root;
+        for (int i = 0; i < path.length(); i++) {
+            node = node.children.get(path.charAt(i));
+            if (node == null) {
+                break;
+            }
+            candidates.or(node.routes);
+        }
+
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            Route<T> route = routes.get(i);
+            if (route.pattern.matcher(path).matches()) {
+                return route.target;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the number of routes.
+     */
+    public int size() {
+        return routes.size();
+    }
+
+    /**
+     * Returns the literal prefix of the given regex, that any fully matching string needs to start with. Patterns
+     * with top level alternations or starting with inline flags don't have a literal prefix.
+     */
+    protected static String getLiteralPrefix(String pattern) {
+        if (pattern.startsWith("(?") || hasTopLevelAlternation(pattern)) {
+            return "";
+        }
+
+        StringBuilder prefix = new StringBuilder();
+        int start = pattern.startsWith("^")? 1 : 0;
+
+        for (int i = start; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (REGEX_SPECIAL_CHARS.indexOf(c) >= 0) {
+                // The last literal char is optional or repeated, so it's not part of the prefix
+                if ((c == '?' || c == '*' || c == '{') && prefix.length() > 0) {
+                    prefix.setLength(prefix.length() - 1);
+                }
+                break;
+            }
+            prefix.append(c);
+        }
+
+        return prefix.toString();
+    }
+
+    private static boolean hasTopLevelAlternation(String pattern) {
+        int depth = 0;
+        boolean inClass = false;
+
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (inClass) {
+                inClass = c != ']';
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    protected static class Route<T> {
+
+        protected final Pattern pattern;
+        protected final T target;
+
+        protected Route(Pattern pattern, T target) {
+            this.pattern = pattern;
+            this.target = target;
+        }
+
+    }
+
+    protected static class Node {
+
+        protected final Map<Character, Node> children = new HashMap<>();
+        protected final BitSet routes = new BitSet();
+
+    }
+
+}
@@ -23,6 +23,7 @@ import org.craftercms.commons.config.ConfigurationException;
 import org.craftercms.commons.config.profiles.aws.S3Profile;
 import org.craftercms.commons.file.blob.exception.BlobStoreException;
 import org.craftercms.commons.file.blob.impl.AbstractBlobStore;
+import org.craftercms.commons.spring.resources.ResourceMetadataCache;
 import org.craftercms.commons.spring.resources.S3Resource;
 import org.springframework.core.io.Resource;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
@@ -48,6 +49,11 @@ public class AwsS3BlobStore extends AbstractBlobStore<S3Profile> {
      */
     protected S3AsyncClientCachingFactory asyncClientFactory;
 
+    /**
+     * Cache for the metadata of the objects, shared by all resources (optional)
+     */
+    protected ResourceMetadataCache metadataCache;
+
     public void setClientFactory(S3ClientCachingFactory clientFactory) {
         this.clientFactory = clientFactory;
     }
@@ -60,6 +66,10 @@ public class AwsS3BlobStore extends AbstractBlobStore<S3Profile> {
         this.asyncClientFactory = asyncClientFactory;
     }
 
+    public void setMetadataCache(ResourceMetadataCache metadataCache) {
+        this.metadataCache = metadataCache;
+    }
+
     protected S3AsyncClient getAsyncClient() {
         return asyncClientFactory.getClient(profile);
     }
@@ -81,7 +91,8 @@ public class AwsS3BlobStore extends AbstractBlobStore<S3Profile> {
     @Override
     protected Resource doGetContent(Mapping mapping, String path) {
         try {
-            return new S3Resource(clientFactory, profile, mapping.target, getKey(mapping, path));
+            return new S3Resource(clientFactory, profile, mapping.target, getKey(mapping, path), metadataCache,
+                                  asyncClientFactory);
         } catch (Exception e) {
             throw new BlobStoreException("Error getting content at " + mapping.target + "/" + getKey(mapping, path), e);
         }
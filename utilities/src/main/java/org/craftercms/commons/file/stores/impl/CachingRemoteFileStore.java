@@ -0,0 +1,641 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.file.stores.impl;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.craftercms.commons.file.stores.RemoteFile;
+import org.craftercms.commons.file.stores.RemoteFileStore;
+import org.craftercms.commons.file.stores.RemotePath;
+import org.craftercms.commons.spring.resources.MetadataAwareResource;
+import org.craftercms.commons.spring.resources.RangeAwareResource;
+import org.craftercms.commons.spring.resources.ResourceMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.Resource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link RemoteFileStore} decorator that keeps a local copy of the remote files in a size-bounded disk cache, so hot
+ * files are not downloaded from the remote service on every request.
+ *
+ * <ul>
+ *     <li>When the cache exceeds its max size, the least recently used files are evicted.</li>
+ *     <li>A cached file is served without contacting the remote service for {@code revalidateIntervalMillis}. After
+ *     that it's validated against the remote metadata, by ETag if both are known (see
+ *     {@link MetadataAwareResource}) or by last modified date otherwise, and downloaded again only if it changed.</li>
+ *     <li>Concurrent misses for the same file wait for a single download.</li>
+ *     <li>Ranges of cached files are read with positional {@link java.nio.channels.FileChannel} reads.</li>
+ *     <li>Files bigger than {@code maxFileSize} are never cached, they're streamed from the remote store.</li>
+ *     <li>The metadata used for validation is read before the download (or from the download response when the
+ *     resource supports it), and the file is not cached if its length doesn't match the downloaded content.</li>
+ * </ul>
+ *
+ * <p>{@code exists()}, {@code contentLength()} and {@code lastModified()} never download the file: they're answered
+ * from the cache if the file is cached and doesn't need to be revalidated, or from the remote store otherwise.</p>
+ *
+ * <p>Since the cache index is kept in memory, the files left in the cache folder by a previous run are deleted on
+ * startup. Only the files created by this class (identified by their prefix) are deleted, but a dedicated folder
+ * should still be used.</p>
+ *
+ * @since 4.2.0
+ */
+public class CachingRemoteFileStore implements RemoteFileStore, InitializingBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachingRemoteFileStore.class);
+
+    public static final long DEFAULT_MAX_SIZE = 1024L * 1024 * 1024;
+    public static final long DEFAULT_MAX_FILE_SIZE = 100L * 1024 * 1024;
+    public static final long DEFAULT_REVALIDATE_INTERVAL_MILLIS = 60_000;
+
+    private static final String CACHE_FILE_PREFIX = "cached-";
+    private static final String TEMP_FILE_PREFIX = "download-";
+
+    protected final RemoteFileStore actualStore;
+    protected final Path cacheFolder;
+
+    protected long maxSize = DEFAULT_MAX_SIZE;
+    protected long maxFileSize = DEFAULT_MAX_FILE_SIZE;
+    protected long revalidateIntervalMillis = DEFAULT_REVALIDATE_INTERVAL_MILLIS;
+
+    /**
+     * Cached files in LRU order, guarded by itself
+     */
+    protected final LinkedHashMap<String, CacheEntry> index = new LinkedHashMap<>(16, 0.75f, true);
+    protected long currentSize;
+
+    protected final ConcurrentMap<String, CompletableFuture<CacheEntry>> downloads = new ConcurrentHashMap<>();
+    protected final AtomicLong fileCounter = new AtomicLong();
+
+    protected final LongAdder hits = new LongAdder();
+    protected final LongAdder misses = new LongAdder();
+    protected final LongAdder revalidations = new LongAdder();
+    protected final LongAdder evictions = new LongAdder();
+
+    public CachingRemoteFileStore(RemoteFileStore actualStore, String cacheFolder) {
+        this.actualStore = actualStore;
+        this.cacheFolder = Paths.get(cacheFolder);
+    }
+
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public void setMaxFileSize(long maxFileSize) {
+        this.maxFileSize = maxFileSize;
+    }
+
+    public void setRevalidateIntervalMillis(long revalidateIntervalMillis) {
+        this.revalidateIntervalMillis = revalidateIntervalMillis;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        Files.createDirectories(cacheFolder);
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheFolder, this::isOwnFile)) {
+            for (Path file : files) {
+                deleteFile(file);
+            }
+        }
+    }
+
+    @Override
+    public RemoteFile getFile(RemotePath path) throws IOException {
+        return new CachedRemoteFile(path, actualStore.getFile(path));
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getRevalidationCount() {
+        return revalidations.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getCurrentSize() {
+        synchronized (index) {
+            return currentSize;
+        }
+    }
+
+    public int getFileCount() {
+        synchronized (index) {
+            return index.size();
+        }
+    }
+
+    /**
+     * Removes the given file from the cache.
+     */
+    public void invalidate(RemotePath path) {
+        String key = getKey(path);
+        synchronized (index) {
+            CacheEntry entry = index.remove(key);
+            if (entry != null) {
+                currentSize -= entry.size;
+                deleteFile(entry.file);
+            }
+        }
+    }
+
+    protected boolean isOwnFile(Path file) {
+        String name = file.getFileName().toString();
+        return (name.startsWith(CACHE_FILE_PREFIX) || name.startsWith(TEMP_FILE_PREFIX)) && Files.isRegularFile(file);
+    }
+
+    protected String getKey(RemotePath path) {
+        String profile = path instanceof ProfileAwareRemotePath? ((ProfileAwareRemotePath) path).getProfile() : null;
+        return path.getStoreType() + ":" + profile + ":" + path.getPath();
+    }
+
+    /**
+     * Returns the cache entry for the given file, validating or downloading it if needed.
+     *
+     * @return the entry, or null if the file is too big to be cached
+     */
+    protected CacheEntry getEntry(RemotePath path, Resource remote) throws IOException {
+        String key = getKey(path);
+
+        CacheEntry entry;
+        synchronized (index) {
+            entry = index.get(key);
+        }
+
+        if (entry != null) {
+            long now = System.currentTimeMillis();
+            if (now - entry.validatedAt < revalidateIntervalMillis) {
+                hits.increment();
+                return entry;
+            }
+
+            revalidations.increment();
+
+            if (isValid(entry, remote)) {
+                entry.validatedAt = now;
+                hits.increment();
+                return entry;
+            }
+
+            logger.debug("Cached file {} is stale", key);
+
+            removeEntry(key, entry);
+        }
+
+        misses.increment();
+
+        return download(key, remote);
+    }
+
+    /**
+     * Returns the cache entry for the given file only if it's cached and doesn't need to be revalidated, without
+     * contacting the remote store.
+     */
+    protected CacheEntry getFreshEntry(RemotePath path) {
+        CacheEntry entry;
+        synchronized (index) {
+            entry = index.get(getKey(path));
+        }
+
+        if (entry != null && System.currentTimeMillis() - entry.validatedAt < revalidateIntervalMillis) {
+            return entry;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Opens the cached copy of the given file. Since another thread can evict (and delete) the file right after the
+     * entry is returned, opening it is retried once, which downloads it again.
+     *
+     * @return the result of opening the file, or null if the file can't be served from the cache
+     */
+    protected <T> T openCachedFile(RemotePath path, Resource remote, CachedFileOpener<T> opener)
+            throws IOException {
+        for (int i = 0; i < 2; i++) {
+            CacheEntry entry = getEntry(path, remote);
+            if (entry == null) {
+                return null;
+            }
+
+            try {
+                return opener.open(entry.file);
+            } catch (NoSuchFileException e) {
+                logger.debug("Cached file {} was evicted before it could be opened", entry.file);
+
+                removeEntry(getKey(path), entry);
+            }
+        }
+
+        return null;
+    }
+
+    protected boolean isValid(CacheEntry entry, Resource remote) throws IOException {
+        ResourceMetadata metadata = getRemoteMetadata(remote);
+        if (entry.eTag != null && metadata.getETag() != null) {
+            return entry.eTag.equals(metadata.getETag());
+        }
+
+        return entry.lastModified > 0 && entry.lastModified == metadata.getLastModified();
+    }
+
+    protected ResourceMetadata getRemoteMetadata(Resource remote) throws IOException {
+        if (remote instanceof MetadataAwareResource) {
+            return ((MetadataAwareResource) remote).getMetadata();
+        } else {
+            return new ResourceMetadata(-1, remote.lastModified(), null, null);
+        }
+    }
+
+    /**
+     * Downloads the file to the cache, or waits for the download if another thread is already doing it.
+     */
+    protected CacheEntry download(String key, Resource remote) throws IOException {
+        CompletableFuture<CacheEntry> download = new CompletableFuture<>();
+        CompletableFuture<CacheEntry> existing = downloads.putIfAbsent(key, download);
+        if (existing != null) {
+            return awaitDownload(existing);
+        }
+
+        Path tempFile = null;
+        try {
+            boolean metadataUpdatedOnRead = remote instanceof MetadataAwareResource &&
+                                            ((MetadataAwareResource) remote).isMetadataUpdatedOnRead();
+            ResourceMetadata metadata = null;
+            if (!metadataUpdatedOnRead) {
+                // Read before the download, so that the metadata is never newer than the content (if the file changes
+                // in between, it's just downloaded again on the next validation). Usually it's already known from the
+                // validation of the previous entry
+                try {
+                    metadata = getRemoteMetadata(remote);
+                } catch (IOException e) {
+                    logger.debug("Unable to get metadata of file {}", key, e);
+                    metadata = new ResourceMetadata(-1, 0, null, null);
+                }
+                if (isTooBig(key, metadata)) {
+                    download.complete(null);
+                    return null;
+                }
+            }
+
+            logger.debug("Downloading file {} to the cache", key);
+
+            tempFile = Files.createTempFile(cacheFolder, TEMP_FILE_PREFIX, null);
+            long size;
+            try (InputStream in = remote.getInputStream()) {
+                if (metadataUpdatedOnRead) {
+                    // Comes from the same response as the content, so it doesn't need another request
+                    metadata = getRemoteMetadata(remote);
+                    if (isTooBig(key, metadata)) {
+                        download.complete(null);
+                        return null;
+                    }
+                }
+
+                size = copy(in, tempFile, maxFileSize);
+            }
+
+            if (size < 0) {
+                logger.debug("File {} is too big to be cached", key);
+                download.complete(null);
+                return null;
+            }
+            if (metadata.getContentLength() >= 0 && metadata.getContentLength() != size) {
+                // The metadata doesn't belong to the downloaded content, so the entry couldn't be validated
+                logger.debug("File {} changed while it was being downloaded, it won't be cached", key);
+                download.complete(null);
+                return null;
+            }
+
+            Path file = cacheFolder.resolve(CACHE_FILE_PREFIX + DigestUtils.sha256Hex(key) + "-" +
+                                            fileCounter.incrementAndGet());
+            Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+            tempFile = null;
+
+            CacheEntry entry = new CacheEntry(file, size, metadata.getETag(), metadata.getLastModified(),
+                                              System.currentTimeMillis());
+            addEntry(key, entry);
+
+            download.complete(entry);
+
+            return entry;
+        } catch (IOException | RuntimeException e) {
+            download.completeExceptionally(e);
+            throw e;
+        } finally {
+            downloads.remove(key, download);
+            if (tempFile != null) {
+                deleteFile(tempFile);
+            }
+        }
+    }
+
+    protected boolean isTooBig(String key, ResourceMetadata metadata) {
+        if (metadata.getContentLength() > maxFileSize) {
+            logger.debug("File {} is too big to be cached", key);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Copies the given stream to the given file, stopping as soon as more than {@code maxSize} bytes are read.
+     *
+     * @return the number of bytes copied, or -1 if the content is bigger than {@code maxSize}
+     */
+    protected long copy(InputStream in, Path file, long maxSize) throws IOException {
+        byte[] buffer = new byte[8192];
+        long size = 0;
+
+        try (OutputStream out = Files.newOutputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                size += read;
+                if (size > maxSize) {
+                    return -1;
+                }
+
+                out.write(buffer, 0, read);
+            }
+        }
+
+        return size;
+    }
+
+    protected CacheEntry awaitDownload(CompletableFuture<CacheEntry> download) throws IOException {
+        try {
+            return download.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for download", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new IOException("Download failed", cause);
+            }
+        }
+    }
+
+    protected void addEntry(String key, CacheEntry entry) {
+        synchronized (index) {
+            CacheEntry previous = index.put(key, entry);
+            currentSize += entry.size;
+            if (previous != null) {
+                currentSize -= previous.size;
+                deleteFile(previous.file);
+            }
+
+            // Evict least recently used files, but never the one just added
+            Iterator<Map.Entry<String, CacheEntry>> iter = index.entrySet().iterator();
+            while (currentSize > maxSize && iter.hasNext()) {
+                Map.Entry<String, CacheEntry> eldest = iter.next();
+                if (eldest.getValue() != entry) {
+                    iter.remove();
+                    currentSize -= eldest.getValue().size;
+                    deleteFile(eldest.getValue().file);
+                    evictions.increment();
+
+                    logger.debug("Evicted file {} from the cache", eldest.getKey());
+                }
+            }
+        }
+    }
+
+    protected void removeEntry(String key, CacheEntry entry) {
+        synchronized (index) {
+            if (index.remove(key, entry)) {
+                currentSize -= entry.size;
+                deleteFile(entry.file);
+            }
+        }
+    }
+
+    /**
+     * Deletes a cached file. Readers that already opened the file can keep reading it on POSIX file systems.
+     */
+    protected void deleteFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Unable to delete cached file {}", file, e);
+        }
+    }
+
+    @FunctionalInterface
+    protected interface CachedFileOpener<T> {
+
+        T open(Path file) throws IOException;
+
+    }
+
+    protected static class CacheEntry {
+
+        protected final Path file;
+        protected final long size;
+        protected final String eTag;
+        protected final long lastModified;
+        protected volatile long validatedAt;
+
+        protected CacheEntry(Path file, long size, String eTag, long lastModified, long validatedAt) {
+            this.file = file;
+            this.size = size;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.validatedAt = validatedAt;
+        }
+
+    }
+
+    /**
+     * {@link RemoteFile} whose content is served from the cache.
+     */
+    protected class CachedRemoteFile implements RemoteFile {
+
+        protected final RemotePath path;
+        protected final RemoteFile remoteFile;
+
+        protected CachedRemoteFile(RemotePath path, RemoteFile remoteFile) {
+            this.path = path;
+            this.remoteFile = remoteFile;
+        }
+
+        @Override
+        public RemotePath getPath() {
+            return path;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return toResource().getInputStream();
+        }
+
+        @Override
+        public long getContentLength() throws IOException {
+            return toResource().contentLength();
+        }
+
+        @Override
+        public Resource toResource() throws IOException {
+            return new CachedFileResource(path, remoteFile.toResource());
+        }
+
+    }
+
+    /**
+     * {@link RangeAwareResource} whose content is served from the cache.
+     */
+    protected class CachedFileResource implements RangeAwareResource {
+
+        protected final RemotePath path;
+        protected final Resource remote;
+
+        protected CachedFileResource(RemotePath path, Resource remote) {
+            this.path = path;
+            this.remote = remote;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            InputStream in = openCachedFile(path, remote, Files::newInputStream);
+            return in != null? in : remote.getInputStream();
+        }
+
+        @Override
+        public InputStream getInputStream(long start, long end) throws IOException {
+            InputStream in = openCachedFile(path, remote, file ->
+                    new FileChannelRangeInputStream(file, start, end > 0? end + 1 : Long.MAX_VALUE));
+            if (in != null) {
+                return in;
+            } else if (remote instanceof RangeAwareResource) {
+                return ((RangeAwareResource) remote).getInputStream(start, end);
+            } else {
+                throw new IOException(getDescription() + " doesn't support ranges");
+            }
+        }
+
+        @Override
+        public boolean exists() {
+            return getFreshEntry(path) != null || remote.exists();
+        }
+
+        @Override
+        public boolean isReadable() {
+            return true;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return false;
+        }
+
+        @Override
+        public URL getURL() throws IOException {
+            return remote.getURL();
+        }
+
+        @Override
+        public URI getURI() throws IOException {
+            return remote.getURI();
+        }
+
+        @Override
+        public File getFile() throws IOException {
+            throw new IOException(getDescription() + " can't be resolved to a File");
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            CacheEntry entry = getFreshEntry(path);
+            return entry != null? entry.size : remote.contentLength();
+        }
+
+        @Override
+        public long lastModified() throws IOException {
+            CacheEntry entry = getFreshEntry(path);
+            return entry != null && entry.lastModified > 0? entry.lastModified : remote.lastModified();
+        }
+
+        @Override
+        public Resource createRelative(String relativePath) throws IOException {
+            return remote.createRelative(relativePath);
+        }
+
+        @Override
+        public String getFilename() {
+            return remote.getFilename();
+        }
+
+        @Override
+        public String getDescription() {
+            return "Cached " + remote.getDescription();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            CachedFileResource that = (CachedFileResource) o;
+            return Objects.equals(getKey(path), getKey(that.path));
+        }
+
+        @Override
+        public int hashCode() {
+            return getKey(path).hashCode();
+        }
+
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.file.stores.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@link InputStream} that reads a range of a file with positional {@link FileChannel} reads, so it doesn't need to
+ * read or skip the content before the range.
+ *
+ * @since 4.2.0
+ */
+class FileChannelRangeInputStream extends InputStream {
+
+    private final FileChannel channel;
+    private final long end;
+    private long position;
+
+    /**
+     * @param file  the file
+     * @param start the start of the range
+     * @param end   the end of the range (exclusive), it will be truncated to the size of the file
+     */
+    FileChannelRangeInputStream(Path file, long start, long end) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            this.end = Math.min(end, channel.size());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        this.position = start;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n = read(b, 0, 1);
+
+        return n < 0? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= end) {
+            return -1;
+        }
+
+        int n = (int) Math.min(len, end - position);
+        int read = channel.read(ByteBuffer.wrap(b, off, n), position);
+        if (read < 0) {
+            return -1;
+        }
+
+        position += read;
+
+        return read;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = Math.max(0, Math.min(n, end - position));
+        position += skipped;
+
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, end - position));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
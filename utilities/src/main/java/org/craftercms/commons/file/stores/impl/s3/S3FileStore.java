@@ -22,6 +22,7 @@ import org.craftercms.commons.aws.S3ClientCachingFactory;
 import org.craftercms.commons.file.stores.impl.AbstractProfileAwareRemoteFileStore;
 import org.craftercms.commons.file.stores.impl.ProfileAwareRemotePath;
 import org.craftercms.commons.file.stores.impl.ResourceBasedRemoteFile;
+import org.craftercms.commons.spring.resources.ResourceMetadataCache;
 import org.craftercms.commons.spring.resources.S3Resource;
 import org.springframework.core.io.Resource;
 
@@ -36,14 +37,23 @@ public class S3FileStore extends AbstractProfileAwareRemoteFileStore<S3Profile>
 
     protected S3ClientCachingFactory clientFactory;
 
+    /**
+     * Cache for the metadata of the objects, shared by all resources (optional)
+     */
+    protected ResourceMetadataCache metadataCache;
+
     public S3FileStore(S3ClientCachingFactory clientFactory, ConfigurationProfileLoader<S3Profile> profileLoader) {
         super(profileLoader);
         this.clientFactory = clientFactory;
     }
 
+    public void setMetadataCache(ResourceMetadataCache metadataCache) {
+        this.metadataCache = metadataCache;
+    }
+
     @Override
     protected RemoteFile doGetFile(ProfileAwareRemotePath path, S3Profile profile) throws IOException {
-        Resource resource = new S3Resource(clientFactory, profile, path.getPath());
+        Resource resource = new S3Resource(clientFactory, profile, null, path.getPath(), metadataCache);
 
         return new ResourceBasedRemoteFile(path, resource);
     }
@@ -23,6 +23,7 @@ import org.craftercms.commons.file.stores.WebDavUtils;
 import org.craftercms.commons.file.stores.impl.AbstractProfileAwareRemoteFileStore;
 import org.craftercms.commons.file.stores.impl.ProfileAwareRemotePath;
 import org.craftercms.commons.file.stores.impl.ResourceBasedRemoteFile;
+import org.craftercms.commons.spring.resources.ResourceMetadataCache;
 import org.craftercms.commons.spring.resources.WebDavResource;
 import org.springframework.core.io.Resource;
 import org.springframework.web.util.UriUtils;
@@ -40,16 +41,25 @@ import java.nio.charset.StandardCharsets;
  */
 public class WebDavFileStore extends AbstractProfileAwareRemoteFileStore<WebDavProfile> {
 
+    /**
+     * Cache for the metadata of the files, shared by all resources (optional)
+     */
+    protected ResourceMetadataCache metadataCache;
+
     public WebDavFileStore(ConfigurationProfileLoader<WebDavProfile> profileLoader) {
         super(profileLoader);
     }
 
+    public void setMetadataCache(ResourceMetadataCache metadataCache) {
+        this.metadataCache = metadataCache;
+    }
+
     @Override
     protected RemoteFile doGetFile(final ProfileAwareRemotePath path, final WebDavProfile profile)
             throws MalformedURLException {
         String encodedPath = UriUtils.encodePath(path.getPath(), StandardCharsets.UTF_8);
         String fullUrl = StringUtils.appendIfMissing(profile.getBaseUrl(), "/") + encodedPath;
-        Resource resource = new WebDavResource(WebDavUtils.createClient(profile), fullUrl);
+        Resource resource = new WebDavResource(WebDavUtils.createClient(profile), fullUrl, metadataCache);
 
         return new ResourceBasedRemoteFile(path, resource);
     }
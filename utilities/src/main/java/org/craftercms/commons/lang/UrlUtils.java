@@ -31,6 +31,7 @@ public class UrlUtils {
     public static final String RANGE_HEADER_NAME = "Range";
     public static final String RANGE_HEADER_FORMAT = "bytes=%s-%s";
     public static final String RANGE_NO_END_HEADER_FORMAT = "bytes=%s-";
+    public static final String IF_MATCH_HEADER_NAME = "If-Match";
     private static final int MAX_LOGGED_URI_LENGTH = 2000;
 
     private UrlUtils() {
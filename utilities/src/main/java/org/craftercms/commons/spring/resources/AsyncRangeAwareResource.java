@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.spring.resources;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Extension of {@link RangeAwareResource} that can fetch ranges of its content asynchronously, without blocking a
+ * thread per request.
+ *
+ * @since 4.2.0
+ */
+public interface AsyncRangeAwareResource extends RangeAwareResource {
+
+    /**
+     * Indicates if the resource is currently able to fetch ranges asynchronously (e.g. if it has an async client).
+     */
+    default boolean isAsyncRangeSupported() {
+        return true;
+    }
+
+    /**
+     * Fetches a range of bytes from the resource's content. Cancelling the returned future cancels the request.
+     *
+     * @param start the start of the range
+     * @param end the end of the range (inclusive)
+     * @param eTag the ETag the content must match (see {@link #getInputStream(long, long, String)}), or null to
+     *             fetch the range unconditionally
+     *
+     * @return a future that completes with the bytes of the range
+     */
+    CompletableFuture<byte[]> getRangeAsync(long start, long end, String eTag);
+
+}
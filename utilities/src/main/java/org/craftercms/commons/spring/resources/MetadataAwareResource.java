@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.spring.resources;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+
+/**
+ * Extension of Spring's {@code Resource} that exposes the metadata of a remote file, including its ETag.
+ *
+ * @since 4.2.0
+ */
+public interface MetadataAwareResource extends Resource {
+
+    /**
+     * Returns the metadata of the file, fetching it only if it's not already known.
+     *
+     * @return the metadata
+     *
+     * @throws java.io.FileNotFoundException if the file doesn't exist
+     * @throws IOException if an IO error occurs
+     */
+    ResourceMetadata getMetadata() throws IOException;
+
+    /**
+     * Indicates if {@link #getInputStream()} updates the metadata from the same response that returns the content,
+     * so that {@link #getMetadata()} called after opening the content returns the metadata of that content without
+     * another request.
+     *
+     * @return true if the metadata is updated when the content is opened, false otherwise
+     */
+    default boolean isMetadataUpdatedOnRead() {
+        return false;
+    }
+
+}
@@ -0,0 +1,389 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.spring.resources;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Downloads a range of a {@link RangeAwareResource} by splitting it into parts that are fetched concurrently, and
+ * reassembled in order as an {@link InputStream} or written to a {@link WritableByteChannel}. Parts are fetched
+ * asynchronously if the resource is an {@link AsyncRangeAwareResource} (e.g. S3 with an async client), or otherwise
+ * with blocking range requests in the given executor.
+ *
+ * <p>Every part is checked to have exactly the bytes of its range, and if the resource is a
+ * {@link MetadataAwareResource} all the parts are requested only for the ETag the content has when the download
+ * starts. Closing the stream before reading everything (e.g. on a video seek) cancels the parts still in flight.</p>
+ *
+ * <p>At most {@code maxConcurrentParts} parts are in flight or waiting to be read at the same time, so the memory
+ * used by a download is bounded by {@code partSize * (maxConcurrentParts + 1)} regardless of the size of the
+ * range.</p>
+ *
+ * @since 4.2.0
+ */
+public class ParallelRangeDownloader {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelRangeDownloader.class);
+
+    public static final int DEFAULT_PART_SIZE = 8 * 1024 * 1024;
+    public static final int DEFAULT_MAX_CONCURRENT_PARTS = 4;
+
+    protected final Executor executor;
+
+    protected int partSize = DEFAULT_PART_SIZE;
+    protected int maxConcurrentParts = DEFAULT_MAX_CONCURRENT_PARTS;
+
+    /**
+     * @param executor the executor used to fetch the parts of resources that don't support async ranges
+     */
+    public ParallelRangeDownloader(Executor executor) {
+        this.executor = executor;
+    }
+
+    public void setPartSize(int partSize) {
+        if (partSize <= 0) {
+            throw new IllegalArgumentException("partSize must be greater than 0");
+        }
+        this.partSize = partSize;
+    }
+
+    public void setMaxConcurrentParts(int maxConcurrentParts) {
+        if (maxConcurrentParts <= 0) {
+            throw new IllegalArgumentException("maxConcurrentParts must be greater than 0");
+        }
+        this.maxConcurrentParts = maxConcurrentParts;
+    }
+
+    /**
+     * Returns an input stream with a range of the resource's content.
+     *
+     * @param resource the resource
+     * @param start the start of the range
+     * @param end the end of the range (inclusive), or a value &lt;= 0 to read until the end of the content. If the
+     *            content length is known, an end past the content is the end of the content
+     *
+     * @return the input stream, which needs to be closed to cancel the pending parts if not read fully
+     *
+     * @throws IOException if the content length of the resource can't be retrieved
+     */
+    public InputStream getInputStream(RangeAwareResource resource, long start, long end) throws IOException {
+        return new PartsInputStream(createFetcher(resource, start, end));
+    }
+
+    /**
+     * Writes a range of the resource's content to the given channel. The channel is not closed.
+     *
+     * @param resource the resource
+     * @param start the start of the range
+     * @param end the end of the range (inclusive), or a value &lt;= 0 to read until the end of the content. If the
+     *            content length is known, an end past the content is the end of the content
+     * @param channel the channel to write to
+     *
+     * @return the number of bytes written
+     *
+     * @throws IOException if an error occurs while fetching the parts or writing them
+     */
+    public long download(RangeAwareResource resource, long start, long end, WritableByteChannel channel)
+            throws IOException {
+        PartsFetcher fetcher = createFetcher(resource, start, end);
+        long written = 0;
+        try {
+            byte[] part;
+            while ((part = fetcher.nextPart()) != null) {
+                ByteBuffer buffer = ByteBuffer.wrap(part);
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer);
+                }
+            }
+        } finally {
+            fetcher.cancel();
+        }
+
+        return written;
+    }
+
+    /**
+     * Creates the fetcher for the given range. If the resource is a {@link MetadataAwareResource}, all the parts are
+     * pinned to the ETag the content has now, so a content that changes during the download causes an error instead
+     * of mixing bytes of different versions.
+     */
+    protected PartsFetcher createFetcher(RangeAwareResource resource, long start, long end) throws IOException {
+        String eTag = null;
+        long contentLength;
+
+        if (resource instanceof MetadataAwareResource) {
+            ResourceMetadata metadata = ((MetadataAwareResource) resource).getMetadata();
+            eTag = metadata.getETag();
+            contentLength = metadata.getContentLength();
+        } else {
+            contentLength = end > 0? -1 : resource.contentLength();
+        }
+
+        if (end <= 0) {
+            end = contentLength - 1;
+        } else if (contentLength >= 0) {
+            // Like HTTP ranges, an end past the content is the end of the content (otherwise the last part fails)
+            end = Math.min(end, contentLength - 1);
+        }
+
+        return new PartsFetcher(resource, start, end, eTag);
+    }
+
+    protected CompletableFuture<byte[]> fetchPart(RangeAwareResource resource, long start, long end, String eTag) {
+        logger.debug("Fetching range {}-{} of {}", start, end, resource.getDescription());
+
+        if (resource instanceof AsyncRangeAwareResource &&
+            ((AsyncRangeAwareResource) resource).isAsyncRangeSupported()) {
+            return ((AsyncRangeAwareResource) resource).getRangeAsync(start, end, eTag);
+        }
+
+        CompletableFuture<byte[]> part = new CompletableFuture<>();
+        AtomicReference<InputStream> stream = new AtomicReference<>();
+
+        // Cancelling the future closes the stream, which interrupts the blocking read
+        part.whenComplete((bytes, e) -> {
+            if (part.isCancelled()) {
+                IOUtils.closeQuietly(stream.get());
+            }
+        });
+
+        try {
+            executor.execute(() -> {
+                if (part.isDone()) {
+                    return;
+                }
+
+                try (InputStream in = resource.getInputStream(start, end, eTag)) {
+                    stream.set(in);
+                    if (!part.isCancelled()) {
+                        part.complete(readPart(in, start, end, resource));
+                    }
+                } catch (Exception e) {
+                    part.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            part.completeExceptionally(e);
+        }
+
+        return part;
+    }
+
+    /**
+     * Reads the bytes of a part, checking that the stream has exactly the bytes of the range (e.g. a server that
+     * ignores the range returns the whole content).
+     */
+    protected byte[] readPart(InputStream in, long start, long end, RangeAwareResource resource) throws IOException {
+        byte[] bytes = new byte[Math.toIntExact(end - start + 1)];
+        int read = IOUtils.read(in, bytes);
+        if (read != bytes.length || in.read() != -1) {
+            throw new IOException("Range " + start + "-" + end + " of " + resource.getDescription() +
+                                  " didn't return the expected " + bytes.length + " bytes");
+        }
+
+        return bytes;
+    }
+
+    /**
+     * A part being fetched.
+     */
+    protected static class Part {
+
+        protected final long start;
+        protected final long end;
+        protected final CompletableFuture<byte[]> content;
+
+        protected Part(long start, long end, CompletableFuture<byte[]> content) {
+            this.start = start;
+            this.end = end;
+            this.content = content;
+        }
+
+    }
+
+    /**
+     * Keeps up to {@code maxConcurrentParts} parts in flight, returning them in order.
+     */
+    protected class PartsFetcher {
+
+        protected final RangeAwareResource resource;
+        protected final long end;
+        protected final String eTag;
+        protected final Deque<Part> pending = new ArrayDeque<>();
+        protected long nextStart;
+
+        protected PartsFetcher(RangeAwareResource resource, long start, long end, String eTag) {
+            this.resource = resource;
+            this.end = end;
+            this.eTag = eTag;
+            this.nextStart = start;
+
+            fillPending();
+        }
+
+        /**
+         * Waits for the next part and then schedules another one.
+         *
+         * @return the bytes of the part, or null if there are no more parts
+         */
+        protected byte[] nextPart() throws IOException {
+            Part part = pending.poll();
+            if (part == null) {
+                return null;
+            }
+
+            byte[] bytes;
+            try {
+                bytes = part.content.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while downloading " + resource.getDescription(), e);
+            } catch (ExecutionException | CancellationException e) {
+                Throwable cause = e instanceof ExecutionException? e.getCause() : e;
+                if (cause instanceof CompletionException && cause.getCause() != null) {
+                    cause = cause.getCause();
+                }
+                if (cause instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) cause).getCause();
+                } else if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else {
+                    throw new IOException("Error while downloading " + resource.getDescription(), cause);
+                }
+            }
+
+            // Async resources don't go through readPart, so check them here too
+            if (bytes.length != part.end - part.start + 1) {
+                throw new IOException("Range " + part.start + "-" + part.end + " of " + resource.getDescription() +
+                                      " returned " + bytes.length + " bytes instead of " +
+                                      (part.end - part.start + 1));
+            }
+
+            fillPending();
+
+            return bytes;
+        }
+
+        protected void fillPending() {
+            while (pending.size() < maxConcurrentParts && nextStart <= end) {
+                long partEnd = Math.min(nextStart + partSize - 1, end);
+                pending.add(new Part(nextStart, partEnd, fetchPart(resource, nextStart, partEnd, eTag)));
+                nextStart = partEnd + 1;
+            }
+        }
+
+        /**
+         * Cancels the pending parts, including the requests in flight.
+         */
+        protected void cancel() {
+            Part part;
+            while ((part = pending.poll()) != null) {
+                part.content.cancel(true);
+            }
+            nextStart = end + 1;
+        }
+
+    }
+
+    /**
+     * Input stream that returns the bytes of the parts in order.
+     */
+    protected static class PartsInputStream extends InputStream {
+
+        protected final PartsFetcher fetcher;
+        protected byte[] current = new byte[0];
+        protected int position;
+        protected boolean closed;
+
+        protected PartsInputStream(PartsFetcher fetcher) {
+            this.fetcher = fetcher;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!ensureCurrent()) {
+                return -1;
+            }
+            return current[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!ensureCurrent()) {
+                return -1;
+            }
+
+            int n = Math.min(len, current.length - position);
+            System.arraycopy(current, position, b, off, n);
+            position += n;
+
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return closed? 0 : current.length - position;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                current = new byte[0];
+                position = 0;
+                fetcher.cancel();
+            }
+        }
+
+        private boolean ensureCurrent() throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+
+            while (position >= current.length) {
+                byte[] next = fetcher.nextPart();
+                if (next == null) {
+                    return false;
+                }
+                current = next;
+                position = 0;
+            }
+
+            return true;
+        }
+
+    }
+
+}
@@ -39,4 +39,22 @@ public interface RangeAwareResource extends Resource {
      */
     InputStream getInputStream(long start, long end) throws IOException;
 
+    /**
+     * Returns a range of bytes from the resource's content, only if the current version of the content matches the
+     * given ETag (like an HTTP {@code If-Match} request), so that ranges fetched separately all belong to the same
+     * version. Implementations that don't support conditional requests just ignore the ETag.
+     *
+     * @param start the start of the range
+     * @param end the end of the range (inclusive)
+     * @param eTag the ETag the content must match, or null to fetch the range unconditionally
+     *
+     * @return an input stream with the content range
+     *
+     * @throws IOException if an IO error occurs, or if the content doesn't match the ETag
+     * @since 4.2.0
+     */
+    default InputStream getInputStream(long start, long end, String eTag) throws IOException {
+        return getInputStream(start, end);
+    }
+
 }
@@ -17,6 +17,7 @@ package org.craftercms.commons.spring.resources;
 
 import org.springframework.core.io.UrlResource;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.*;
@@ -29,7 +30,11 @@ import static org.craftercms.commons.lang.UrlUtils.*;
  *
  * @author avasquez
  */
-public class RangeAwareUrlResource extends UrlResource implements RangeAwareResource {
+public class RangeAwareUrlResource extends UrlResource implements RangeAwareResource, MetadataAwareResource {
+
+    private static final String ETAG_HEADER_NAME = "ETag";
+
+    private volatile ResourceMetadata metadata;
 
     public RangeAwareUrlResource(URI uri) throws MalformedURLException {
         super(uri);
@@ -53,6 +58,58 @@ public class RangeAwareUrlResource extends UrlResource implements RangeAwareReso
 
     @Override
     public InputStream getInputStream(long start, long end) throws IOException {
+        return openRange(openRangeConnection(start, end), false);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>For HTTP URLs, the response also needs to be a partial content (206) response, so a server that ignores the
+     * range (and returns the whole content) causes an error instead of returning the wrong bytes.</p>
+     */
+    @Override
+    public InputStream getInputStream(long start, long end, String eTag) throws IOException {
+        URLConnection conn = openRangeConnection(start, end);
+        if (eTag != null) {
+            conn.setRequestProperty(IF_MATCH_HEADER_NAME, eTag);
+        }
+
+        return openRange(conn, true);
+    }
+
+    /**
+     * Returns the metadata of the content, fetching it (with a HEAD request for HTTP URLs) only the first time.
+     *
+     * @since 4.2.0
+     */
+    @Override
+    public ResourceMetadata getMetadata() throws IOException {
+        ResourceMetadata current = metadata;
+        if (current == null) {
+            URLConnection conn = getURL().openConnection();
+            try {
+                if (conn instanceof HttpURLConnection) {
+                    HttpURLConnection httpConn = (HttpURLConnection) conn;
+                    httpConn.setRequestMethod("HEAD");
+                    if (httpConn.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+                        throw new FileNotFoundException(getDescription() + " not found");
+                    }
+                }
+
+                current = new ResourceMetadata(conn.getContentLengthLong(), conn.getLastModified(),
+                                               conn.getHeaderField(ETAG_HEADER_NAME), conn.getContentType());
+                metadata = current;
+            } finally {
+                if (conn instanceof HttpURLConnection) {
+                    ((HttpURLConnection) conn).disconnect();
+                }
+            }
+        }
+
+        return current;
+    }
+
+    private URLConnection openRangeConnection(long start, long end) throws IOException {
         URLConnection conn = getURL().openConnection();
         conn.setDefaultUseCaches(false);
 
@@ -63,8 +120,22 @@ public class RangeAwareUrlResource extends UrlResource implements RangeAwareReso
             conn.setRequestProperty(RANGE_HEADER_NAME, String.format(RANGE_NO_END_HEADER_FORMAT, Long.toString(start)));
         }
 
+        return conn;
+    }
+
+    private InputStream openRange(URLConnection conn, boolean checkPartialContent) throws IOException {
         try {
-            return conn.getInputStream();
+            InputStream in = conn.getInputStream();
+            if (checkPartialContent && conn instanceof HttpURLConnection) {
+                int status = ((HttpURLConnection) conn).getResponseCode();
+                if (status != HttpURLConnection.HTTP_PARTIAL) {
+                    in.close();
+                    throw new IOException("Range request for " + getDescription() + " returned status " + status +
+                                          " instead of " + HttpURLConnection.HTTP_PARTIAL);
+                }
+            }
+
+            return in;
         } catch (IOException ex) {
             // Close the HTTP connection (if applicable).
             if (conn instanceof HttpURLConnection) {
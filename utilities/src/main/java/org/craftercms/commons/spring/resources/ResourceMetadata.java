@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.spring.resources;
+
+/**
+ * Immutable metadata of a remote resource, as returned by a HEAD (or GET) request.
+ *
+ * @since 4.2.0
+ */
+public class ResourceMetadata {
+
+    private final long contentLength;
+    private final long lastModified;
+    private final String eTag;
+    private final String contentType;
+
+    public ResourceMetadata(long contentLength, long lastModified, String eTag, String contentType) {
+        this.contentLength = contentLength;
+        this.lastModified = lastModified;
+        this.eTag = eTag;
+        this.contentType = contentType;
+    }
+
+    /**
+     * Returns the length of the content, in bytes.
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * Returns the last modified date, in milliseconds since the epoch.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Returns the ETag of the content, or null if it's not known.
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Returns the content type, or null if it's not known.
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public String toString() {
+        return "ResourceMetadata{" +
+               "contentLength=" + contentLength +
+               ", lastModified=" + lastModified +
+               ", eTag='" + eTag + '\'' +
+               ", contentType='" + contentType + '\'' +
+               '}';
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.spring.resources;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of {@link ResourceMetadata} shared by remote resources (like {@link S3Resource} or
+ * {@link WebDavResource}), so that metadata requests are not repeated for every new resource instance of the same
+ * remote object. Entries are keyed by the location of the object (e.g. bucket and key) and expire after a TTL. When a
+ * resource gets fresh metadata with a different ETag (e.g. from a GET) the entry is replaced.
+ *
+ * @since 4.2.0
+ */
+public class ResourceMetadataCache {
+
+    public static final long DEFAULT_MAX_SIZE = 10000;
+    public static final long DEFAULT_TTL_SECONDS = 60;
+
+    protected Cache<String, ResourceMetadata> cache;
+
+    protected final LongAdder hits = new LongAdder();
+    protected final LongAdder misses = new LongAdder();
+
+    public ResourceMetadataCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_TTL_SECONDS);
+    }
+
+    public ResourceMetadataCache(long maxSize, long ttlSeconds) {
+        cache = CacheBuilder.newBuilder()
+                            .maximumSize(maxSize)
+                            .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                            .build();
+    }
+
+    /**
+     * Returns the cached metadata of the given object.
+     *
+     * @param key the key of the object
+     * @return the metadata, or null if it's not cached or expired
+     */
+    public ResourceMetadata get(String key) {
+        ResourceMetadata metadata = cache.getIfPresent(key);
+        if (metadata != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+
+        return metadata;
+    }
+
+    /**
+     * Caches the metadata of the given object. If the object is already cached with the same ETag the entry is left
+     * as it is, so its expiration is not extended.
+     *
+     * @param key      the key of the object
+     * @param metadata the metadata
+     */
+    public void put(String key, ResourceMetadata metadata) {
+        ResourceMetadata current = cache.getIfPresent(key);
+        if (current == null || current.getETag() == null || !Objects.equals(current.getETag(), metadata.getETag())) {
+            cache.put(key, metadata);
+        }
+    }
+
+    /**
+     * Removes the cached metadata of the given object (e.g. after it's updated).
+     */
+    public void invalidate(String key) {
+        cache.invalidate(key);
+    }
+
+    /**
+     * Removes all cached metadata.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getSize() {
+        return cache.size();
+    }
+
+}
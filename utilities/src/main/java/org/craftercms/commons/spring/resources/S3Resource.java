@@ -17,11 +17,16 @@ package org.craftercms.commons.spring.resources;
 
 import org.apache.commons.io.FilenameUtils;
 import org.craftercms.commons.config.profiles.aws.S3Profile;
+import org.craftercms.commons.aws.S3AsyncClientCachingFactory;
 import org.craftercms.commons.aws.S3ClientCachingFactory;
 import org.craftercms.commons.lang.UrlUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.io.Resource;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
 
@@ -30,16 +35,20 @@ import java.net.URI;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
 
 import static java.lang.String.format;
 import static org.apache.commons.lang3.StringUtils.isEmpty;
 
 /**
- * Implementation of {@link Resource} for S3 files.
+ * Implementation of {@link Resource} for S3 files. The object metadata is fetched (with a single HEAD request, or
+ * from the response of {@link #getInputStream()}) only once per resource, and optionally shared with other resources
+ * through a {@link ResourceMetadataCache}. If an async client factory is provided, ranges can also be fetched
+ * asynchronously (see {@link ParallelRangeDownloader}).
  *
  * @author avasquez
  */
-public class S3Resource implements RangeAwareResource {
+public class S3Resource implements AsyncRangeAwareResource, MetadataAwareResource {
 
     private static final Logger logger = LoggerFactory.getLogger(S3Resource.class);
 
@@ -47,16 +56,41 @@ public class S3Resource implements RangeAwareResource {
     private S3Profile profile;
     private String bucket;
     private String key;
+    private ResourceMetadataCache metadataCache;
+    private S3AsyncClientCachingFactory asyncClientFactory;
+
+    private volatile ResourceMetadata metadata;
 
     public S3Resource(S3ClientCachingFactory clientFactory, S3Profile profile, String key) {
         this(clientFactory, profile, null, key);
     }
 
     public S3Resource(S3ClientCachingFactory clientFactory, S3Profile profile, String bucket, String key) {
+        this(clientFactory, profile, bucket, key, null);
+    }
+
+    /**
+     * @param metadataCache the cache to share the object metadata with other resources, can be null
+     * @since 4.2.0
+     */
+    public S3Resource(S3ClientCachingFactory clientFactory, S3Profile profile, String bucket, String key,
+                      ResourceMetadataCache metadataCache) {
+        this(clientFactory, profile, bucket, key, metadataCache, null);
+    }
+
+    /**
+     * @param metadataCache the cache to share the object metadata with other resources, can be null
+     * @param asyncClientFactory the factory of the async clients used to fetch ranges asynchronously, can be null
+     * @since 4.2.0
+     */
+    public S3Resource(S3ClientCachingFactory clientFactory, S3Profile profile, String bucket, String key,
+                      ResourceMetadataCache metadataCache, S3AsyncClientCachingFactory asyncClientFactory) {
         this.clientFactory = clientFactory;
         this.profile = profile;
         this.bucket = bucket;
         this.key = key;
+        this.metadataCache = metadataCache;
+        this.asyncClientFactory = asyncClientFactory;
     }
 
     protected String getActualKey() {
@@ -70,8 +104,11 @@ public class S3Resource implements RangeAwareResource {
 
     @Override
     public boolean exists() {
+        if (getKnownMetadata() != null) {
+            return true;
+        }
         try {
-            getClient().headObject(getHeadObjectRequest());
+            fetchMetadata();
             return true;
         } catch (NoSuchKeyException e) {
             logger.error(format("Error while checking if object '%s' exists", getDescription()), e);
@@ -106,17 +143,18 @@ public class S3Resource implements RangeAwareResource {
 
     @Override
     public long contentLength() throws IOException {
-        return getMetadata().contentLength();
+        return getMetadata().getContentLength();
     }
 
     @Override
     public long lastModified() throws IOException {
-        return getMetadata().lastModified().toEpochMilli();
+        return getMetadata().getLastModified();
     }
 
     @Override
     public Resource createRelative(String relativePath) throws IOException {
-        return new S3Resource(clientFactory, profile, UrlUtils.concat(getActualKey(), relativePath));
+        return new S3Resource(clientFactory, profile, null, UrlUtils.concat(getActualKey(), relativePath),
+                              metadataCache, asyncClientFactory);
     }
 
     @Override
@@ -129,6 +167,11 @@ public class S3Resource implements RangeAwareResource {
         return toString();
     }
 
+    @Override
+    public boolean isMetadataUpdatedOnRead() {
+        return true;
+    }
+
     @Override
     public InputStream getInputStream() throws IOException {
         try {
@@ -136,7 +179,13 @@ public class S3Resource implements RangeAwareResource {
                     .bucket(getBucket())
                     .key(getActualKey())
                     .build();
-            return getClient().getObject(getObjectRequest);
+            ResponseInputStream<GetObjectResponse> content = getClient().getObject(getObjectRequest);
+            GetObjectResponse response = content.response();
+            if (response.contentLength() != null && response.lastModified() != null) {
+                setMetadata(new ResourceMetadata(response.contentLength(), response.lastModified().toEpochMilli(),
+                                                 response.eTag(), response.contentType()));
+            }
+            return content;
         } catch (NoSuchKeyException e) {
             throw new FileNotFoundException(getDescription() + " not found");
         } catch (Exception e) {
@@ -146,13 +195,13 @@ public class S3Resource implements RangeAwareResource {
 
     @Override
     public InputStream getInputStream(long start, long end) throws IOException {
+        return getInputStream(start, end, null);
+    }
+
+    @Override
+    public InputStream getInputStream(long start, long end, String eTag) throws IOException {
         try {
-            GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-                    .bucket(getBucket())
-                    .key(getActualKey())
-                    .range("bytes=" + start + "-" + end)
-                    .build();
-            return getClient().getObject(getObjectRequest);
+            return getClient().getObject(getRangeRequest(start, end, eTag));
         } catch (NoSuchKeyException e) {
             throw new FileNotFoundException(getDescription() + " not found");
         } catch (Exception e) {
@@ -160,6 +209,36 @@ public class S3Resource implements RangeAwareResource {
         }
     }
 
+    @Override
+    public boolean isAsyncRangeSupported() {
+        return asyncClientFactory != null;
+    }
+
+    @Override
+    public CompletableFuture<byte[]> getRangeAsync(long start, long end, String eTag) {
+        CompletableFuture<ResponseBytes<GetObjectResponse>> request =
+                getAsyncClient().getObject(getRangeRequest(start, end, eTag), AsyncResponseTransformer.toBytes());
+        CompletableFuture<byte[]> result = request
+                .thenApply(ResponseBytes::asByteArray)
+                .exceptionally(e -> {
+                    Throwable cause = e.getCause() != null? e.getCause() : e;
+                    if (cause instanceof NoSuchKeyException) {
+                        throw new UncheckedIOException(new FileNotFoundException(getDescription() + " not found"));
+                    }
+                    throw new UncheckedIOException(
+                            new IOException("Error while getting object content for " + getDescription(), cause));
+                });
+
+        // Cancelling the derived future doesn't cancel the request by itself
+        result.whenComplete((bytes, e) -> {
+            if (result.isCancelled()) {
+                request.cancel(true);
+            }
+        });
+
+        return result;
+    }
+
     @Override
     public String toString() {
         return "S3Resource{" +
@@ -172,10 +251,30 @@ public class S3Resource implements RangeAwareResource {
         return clientFactory.getClient(profile);
     }
 
+    private S3AsyncClient getAsyncClient() {
+        if (asyncClientFactory == null) {
+            throw new IllegalStateException("No async client factory provided for " + getDescription());
+        }
+        return asyncClientFactory.getClient(profile);
+    }
+
     private String getBucket() {
         return isEmpty(bucket)? profile.getBucketName() : bucket;
     }
 
+    /**
+     * Get the request for a range of the object, that only succeeds if the object matches the ETag (if not null)
+     * @return instance of {@link GetObjectRequest}
+     */
+    private GetObjectRequest getRangeRequest(long start, long end, String eTag) {
+        return GetObjectRequest.builder()
+                .bucket(getBucket())
+                .key(getActualKey())
+                .range("bytes=" + start + "-" + end)
+                .ifMatch(eTag)
+                .build();
+    }
+
     /**
      * Get head object request
      * @return instance of {@link HeadObjectRequest}
@@ -188,13 +287,59 @@ public class S3Resource implements RangeAwareResource {
     }
 
     /**
-     * Get S3 object metadata
-     * @return instance of {@link HeadObjectResponse}
+     * Returns the key of the object in the metadata cache
+     */
+    private String getMetadataCacheKey() {
+        return profile.getEndpoint() + ":" + getBucket() + ":" + getActualKey();
+    }
+
+    private void setMetadata(ResourceMetadata metadata) {
+        this.metadata = metadata;
+        if (metadataCache != null) {
+            metadataCache.put(getMetadataCacheKey(), metadata);
+        }
+    }
+
+    /**
+     * Returns the object metadata if it's already known by this resource or the metadata cache
+     * @return instance of {@link ResourceMetadata}, or null if not known
+     */
+    private ResourceMetadata getKnownMetadata() {
+        ResourceMetadata current = metadata;
+        if (current == null && metadataCache != null) {
+            current = metadataCache.get(getMetadataCacheKey());
+            metadata = current;
+        }
+        return current;
+    }
+
+    /**
+     * Fetches the object metadata with a HEAD request
+     * @return instance of {@link ResourceMetadata}
+     */
+    private ResourceMetadata fetchMetadata() {
+        HeadObjectResponse response = getClient().headObject(getHeadObjectRequest());
+        ResourceMetadata fetched = new ResourceMetadata(response.contentLength(),
+                                                        response.lastModified().toEpochMilli(),
+                                                        response.eTag(), response.contentType());
+        setMetadata(fetched);
+
+        return fetched;
+    }
+
+    /**
+     * Get S3 object metadata, only sending a HEAD request if it's not already known
+     * @return instance of {@link ResourceMetadata}
      * @throws IOException
      */
-    private HeadObjectResponse getMetadata() throws IOException {
+    @Override
+    public ResourceMetadata getMetadata() throws IOException {
+        ResourceMetadata current = getKnownMetadata();
+        if (current != null) {
+            return current;
+        }
         try {
-            return getClient().headObject(getHeadObjectRequest());
+            return fetchMetadata();
         } catch (NoSuchKeyException e) {
             throw new FileNotFoundException(getDescription() + " not found");
         } catch (Exception e) {
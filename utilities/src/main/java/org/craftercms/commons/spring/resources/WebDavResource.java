@@ -22,7 +22,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URL;
-import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.Map;
 
 import org.slf4j.Logger;
@@ -31,41 +32,68 @@ import org.springframework.core.io.Resource;
 import com.github.sardine.DavResource;
 import com.github.sardine.Sardine;
 
+import static org.craftercms.commons.lang.UrlUtils.IF_MATCH_HEADER_NAME;
 import static org.craftercms.commons.lang.UrlUtils.RANGE_HEADER_FORMAT;
 import static org.craftercms.commons.lang.UrlUtils.RANGE_HEADER_NAME;
 import static org.craftercms.commons.lang.UrlUtils.RANGE_NO_END_HEADER_FORMAT;
 
 /**
- * Implementation of {@link Resource} for WebDAV
+ * Implementation of {@link Resource} for WebDAV. The properties of the file are fetched (with a single PROPFIND
+ * request) only once per resource, and the metadata can optionally be shared with other resources through a
+ * {@link ResourceMetadataCache}.
  *
  * @author joseross
  * @since 3.1.4
  */
-public class WebDavResource implements RangeAwareResource {
+public class WebDavResource implements RangeAwareResource, MetadataAwareResource {
 
     private static final Logger logger = LoggerFactory.getLogger(WebDavResource.class);
 
     protected Sardine client;
     protected String path;
+    protected ResourceMetadataCache metadataCache;
+
+    protected volatile DavResource resource;
+    protected volatile ResourceMetadata metadata;
 
     public WebDavResource(final Sardine client, final String path) {
+        this(client, path, null);
+    }
+
+    /**
+     * @param metadataCache the cache to share the file metadata with other resources, can be null
+     * @since 4.2.0
+     */
+    public WebDavResource(final Sardine client, final String path, final ResourceMetadataCache metadataCache) {
         this.client = client;
         this.path = path;
+        this.metadataCache = metadataCache;
     }
 
     @Override
     public InputStream getInputStream(final long start, final long end) throws IOException {
-        Map<String, String> headers;
+        return getInputStream(start, end, null);
+    }
+
+    @Override
+    public InputStream getInputStream(final long start, final long end, final String eTag) throws IOException {
+        Map<String, String> headers = new HashMap<>();
         if (end > 0) {
-            headers = Collections.singletonMap(RANGE_HEADER_NAME, String.format(RANGE_HEADER_FORMAT, start, end));
+            headers.put(RANGE_HEADER_NAME, String.format(RANGE_HEADER_FORMAT, start, end));
         } else {
-            headers = Collections.singletonMap(RANGE_HEADER_NAME, String.format(RANGE_NO_END_HEADER_FORMAT, start));
+            headers.put(RANGE_HEADER_NAME, String.format(RANGE_NO_END_HEADER_FORMAT, start));
+        }
+        if (eTag != null) {
+            headers.put(IF_MATCH_HEADER_NAME, eTag);
         }
         return client.get(path, headers);
     }
 
     @Override
     public boolean exists() {
+        if (resource != null || getKnownMetadata() != null) {
+            return true;
+        }
         try {
             return client.exists(path);
         } catch (IOException e) {
@@ -101,12 +129,12 @@ public class WebDavResource implements RangeAwareResource {
 
     @Override
     public long contentLength() throws IOException {
-        return getResource().getContentLength();
+        return getMetadata().getContentLength();
     }
 
     @Override
     public long lastModified() throws IOException {
-        return getResource().getModified().getTime();
+        return getMetadata().getLastModified();
     }
 
     @Override
@@ -140,7 +168,48 @@ public class WebDavResource implements RangeAwareResource {
     }
 
     protected DavResource getResource() throws IOException {
-        return client.list(path, 1, true).stream().findFirst().orElseThrow(FileNotFoundException::new);
+        DavResource current = resource;
+        if (current == null) {
+            current = client.list(path, 1, true).stream().findFirst().orElseThrow(FileNotFoundException::new);
+            resource = current;
+
+            Date modified = current.getModified();
+            setMetadata(new ResourceMetadata(current.getContentLength(), modified != null? modified.getTime() : 0,
+                                             current.getEtag(), current.getContentType()));
+        }
+        return current;
+    }
+
+    /**
+     * Returns the file metadata, only sending a PROPFIND request if it's not already known
+     */
+    @Override
+    public ResourceMetadata getMetadata() throws IOException {
+        ResourceMetadata current = getKnownMetadata();
+        if (current == null) {
+            getResource();
+            current = metadata;
+        }
+        return current;
+    }
+
+    /**
+     * Returns the file metadata if it's already known by this resource or the metadata cache, null otherwise
+     */
+    protected ResourceMetadata getKnownMetadata() {
+        ResourceMetadata current = metadata;
+        if (current == null && metadataCache != null) {
+            current = metadataCache.get(path);
+            metadata = current;
+        }
+        return current;
+    }
+
+    protected void setMetadata(ResourceMetadata metadata) {
+        this.metadata = metadata;
+        if (metadataCache != null) {
+            metadataCache.put(path, metadata);
+        }
     }
 
 }
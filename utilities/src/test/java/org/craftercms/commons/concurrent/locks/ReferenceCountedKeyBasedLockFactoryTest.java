@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.concurrent.locks;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ReferenceCountedKeyBasedLockFactoryTest {
+
+    private ReferenceCountedKeyBasedLockFactory lockFactory;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        lockFactory = new ReferenceCountedKeyBasedLockFactory();
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testLockIsRemovedAfterLastRelease() {
+        try (LockLease lease = lockFactory.acquire("site1")) {
+            assertEquals("site1", lease.getKey());
+            assertEquals(1, lockFactory.size());
+        }
+
+        assertEquals(0, lockFactory.size());
+    }
+
+    @Test
+    public void testTryAcquireTimesOut() throws Exception {
+        try (LockLease ignored = lockFactory.acquire("site1")) {
+            LockLease lease = executor.submit(() -> lockFactory.tryAcquire("site1", 10, TimeUnit.MILLISECONDS))
+                                      .get();
+
+            assertNull(lease);
+            assertEquals(1, lockFactory.size());
+        }
+
+        LockLease lease = executor.submit(() -> lockFactory.tryAcquire("site1", 10, TimeUnit.MILLISECONDS)).get();
+        assertNotNull(lease);
+    }
+
+    @Test
+    public void testLockView() {
+        Lock lock = lockFactory.getLock("site1");
+
+        lock.lock();
+        lock.lock();
+        assertEquals(1, lockFactory.size());
+
+        lock.unlock();
+        assertEquals(1, lockFactory.size());
+
+        lock.unlock();
+        assertEquals(0, lockFactory.size());
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.concurrent.locks;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class StripedKeyBasedLockFactoryTest {
+
+    @Test
+    public void testSameKeyReturnsSameLock() {
+        StripedReentrantLockFactory factory = new StripedReentrantLockFactory();
+
+        ReentrantLock lock = factory.getLock("site1");
+
+        assertSame(lock, factory.getLock(new String("site1")));
+        assertSame(factory.getLock(null), factory.getLock(null));
+    }
+
+    @Test
+    public void testStripesAreRoundedToPowerOfTwo() {
+        assertEquals(1, new StripedReentrantLockFactory(1).getStripes());
+        assertEquals(16, new StripedReadWriteLockFactory(10).getStripes());
+        assertEquals(64, new StripedStampedLockFactory(64).getStripes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidStripes() {
+        new StripedReentrantLockFactory(0);
+    }
+
+}
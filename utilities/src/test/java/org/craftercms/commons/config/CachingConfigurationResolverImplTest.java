@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.config;
+
+import org.apache.commons.configuration2.BaseHierarchicalConfiguration;
+import org.apache.commons.configuration2.HierarchicalConfiguration;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.InputStream;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CachingConfigurationResolverImplTest {
+
+    private static final String MODULE = "studio";
+    private static final String CONFIG_PATH = "test-configuration-path.xml";
+    private static final String ENVIRONMENT = "default";
+
+    @Mock
+    EncryptionAwareConfigurationReader configurationReader;
+    @Mock
+    ConfigurationProvider configurationProvider;
+
+    private CachingConfigurationResolverImpl configurationResolver;
+
+    @Before
+    public void setUp() throws Exception {
+        BaseHierarchicalConfiguration config = new BaseHierarchicalConfiguration();
+        config.addProperty("key", "value");
+
+        when(configurationProvider.configExists(anyString())).thenReturn(true);
+        when(configurationProvider.getLookupVariables()).thenReturn(Map.of("siteName", "test-site"));
+        doReturn(config).when(configurationReader).readXmlConfiguration(nullable(InputStream.class), anyMap());
+
+        configurationResolver = new CachingConfigurationResolverImpl(ENVIRONMENT, "", "", configurationReader);
+    }
+
+    @Test
+    public void testConfigurationIsCachedWhileVersionDoesNotChange() throws ConfigurationException {
+        when(configurationProvider.getConfigVersion(anyString())).thenReturn("1");
+
+        HierarchicalConfiguration<?> config1 =
+                configurationResolver.getXmlConfiguration(MODULE, CONFIG_PATH, configurationProvider);
+        HierarchicalConfiguration<?> config2 =
+                configurationResolver.getXmlConfiguration(MODULE, CONFIG_PATH, configurationProvider);
+
+        assertNotSame(config1, config2);
+        assertEquals("value", config2.getString("key"));
+        assertEquals(1, configurationResolver.getHitCount());
+        assertEquals(1, configurationResolver.getMissCount());
+        verify(configurationReader, times(1)).readXmlConfiguration(nullable(InputStream.class), anyMap());
+
+        when(configurationProvider.getConfigVersion(anyString())).thenReturn("2");
+
+        configurationResolver.getXmlConfiguration(MODULE, CONFIG_PATH, configurationProvider);
+
+        assertEquals(2, configurationResolver.getMissCount());
+        verify(configurationReader, times(2)).readXmlConfiguration(nullable(InputStream.class), anyMap());
+    }
+
+    @Test
+    public void testConfigurationWithoutVersionIsNotCached() throws ConfigurationException {
+        configurationResolver.getXmlConfiguration(MODULE, CONFIG_PATH, configurationProvider);
+        configurationResolver.getXmlConfiguration(MODULE, CONFIG_PATH, configurationProvider);
+
+        assertEquals(0, configurationResolver.getSize());
+        verify(configurationReader, times(2)).readXmlConfiguration(nullable(InputStream.class), anyMap());
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.config;
+
+import org.craftercms.commons.crypto.CryptoException;
+import org.craftercms.commons.crypto.TextEncryptor;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class DecryptionLookupTest {
+
+    private static final String ENCRYPTED_VALUE = "ENCRYPTED_VALUE";
+    private static final String DECRYPTED_VALUE = "this is the secret";
+
+    private AtomicInteger decryptCount;
+    private TextEncryptor encryptor;
+
+    @Before
+    public void setUp() {
+        decryptCount = new AtomicInteger();
+        encryptor = new TextEncryptor() {
+
+            @Override
+            public String encrypt(String clear) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public String decrypt(String encrypted) throws CryptoException {
+                decryptCount.incrementAndGet();
+                if (ENCRYPTED_VALUE.equals(encrypted)) {
+                    return DECRYPTED_VALUE;
+                } else {
+                    throw new CryptoException("Invalid value");
+                }
+            }
+
+        };
+    }
+
+    @Test
+    public void testValuesAreNotCachedByDefault() {
+        DecryptionLookup lookup = new DecryptionLookup(encryptor);
+
+        assertEquals(DECRYPTED_VALUE, lookup.lookup(ENCRYPTED_VALUE));
+        assertEquals(DECRYPTED_VALUE, lookup.lookup(ENCRYPTED_VALUE));
+        assertEquals(2, decryptCount.get());
+    }
+
+    @Test
+    public void testDecryptedValuesAreCached() {
+        DecryptionLookup lookup = new DecryptionLookup(encryptor, 10, 0);
+
+        assertEquals(DECRYPTED_VALUE, lookup.lookup(ENCRYPTED_VALUE));
+        assertEquals(DECRYPTED_VALUE, lookup.lookup(ENCRYPTED_VALUE));
+        assertEquals(1, decryptCount.get());
+    }
+
+    @Test
+    public void testFailedDecryptionsAreNotCached() {
+        DecryptionLookup lookup = new DecryptionLookup(encryptor, 10, 60);
+
+        assertEquals("INVALID", lookup.lookup("INVALID"));
+        assertEquals("INVALID", lookup.lookup("INVALID"));
+        assertEquals(2, decryptCount.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeTtlIsRejected() {
+        new DecryptionLookup(encryptor, 10, -1);
+    }
+
+}
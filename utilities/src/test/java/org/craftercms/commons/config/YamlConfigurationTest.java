@@ -15,12 +15,17 @@
  */
 package org.craftercms.commons.config;
 
+import java.io.StringReader;
+import java.util.List;
+
+import org.apache.commons.configuration2.ex.ConfigurationException;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Unit tests for {@link YamlConfiguration}.
@@ -49,4 +54,62 @@ public class YamlConfigurationTest {
         assertEquals(4443.52, yamlConfiguration.getDouble("total"), 0);
     }
 
+    @Test
+    public void testReadWithMergeKeysAndNestedSequences() throws Exception {
+        yamlConfiguration.read(new StringReader("defaults: &defaults\n" +
+                                                "  timeout: 10\n" +
+                                                "  retries: 3\n" +
+                                                "service:\n" +
+                                                "  <<: *defaults\n" +
+                                                "  retries: 5\n" +
+                                                "hosts: [a, [b, c]]\n"));
+
+        assertEquals(10, yamlConfiguration.getInt("service.timeout"));
+        assertEquals(5, yamlConfiguration.getInt("service.retries"));
+        assertEquals(3, yamlConfiguration.getList("hosts").size());
+        assertEquals("c", yamlConfiguration.getString("hosts(2)"));
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void testReadWithCollectionAliasesDisabled() throws Exception {
+        YamlConfiguration config = new YamlConfiguration();
+        config.read(new StringReader("a: &x {b: 1}\nc: *x\n"));
+    }
+
+    @Test
+    public void testReadWithSetAndOrderedMapTags() throws Exception {
+        yamlConfiguration.read(new StringReader("roles: !!set {admin, author}\n" +
+                                                "limits: !!omap [cpu: 1, memory: 512, cpu: 2]\n" +
+                                                "headers: !!pairs [a: 1, a: 2]\n"));
+
+        assertEquals(List.of("admin", "author"), yamlConfiguration.getList(String.class, "roles"));
+        assertEquals(2, yamlConfiguration.getInt("limits.cpu"));
+        assertEquals(512, yamlConfiguration.getInt("limits.memory"));
+        assertTrue(yamlConfiguration.containsKey("headers"));
+    }
+
+    @Test
+    public void testReadWithAliasesInsideSetAndOrderedMapTags() throws Exception {
+        yamlConfiguration.read(new StringReader("admin: &ref admin\n" +
+                                                "limit: &limit 512\n" +
+                                                "roles: !!set {? *ref, ? author}\n" +
+                                                "limits: !!omap [cpu: 1, memory: *limit]\n"));
+
+        assertEquals(List.of("admin", "author"), yamlConfiguration.getList(String.class, "roles"));
+        assertEquals(512, yamlConfiguration.getInt("limits.memory"));
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void testReadWithDuplicateKeysDisallowed() throws Exception {
+        yamlConfiguration.loaderOptions.setAllowDuplicateKeys(false);
+        yamlConfiguration.read(new StringReader("a: 1\na: 2\n"));
+    }
+
+    @Test
+    public void testReadEmpty() throws Exception {
+        yamlConfiguration.read(new StringReader(""));
+
+        assertTrue(yamlConfiguration.isEmpty());
+    }
+
 }
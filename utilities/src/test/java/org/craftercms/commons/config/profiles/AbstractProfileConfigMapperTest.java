@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.config.profiles;
+
+import org.apache.commons.configuration2.XMLConfiguration;
+import org.apache.commons.configuration2.io.FileHandler;
+import org.craftercms.commons.config.ConfigurationProvider;
+import org.craftercms.commons.config.ConfigurationResolver;
+import org.craftercms.commons.config.profiles.webdav.WebDavProfile;
+import org.craftercms.commons.config.profiles.webdav.WebDavProfileMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.StringReader;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AbstractProfileConfigMapperTest {
+
+    private static final String MODULE = "studio";
+    private static final String CONFIG_PATH = "webdav/webdav.xml";
+
+    private static final String CONFIG =
+            "<site>" +
+            "  <webdav>" +
+            "    <profile>" +
+            "      <id>first</id>" +
+            "      <baseUrl>http://localhost/first</baseUrl>" +
+            "      <username>user</username>" +
+            "      <password>password</password>" +
+            "    </profile>" +
+            "    <profile>" +
+            "      <id>second</id>" +
+            "      <baseUrl>http://localhost/second</baseUrl>" +
+            "      <username>user</username>" +
+            "      <password>password</password>" +
+            "    </profile>" +
+            "  </webdav>" +
+            "</site>";
+
+    @Mock
+    ConfigurationResolver configurationResolver;
+    @Mock
+    ConfigurationProvider configurationProvider;
+
+    private WebDavProfileMapper profileMapper;
+
+    @Before
+    public void setUp() throws Exception {
+        when(configurationProvider.getLookupVariables()).thenReturn(Map.of("siteName", "test-site"));
+        when(configurationResolver.getXmlConfiguration(anyString(), anyString(), any(ConfigurationProvider.class)))
+                .thenAnswer(invocation -> readConfig());
+
+        profileMapper = new WebDavProfileMapper(configurationResolver);
+    }
+
+    @Test
+    public void testProfilesAreIndexedWhileVersionDoesNotChange() throws Exception {
+        when(configurationResolver.getConfigVersion(MODULE, CONFIG_PATH, configurationProvider)).thenReturn("1");
+
+        WebDavProfile first = readProfile("first");
+        WebDavProfile second = readProfile("second");
+
+        assertEquals("first", first.getProfileId());
+        assertEquals("http://localhost/first", first.getBaseUrl());
+        assertEquals("second", second.getProfileId());
+        assertEquals("http://localhost/second", second.getBaseUrl());
+        verify(configurationResolver, times(1)).getXmlConfiguration(MODULE, CONFIG_PATH, configurationProvider);
+
+        when(configurationResolver.getConfigVersion(MODULE, CONFIG_PATH, configurationProvider)).thenReturn("2");
+
+        readProfile("first");
+
+        verify(configurationResolver, times(2)).getXmlConfiguration(MODULE, CONFIG_PATH, configurationProvider);
+    }
+
+    @Test
+    public void testProfilesWithoutVersionAreNotIndexed() throws Exception {
+        readProfile("first");
+        readProfile("first");
+
+        assertEquals(0, profileMapper.indexes.size());
+        verify(configurationResolver, times(2)).getXmlConfiguration(MODULE, CONFIG_PATH, configurationProvider);
+    }
+
+    @Test
+    public void testEachCallReturnsNewProfile() throws Exception {
+        when(configurationResolver.getConfigVersion(MODULE, CONFIG_PATH, configurationProvider)).thenReturn("1");
+
+        WebDavProfile profile = readProfile("first");
+        profile.setBaseUrl("http://localhost/changed");
+
+        WebDavProfile other = readProfile("first");
+
+        assertNotSame(profile, other);
+        assertEquals("http://localhost/first", other.getBaseUrl());
+    }
+
+    @Test
+    public void testLoadAllProfiles() throws Exception {
+        Map<String, WebDavProfile> profiles =
+                profileMapper.loadAllProfiles(configurationProvider, MODULE, CONFIG_PATH);
+
+        assertEquals(2, profiles.size());
+        assertEquals("http://localhost/first", profiles.get("first").getBaseUrl());
+        assertEquals("http://localhost/second", profiles.get("second").getBaseUrl());
+    }
+
+    @Test(expected = ConfigurationProfileNotFoundException.class)
+    public void testMissingProfile() throws Exception {
+        readProfile("third");
+    }
+
+    @Test
+    public void testIndexesAreBounded() throws Exception {
+        when(configurationResolver.getConfigVersion(anyString(), anyString(), any(ConfigurationProvider.class)))
+                .thenReturn("1");
+        profileMapper.setIndexCacheMaxSize(1);
+
+        readProfile("first");
+        when(configurationProvider.getLookupVariables()).thenReturn(Map.of("siteName", "other-site"));
+        readProfile("first");
+
+        assertEquals(1, profileMapper.indexes.size());
+    }
+
+    private WebDavProfile readProfile(String profileId) throws Exception {
+        return profileMapper.readConfig(configurationProvider, MODULE, CONFIG_PATH, null, profileId);
+    }
+
+    private XMLConfiguration readConfig() throws Exception {
+        XMLConfiguration config = new XMLConfiguration();
+        new FileHandler(config).load(new StringReader(CONFIG));
+        return config;
+    }
+
+}
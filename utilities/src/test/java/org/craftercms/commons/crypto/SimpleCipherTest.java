@@ -15,14 +15,25 @@
  */
 package org.craftercms.commons.crypto;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.security.Key;
+import java.util.Random;
 import javax.crypto.Cipher;
 import javax.crypto.spec.IvParameterSpec;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.codec.binary.StringUtils;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -30,6 +41,9 @@ import static org.junit.Assert.assertEquals;
  */
 public class SimpleCipherTest {
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     public static final String CLEAR_TEXT = "Lorem ipsum dolor sit amet, consectetur adipiscing elit. Sed fringilla.";
 
     @Test
@@ -68,4 +82,156 @@ public class SimpleCipherTest {
         assertEquals(CLEAR_TEXT, clear);
     }
 
+    @Test
+    public void testDecryptionWithOffset() throws Exception {
+        Key key = CryptoUtils.generateAesKey();
+        byte[] iv = CryptoUtils.generateAesIv();
+
+        Cipher encryptionCipher = Cipher.getInstance(CryptoUtils.DEFAULT_AES_CIPHER_TRANSFORMATION);
+        encryptionCipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(iv));
+
+        byte[] encrypted = encryptionCipher.doFinal(StringUtils.getBytesUtf8(CLEAR_TEXT));
+        byte[] ivAndEncrypted = new byte[iv.length + encrypted.length];
+        System.arraycopy(iv, 0, ivAndEncrypted, 0, iv.length);
+        System.arraycopy(encrypted, 0, ivAndEncrypted, iv.length, encrypted.length);
+
+        SimpleCipher decryptionCipher = new SimpleCipher();
+        decryptionCipher.setKey(key);
+        decryptionCipher.setIv(iv);
+        decryptionCipher.setCipher(CryptoUtils.getThreadLocalAesCipher());
+
+        byte[] clear = decryptionCipher.decrypt(ivAndEncrypted, iv.length, encrypted.length);
+
+        assertEquals(CLEAR_TEXT, StringUtils.newStringUtf8(clear));
+    }
+
+    @Test
+    public void testStreamingWithGcm() throws Exception {
+        byte[] clear = StringUtils.getBytesUtf8(CLEAR_TEXT);
+
+        SimpleCipher encryptionCipher = new SimpleCipher();
+        encryptionCipher.setCipher(Cipher.getInstance(CryptoUtils.AES_GCM_CIPHER_TRANSFORMATION));
+        encryptionCipher.setBufferSize(16);
+
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        encryptionCipher.encrypt(new ByteArrayInputStream(clear), encrypted);
+
+        SimpleCipher decryptionCipher = new SimpleCipher();
+        decryptionCipher.setCipher(Cipher.getInstance(CryptoUtils.AES_GCM_CIPHER_TRANSFORMATION));
+        decryptionCipher.setKey(encryptionCipher.getKey());
+        decryptionCipher.setIv(encryptionCipher.getIv());
+        decryptionCipher.setBufferSize(16);
+
+        ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+        decryptionCipher.decrypt(Channels.newChannel(new ByteArrayInputStream(encrypted.toByteArray())),
+                                 Channels.newChannel(decrypted));
+
+        assertEquals(CLEAR_TEXT, StringUtils.newStringUtf8(decrypted.toByteArray()));
+    }
+
+    @Test
+    public void testStreamingWithCbc() throws Exception {
+        byte[] clear = createLargeClear();
+
+        SimpleCipher encryptionCipher = new SimpleCipher();
+        encryptionCipher.setBufferSize(100);
+
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        encryptionCipher.encrypt(new ByteArrayInputStream(clear), encrypted);
+
+        assertArrayEquals(encryptionCipher.encrypt(clear), encrypted.toByteArray());
+
+        SimpleCipher decryptionCipher = new SimpleCipher();
+        decryptionCipher.setKey(encryptionCipher.getKey());
+        decryptionCipher.setIv(encryptionCipher.getIv());
+        decryptionCipher.setBufferSize(100);
+
+        ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+        decryptionCipher.decrypt(new ByteArrayInputStream(encrypted.toByteArray()), decrypted);
+
+        assertArrayEquals(clear, decrypted.toByteArray());
+    }
+
+    @Test
+    public void testStreamingWithGcmAndLargeData() throws Exception {
+        byte[] clear = createLargeClear();
+
+        SimpleCipher encryptionCipher = new SimpleCipher();
+        encryptionCipher.setCipher(Cipher.getInstance(CryptoUtils.AES_GCM_CIPHER_TRANSFORMATION));
+        encryptionCipher.setBufferSize(1000);
+
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        encryptionCipher.encrypt(Channels.newChannel(new ByteArrayInputStream(clear)), Channels.newChannel(encrypted));
+
+        SimpleCipher decryptionCipher = new SimpleCipher();
+        decryptionCipher.setCipher(Cipher.getInstance(CryptoUtils.AES_GCM_CIPHER_TRANSFORMATION));
+        decryptionCipher.setKey(encryptionCipher.getKey());
+        decryptionCipher.setIv(encryptionCipher.getIv());
+        decryptionCipher.setBufferSize(1000);
+
+        ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+        decryptionCipher.decrypt(new ByteArrayInputStream(encrypted.toByteArray()), decrypted);
+
+        assertArrayEquals(clear, decrypted.toByteArray());
+    }
+
+    @Test
+    public void testChannelEncryptionWithCbc() throws Exception {
+        byte[] clear = createLargeClear();
+
+        SimpleCipher encryptionCipher = new SimpleCipher();
+        encryptionCipher.setBufferSize(100);
+
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        encryptionCipher.encrypt(Channels.newChannel(new ByteArrayInputStream(clear)), Channels.newChannel(encrypted));
+
+        SimpleCipher decryptionCipher = new SimpleCipher();
+        decryptionCipher.setKey(encryptionCipher.getKey());
+        decryptionCipher.setIv(encryptionCipher.getIv());
+
+        assertArrayEquals(clear, decryptionCipher.decrypt(encrypted.toByteArray()));
+    }
+
+    @Test
+    public void testFileChannelEncryptionAndDecryption() throws Exception {
+        byte[] clear = createLargeClear();
+        File clearFile = tempFolder.newFile();
+        File encryptedFile = tempFolder.newFile();
+        File decryptedFile = tempFolder.newFile();
+        Files.write(clearFile.toPath(), clear);
+
+        SimpleCipher encryptionCipher = new SimpleCipher();
+        encryptionCipher.setBufferSize(1000);
+
+        try (FileChannel in = FileChannel.open(clearFile.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(encryptedFile.toPath(), StandardOpenOption.WRITE)) {
+            encryptionCipher.encrypt(in, out);
+        }
+
+        SimpleCipher decryptionCipher = new SimpleCipher();
+        decryptionCipher.setKey(encryptionCipher.getKey());
+        decryptionCipher.setIv(encryptionCipher.getIv());
+        decryptionCipher.setBufferSize(1000);
+
+        try (FileChannel in = FileChannel.open(encryptedFile.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(decryptedFile.toPath(), StandardOpenOption.WRITE)) {
+            decryptionCipher.decrypt(in, out);
+        }
+
+        assertArrayEquals(clear, Files.readAllBytes(decryptedFile.toPath()));
+
+        // The buffers are reused by the next calls
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        encryptionCipher.encrypt(Channels.newChannel(new ByteArrayInputStream(clear)), Channels.newChannel(encrypted));
+
+        assertArrayEquals(clear, decryptionCipher.decrypt(encrypted.toByteArray()));
+    }
+
+    private byte[] createLargeClear() {
+        byte[] clear = new byte[100_003];
+        new Random(42).nextBytes(clear);
+
+        return clear;
+    }
+
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2007-2022 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.crypto.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DelegatingPasswordHasherTest {
+
+    private static final String PASSWORD = "p4ssw0rd";
+
+    private Pbkdf2PasswordHasher pbkdf2Hasher;
+    private Argon2PasswordHasher argon2Hasher;
+    private DelegatingPasswordHasher delegatingHasher;
+
+    @Before
+    public void setUp() {
+        pbkdf2Hasher = new Pbkdf2PasswordHasher();
+        pbkdf2Hasher.setIterations(1000);
+
+        argon2Hasher = new Argon2PasswordHasher();
+        argon2Hasher.setMemoryKb(1024);
+
+        delegatingHasher = new DelegatingPasswordHasher(pbkdf2Hasher,
+                                                        List.of(new SimpleDigestPasswordHasher(), argon2Hasher));
+    }
+
+    @Test
+    public void testHashesAreVersioned() throws Exception {
+        String pbkdf2Hash = delegatingHasher.hash(PASSWORD);
+        String argon2Hash = argon2Hasher.hash(PASSWORD);
+
+        assertTrue(pbkdf2Hash.startsWith("$pbkdf2-sha256$i=1000$"));
+        assertTrue(argon2Hash.startsWith("$argon2id$v=19$m=1024,t=2,p=1$"));
+        assertTrue(delegatingHasher.matches(pbkdf2Hash, PASSWORD));
+        assertTrue(delegatingHasher.matches(argon2Hash, PASSWORD));
+        assertFalse(delegatingHasher.matches(argon2Hash, "wrong"));
+    }
+
+    @Test
+    public void testRehashOnMatch() throws Exception {
+        List<String> newHashes = new ArrayList<>();
+
+        String legacyHash = new SimpleDigestPasswordHasher().hash(PASSWORD);
+        assertTrue(delegatingHasher.matches(legacyHash, PASSWORD, newHashes::add));
+        assertEquals(1, newHashes.size());
+        assertTrue(pbkdf2Hasher.matches(newHashes.get(0), PASSWORD));
+
+        assertTrue(delegatingHasher.matches(newHashes.get(0), PASSWORD, newHashes::add));
+        assertEquals(1, newHashes.size());
+
+        pbkdf2Hasher.setIterations(2000);
+        assertTrue(delegatingHasher.needsRehash(newHashes.get(0)));
+    }
+
+}
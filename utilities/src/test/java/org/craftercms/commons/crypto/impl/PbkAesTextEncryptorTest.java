@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.crypto.impl;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PbkAesTextEncryptorTest {
+
+    private static final String PASSWORD = "p4ssw0rd";
+    private static final String SALT = "s4lt-not-b64!";
+    private static final String CLEAR_TEXT = "this is the secret";
+
+    @Test
+    public void testEncryptAndDecrypt() throws Exception {
+        PbkAesTextEncryptor encryptor1 = new PbkAesTextEncryptor(PASSWORD, SALT);
+        PbkAesTextEncryptor encryptor2 = new PbkAesTextEncryptor(PASSWORD, SALT);
+
+        String encrypted = encryptor1.encrypt(CLEAR_TEXT);
+
+        assertTrue(encrypted.startsWith("CCE-V1#"));
+        assertEquals(CLEAR_TEXT, encryptor1.decrypt(encrypted));
+        assertEquals(CLEAR_TEXT, encryptor2.decrypt(encrypted));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testLegacyValuesRequireBase64Salt() throws Exception {
+        new PbkAesTextEncryptor(PASSWORD, SALT).decrypt("bGVnYWN5");
+    }
+
+    @Test
+    public void testPasswordIsNotKept() throws Exception {
+        PbkAesTextEncryptor encryptor = new PbkAesTextEncryptor(PASSWORD, SALT);
+
+        for (Field field : PbkAesTextEncryptor.class.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers())) {
+                field.setAccessible(true);
+                assertFalse(PASSWORD.equals(field.get(encryptor)));
+            }
+        }
+    }
+
+    @Test
+    public void testKeysAreDerivedOnce() throws Exception {
+        String salt = "once-" + System.nanoTime() + "!";
+
+        long derivations = PbkAesTextEncryptor.getKeyDerivationCount();
+        PbkAesTextEncryptor encryptor1 = new PbkAesTextEncryptor(PASSWORD, salt);
+        assertEquals(derivations + 1, PbkAesTextEncryptor.getKeyDerivationCount());
+
+        PbkAesTextEncryptor encryptor2 = new PbkAesTextEncryptor(PASSWORD, salt);
+        assertEquals(derivations + 1, PbkAesTextEncryptor.getKeyDerivationCount());
+        assertEquals(CLEAR_TEXT, encryptor2.decrypt(encryptor1.encrypt(CLEAR_TEXT)));
+
+        // A different password gets its own key
+        new PbkAesTextEncryptor(PASSWORD + "2", salt);
+        assertEquals(derivations + 2, PbkAesTextEncryptor.getKeyDerivationCount());
+    }
+
+}
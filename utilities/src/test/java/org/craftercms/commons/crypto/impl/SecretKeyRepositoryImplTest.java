@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.crypto.impl;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+import javax.crypto.SecretKey;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+public class SecretKeyRepositoryImplTest {
+
+    private static final String PASSWORD = "p4ssw0rd";
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testKeyStoreIsReplacedAtomically() throws Exception {
+        File keyStoreFile = new File(tmpFolder.getRoot(), "keystore.jceks");
+
+        SecretKeyRepositoryImpl repository = new SecretKeyRepositoryImpl(keyStoreFile, PASSWORD);
+        repository.afterPropertiesSet();
+
+        SecretKey key1 = repository.getKey("key1", true);
+        SecretKey key2 = repository.getKey("key2", true);
+
+        // Only the keystore is left, no temp files
+        assertArrayEquals(new String[] { keyStoreFile.getName() }, tmpFolder.getRoot().list());
+
+        SecretKeyRepositoryImpl reloaded = new SecretKeyRepositoryImpl(keyStoreFile, PASSWORD);
+        reloaded.afterPropertiesSet();
+
+        assertEquals(key1, reloaded.getKey("key1", false));
+        assertEquals(key2, reloaded.getKey("key2", false));
+    }
+
+    @Test
+    public void testKeyStorePermissionsArePreserved() throws Exception {
+        Path keyStorePath = tmpFolder.getRoot().toPath().resolve("keystore.jceks");
+        assumeTrue(Files.getFileAttributeView(tmpFolder.getRoot().toPath(), PosixFileAttributeView.class) != null);
+
+        SecretKeyRepositoryImpl repository = new SecretKeyRepositoryImpl(keyStorePath.toFile(), PASSWORD);
+        repository.afterPropertiesSet();
+        repository.getKey("key1", true);
+
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r-----");
+        Files.setPosixFilePermissions(keyStorePath, permissions);
+
+        repository.getKey("key2", true);
+
+        assertEquals(permissions, Files.getPosixFilePermissions(keyStorePath));
+    }
+
+}
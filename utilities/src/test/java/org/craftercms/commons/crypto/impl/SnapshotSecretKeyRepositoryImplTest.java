@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.crypto.impl;
+
+import java.io.File;
+import javax.crypto.SecretKey;
+
+import org.craftercms.commons.crypto.CryptoException;
+import org.craftercms.commons.crypto.CryptoUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SnapshotSecretKeyRepositoryImplTest {
+
+    private static final String PASSWORD = "p4ssw0rd";
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private File keyStoreFile;
+    private FailingSnapshotSecretKeyRepositoryImpl repository;
+
+    @Before
+    public void setUp() throws Exception {
+        keyStoreFile = new File(tmpFolder.getRoot(), "keystore.jceks");
+
+        repository = new FailingSnapshotSecretKeyRepositoryImpl(keyStoreFile, PASSWORD);
+        // Long enough so that the scheduled flush never runs during the test
+        repository.setFlushDelayMillis(60 * 60 * 1000);
+        repository.afterPropertiesSet();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        repository.failWrites = false;
+        repository.destroy();
+    }
+
+    @Test
+    public void testSavesAreCoalesced() throws Exception {
+        SecretKey key1 = repository.getKey("key1", true);
+        SecretKey key2 = repository.getKey("key2", true);
+        SecretKey key3 = CryptoUtils.generateKey(CryptoUtils.AES_CIPHER_ALGORITHM);
+        repository.saveKey("key3", key3);
+
+        assertEquals(0, repository.writeCount);
+        assertFalse(keyStoreFile.exists());
+        assertEquals(key1, repository.getKey("key1", false));
+
+        repository.flush();
+        repository.flush();
+
+        assertEquals(1, repository.writeCount);
+
+        SecretKeyRepositoryImpl reloaded = new SecretKeyRepositoryImpl(keyStoreFile, PASSWORD);
+        reloaded.afterPropertiesSet();
+
+        assertEquals(key1, reloaded.getKey("key1", false));
+        assertEquals(key2, reloaded.getKey("key2", false));
+        assertEquals(key3, reloaded.getKey("key3", false));
+    }
+
+    @Test
+    public void testFailedFlushIsRetried() throws Exception {
+        SecretKey key = repository.getKey("key", true);
+
+        repository.failWrites = true;
+        try {
+            repository.flush();
+            fail("Expected " + CryptoException.class.getName());
+        } catch (CryptoException e) {
+            // expected
+        }
+
+        assertFalse(keyStoreFile.exists());
+
+        repository.failWrites = false;
+        repository.flush();
+
+        assertTrue(keyStoreFile.exists());
+
+        SecretKeyRepositoryImpl reloaded = new SecretKeyRepositoryImpl(keyStoreFile, PASSWORD);
+        reloaded.afterPropertiesSet();
+
+        assertNotNull(reloaded.getKey("key", false));
+        assertEquals(key, reloaded.getKey("key", false));
+    }
+
+    private static class FailingSnapshotSecretKeyRepositoryImpl extends SnapshotSecretKeyRepositoryImpl {
+
+        private volatile boolean failWrites;
+        private int writeCount;
+
+        public FailingSnapshotSecretKeyRepositoryImpl(File keyStoreFile, String keyStorePassword) {
+            super(keyStoreFile, keyStorePassword);
+        }
+
+        @Override
+        protected void storeKeyStore() throws CryptoException {
+            if (failWrites) {
+                throw new CryptoException(ERROR_KEY_KEY_STORE_STORE_ERROR, keyStoreFile);
+            }
+
+            writeCount++;
+            super.storeKeyStore();
+        }
+
+    }
+
+}
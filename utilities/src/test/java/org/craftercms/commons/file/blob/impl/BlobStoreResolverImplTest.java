@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.file.blob.impl;
+
+import org.apache.commons.configuration2.HierarchicalConfiguration;
+import org.craftercms.commons.config.ConfigUtils;
+import org.craftercms.commons.config.ConfigurationProvider;
+import org.craftercms.commons.config.ConfigurationResolver;
+import org.craftercms.commons.file.blob.BlobStore;
+import org.craftercms.commons.file.blob.BlobStoreResolver;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.emptyMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings("rawtypes")
+public class BlobStoreResolverImplTest {
+
+    private static final Resource CONFIG_FILE = new ClassPathResource("config/stores.xml");
+    private static final String CONFIG_MODULE = "studio";
+    private static final String CONFIG_PATH = "blob-stores-config.xml";
+
+    private ConfigurationProvider provider;
+    private BlobStoreResolverImpl resolver;
+
+    @Before
+    public void setUp() throws Exception {
+        provider = mock(ConfigurationProvider.class);
+
+        ConfigurationResolver configurationResolver = mock(ConfigurationResolver.class);
+        when(configurationResolver.getXmlConfiguration(CONFIG_MODULE, CONFIG_PATH, provider))
+            .thenAnswer(invocation -> readConfig());
+
+        ApplicationContext applicationContext = mock(ApplicationContext.class);
+        when(applicationContext.getBean(any(String.class), eq(BlobStore.class)))
+            .thenAnswer(invocation -> mock(BlobStore.class));
+
+        resolver = new BlobStoreResolverImpl();
+        resolver.setConfigModule(CONFIG_MODULE);
+        resolver.setConfigPath(CONFIG_PATH);
+        resolver.setConfigurationResolver(configurationResolver);
+        resolver.setApplicationContext(applicationContext);
+    }
+
+    @Test
+    public void testGetStoreIds() throws Exception {
+        assertEquals(List.of("myBlobStore", "anotherBlobStore"), resolver.getStoreIds(provider));
+    }
+
+    @Test
+    public void testRouterIsReused() throws Exception {
+        assertNotNull(resolver.resolveByPath(provider, "/static-assets/remote/image.jpg"));
+        assertNotNull(resolver.resolveByPath(provider, "/static-assets/another/image.jpg"));
+        assertNull(resolver.resolveByPath(provider, "/static-assets/images/image.jpg"));
+
+        List<Map.Entry<String, String>> patterns = resolver.getStorePatterns(readConfig());
+
+        assertEquals(1, resolver.routers.size());
+        assertSame(resolver.routers.get(patterns), resolver.getRouter(patterns));
+    }
+
+    @Test
+    public void testDefaultResolveByPath() throws Exception {
+        BlobStore first = mockStore("/static-assets/remote/.*");
+        BlobStore second = mockStore("/static-assets/.*");
+        Map<String, BlobStore> stores = Map.of("first", first, "second", second);
+
+        BlobStoreResolver defaultResolver = new BlobStoreResolver() {
+
+            @Override
+            public BlobStore getById(ConfigurationProvider provider, String storeId) {
+                return stores.get(storeId);
+            }
+
+            @Override
+            public List<String> getStoreIds(ConfigurationProvider provider) {
+                return List.of("first", "second");
+            }
+
+        };
+
+        assertSame(first, defaultResolver.resolveByPath(provider, "/static-assets/remote/image.jpg"));
+        assertSame(second, defaultResolver.resolveByPath(provider, "/static-assets/images/image.jpg"));
+        assertNull(defaultResolver.resolveByPath(provider, "/templates/page.ftl"));
+
+        verify(second, never()).isCompatible("/static-assets/remote/image.jpg");
+    }
+
+    private BlobStore mockStore(String pattern) {
+        BlobStore store = mock(BlobStore.class);
+        when(store.isCompatible(any())).thenAnswer(invocation -> invocation.<String>getArgument(0).matches(pattern));
+        return store;
+    }
+
+    private HierarchicalConfiguration readConfig() throws Exception {
+        try (InputStream is = CONFIG_FILE.getInputStream()) {
+            return ConfigUtils.readXmlConfiguration(is, ',', emptyMap(), emptyMap());
+        }
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.file.blob.impl;
+
+import org.apache.commons.configuration2.HierarchicalConfiguration;
+import org.craftercms.commons.config.ConfigUtils;
+import org.craftercms.commons.config.ConfigurationProvider;
+import org.craftercms.commons.config.ConfigurationResolver;
+import org.craftercms.commons.file.blob.BlobStore;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+
+import java.io.InputStream;
+
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings("rawtypes")
+public class CachingBlobStoreResolverImplTest {
+
+    private static final Resource CONFIG_FILE = new ClassPathResource("config/stores.xml");
+    private static final String CONFIG_MODULE = "studio";
+    private static final String CONFIG_PATH = "blob-stores-config.xml";
+    private static final String STORE_ID = "myBlobStore";
+
+    private ConfigurationResolver configurationResolver;
+    private ApplicationContext applicationContext;
+    private ConfigurationProvider provider;
+    private CachingBlobStoreResolverImpl resolver;
+
+    @Before
+    public void setUp() throws Exception {
+        configurationResolver = mock(ConfigurationResolver.class);
+
+        applicationContext = mock(ApplicationContext.class);
+        when(applicationContext.getBean(any(String.class), eq(BlobStore.class)))
+            .thenAnswer(invocation -> mock(BlobStore.class));
+
+        provider = mock(ConfigurationProvider.class);
+        when(provider.getLookupVariables()).thenReturn(singletonMap("siteName", "mysite"));
+
+        when(configurationResolver.getXmlConfiguration(CONFIG_MODULE, CONFIG_PATH, provider))
+            .thenAnswer(invocation -> readConfig());
+
+        resolver = new CachingBlobStoreResolverImpl();
+        resolver.setConfigModule(CONFIG_MODULE);
+        resolver.setConfigPath(CONFIG_PATH);
+        resolver.setConfigurationResolver(configurationResolver);
+        resolver.setApplicationContext(applicationContext);
+    }
+
+    @Test
+    public void testStoreIsReusedWhileVersionDoesNotChange() throws Exception {
+        when(configurationResolver.getConfigVersion(CONFIG_MODULE, CONFIG_PATH, provider)).thenReturn("1");
+
+        BlobStore store = resolver.getById(provider, STORE_ID);
+
+        assertSame(store, resolver.getById(provider, STORE_ID));
+        assertSame(store, resolver.getById(provider, STORE_ID));
+
+        verify(configurationResolver, times(1)).getXmlConfiguration(CONFIG_MODULE, CONFIG_PATH, provider);
+        verify(store, times(1)).init(any());
+        assertEquals(2, resolver.getHitCount());
+        assertEquals(1, resolver.getMissCount());
+        assertEquals(3, resolver.getLookupCount());
+
+        // A new version with the same store configuration doesn't rebuild the store
+        when(configurationResolver.getConfigVersion(CONFIG_MODULE, CONFIG_PATH, provider)).thenReturn("2");
+
+        assertSame(store, resolver.getById(provider, STORE_ID));
+
+        verify(configurationResolver, times(2)).getXmlConfiguration(CONFIG_MODULE, CONFIG_PATH, provider);
+        assertEquals(1, resolver.getMissCount());
+    }
+
+    @Test
+    public void testStoreIsRebuiltWhenConfigChanges() throws Exception {
+        BlobStore store = resolver.getById(provider, STORE_ID);
+
+        // No version, so the config is read every time but the store is not rebuilt
+        assertSame(store, resolver.getById(provider, STORE_ID));
+
+        verify(configurationResolver, times(2)).getXmlConfiguration(CONFIG_MODULE, CONFIG_PATH, provider);
+
+        HierarchicalConfiguration config = readConfig();
+        config.setProperty("blobStore(0).pattern", "/static-assets/other.*");
+        when(configurationResolver.getXmlConfiguration(CONFIG_MODULE, CONFIG_PATH, provider)).thenReturn(config);
+
+        assertNotSame(store, resolver.getById(provider, STORE_ID));
+        assertEquals(2, resolver.getMissCount());
+    }
+
+    @Test
+    public void testStoresAreCachedByProvider() throws Exception {
+        ConfigurationProvider otherProvider = mock(ConfigurationProvider.class);
+        when(otherProvider.getLookupVariables()).thenReturn(singletonMap("siteName", "othersite"));
+        when(configurationResolver.getXmlConfiguration(CONFIG_MODULE, CONFIG_PATH, otherProvider))
+            .thenAnswer(invocation -> readConfig());
+
+        BlobStore store = resolver.getById(provider, STORE_ID);
+
+        assertNotSame(store, resolver.getById(otherProvider, STORE_ID));
+        assertEquals(2, resolver.getSize());
+    }
+
+    @Test
+    public void testResolveByPath() throws Exception {
+        when(configurationResolver.getConfigVersion(CONFIG_MODULE, CONFIG_PATH, provider)).thenReturn("1");
+
+        BlobStore store = resolver.resolveByPath(provider, "/static-assets/remote/image.jpg");
+
+        assertSame(store, resolver.getById(provider, STORE_ID));
+        assertSame(store, resolver.resolveByPath(provider, "/static-assets/remote/doc.pdf"));
+        assertNotSame(store, resolver.resolveByPath(provider, "/static-assets/another/image.jpg"));
+        assertNull(resolver.resolveByPath(provider, "/static-assets/images/image.jpg"));
+
+        verify(configurationResolver, times(3)).getXmlConfiguration(CONFIG_MODULE, CONFIG_PATH, provider);
+    }
+
+    private HierarchicalConfiguration readConfig() throws Exception {
+        try (InputStream is = CONFIG_FILE.getInputStream()) {
+            return ConfigUtils.readXmlConfiguration(is, ',', emptyMap(), emptyMap());
+        }
+    }
+
+}
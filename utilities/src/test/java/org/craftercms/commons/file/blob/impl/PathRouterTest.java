@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.file.blob.impl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PathRouterTest {
+
+    @Test
+    public void testLiteralPrefix() {
+        assertEquals("/static-assets/remote", PathRouter.getLiteralPrefix("/static-assets/remote.*"));
+        assertEquals("/static-assets/remote/", PathRouter.getLiteralPrefix("^/static-assets/remote/.+"));
+        assertEquals("/static-assets/remot", PathRouter.getLiteralPrefix("/static-assets/remote?/.*"));
+        assertEquals("/site/", PathRouter.getLiteralPrefix("/site/(a|b)/.*"));
+        assertEquals("", PathRouter.getLiteralPrefix("/a/.*|/b/.*"));
+        assertEquals("", PathRouter.getLiteralPrefix("(?i)/static-assets/.*"));
+    }
+
+    @Test
+    public void testRoute() {
+        PathRouter<String> router = new PathRouter<String>()
+            .addRoute("/static-assets/remote/videos/.*", "videos")
+            .addRoute("/static-assets/remote/.*", "remote")
+            .addRoute(".*\\.pdf", "pdfs")
+            .addRoute("/static-assets/remote/docs/.*", "docs");
+
+        assertEquals("videos", router.route("/static-assets/remote/videos/intro.mp4"));
+        assertEquals("remote", router.route("/static-assets/remote/images/logo.png"));
+        // The first matching route wins, even if a later one is more specific
+        assertEquals("remote", router.route("/static-assets/remote/docs/manual.pdf"));
+        assertEquals("pdfs", router.route("/static-assets/docs/manual.pdf"));
+        assertNull(router.route("/static-assets/images/logo.png"));
+        assertNull(router.route("/static-assets/remote"));
+        assertNull(router.route(null));
+    }
+
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.file.stores.impl;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.craftercms.commons.file.stores.RemotePath;
+import org.craftercms.commons.spring.resources.RangeAwareResource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.Resource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.time.format.DateTimeFormatter.RFC_1123_DATE_TIME;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link CachingRemoteFileStore}, using a local HTTP server as the remote store.
+ */
+public class CachingRemoteFileStoreTest {
+
+    private static final String STORE_TYPE = "url";
+    private static final long LAST_MODIFIED = 1_600_000_000_000L;
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private HttpServer server;
+    private ConcurrentHashMap<String, String> files;
+    private AtomicInteger getCount;
+    private volatile long lastModified;
+    private volatile String headContent;
+    private volatile CountDownLatch getLatch;
+    private File cacheFolder;
+    private CachingRemoteFileStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        files = new ConcurrentHashMap<>();
+        files.put("/file1", "0123456789");
+        files.put("/file2", "abcdefghij");
+        getCount = new AtomicInteger();
+        lastModified = LAST_MODIFIED;
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", this::handle);
+        server.start();
+
+        cacheFolder = tmpFolder.newFolder("cache");
+        store = new CachingRemoteFileStore(new UrlBasedFileStore(), cacheFolder.getAbsolutePath());
+        store.afterPropertiesSet();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testRepeatedReadsAreServedFromCache() throws Exception {
+        assertEquals("0123456789", read("/file1"));
+        assertEquals("0123456789", read("/file1"));
+        assertEquals("0123456789", read("/file1"));
+
+        assertEquals(1, getCount.get());
+        assertEquals(1, store.getMissCount());
+        assertEquals(2, store.getHitCount());
+        assertEquals(10, store.getCurrentSize());
+    }
+
+    @Test
+    public void testRangeRead() throws Exception {
+        RangeAwareResource resource = (RangeAwareResource) store.getFile(path("/file1")).toResource();
+
+        try (InputStream in = resource.getInputStream(2, 5)) {
+            assertEquals("2345", IOUtils.toString(in, StandardCharsets.UTF_8));
+        }
+        try (InputStream in = resource.getInputStream(7, 0)) {
+            assertEquals("789", IOUtils.toString(in, StandardCharsets.UTF_8));
+        }
+
+        assertEquals(1, getCount.get());
+    }
+
+    @Test
+    public void testConcurrentMissesAreCoalesced() throws Exception {
+        getLatch = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> read("/file1")));
+            }
+
+            Thread.sleep(200);
+            getLatch.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("0123456789", result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, getCount.get());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedFileIsEvicted() throws Exception {
+        store.setMaxSize(15);
+
+        read("/file1");
+        read("/file2");
+
+        assertEquals(1, store.getEvictionCount());
+        assertEquals(1, store.getFileCount());
+        assertEquals(10, store.getCurrentSize());
+
+        read("/file2");
+        read("/file1");
+
+        assertEquals(3, getCount.get());
+    }
+
+    @Test
+    public void testChangedFileIsDownloadedAgain() throws Exception {
+        store.setRevalidateIntervalMillis(0);
+
+        assertEquals("0123456789", read("/file1"));
+        assertEquals("0123456789", read("/file1"));
+        assertEquals(1, getCount.get());
+
+        files.put("/file1", "9876543210");
+        lastModified = LAST_MODIFIED + 1000;
+
+        assertEquals("9876543210", read("/file1"));
+        assertEquals(2, getCount.get());
+        assertEquals(2, store.getRevalidationCount());
+    }
+
+    @Test
+    public void testMetadataDoesNotDownloadFile() throws Exception {
+        Resource resource = store.getFile(path("/file1")).toResource();
+
+        assertTrue(resource.exists());
+        assertEquals(10, resource.contentLength());
+        assertEquals(LAST_MODIFIED, resource.lastModified());
+        assertEquals(0, getCount.get());
+
+        read("/file1");
+
+        assertEquals(10, resource.contentLength());
+        assertEquals(1, getCount.get());
+    }
+
+    @Test
+    public void testFileChangedDuringDownloadIsNotCached() throws Exception {
+        // The metadata read before the download belongs to a different version of the file
+        headContent = "01234567890123";
+
+        assertEquals("0123456789", read("/file1"));
+        assertEquals(0, store.getFileCount());
+
+        headContent = null;
+
+        assertEquals("0123456789", read("/file1"));
+        assertEquals("0123456789", read("/file1"));
+        assertEquals(1, store.getFileCount());
+    }
+
+    @Test
+    public void testDeletedFileIsDownloadedAgain() throws Exception {
+        read("/file1");
+
+        for (File file : cacheFolder.listFiles()) {
+            Files.delete(file.toPath());
+        }
+
+        assertEquals("0123456789", read("/file1"));
+        assertEquals(2, getCount.get());
+    }
+
+    @Test
+    public void testStartupOnlyDeletesOwnFiles() throws Exception {
+        read("/file1");
+
+        File otherFile = new File(cacheFolder, "other.txt");
+        Files.write(otherFile.toPath(), "other".getBytes(StandardCharsets.UTF_8));
+
+        CachingRemoteFileStore newStore = new CachingRemoteFileStore(new UrlBasedFileStore(),
+                                                                     cacheFolder.getAbsolutePath());
+        newStore.afterPropertiesSet();
+
+        assertArrayEquals(new String[] { otherFile.getName() }, cacheFolder.list());
+    }
+
+    private String read(String file) throws IOException {
+        try (InputStream in = store.getFile(path(file)).getInputStream()) {
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+
+    private RemotePath path(String file) {
+        return new RemotePath(STORE_TYPE, "http://localhost:" + server.getAddress().getPort() + file);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String content = files.get(exchange.getRequestURI().getPath());
+        if (content == null) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Last-Modified", RFC_1123_DATE_TIME.format(
+            Instant.ofEpochMilli(lastModified).atZone(ZoneOffset.UTC)));
+
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            String head = headContent != null? headContent : content;
+            exchange.getResponseHeaders().add("Content-Length",
+                                              String.valueOf(head.getBytes(StandardCharsets.UTF_8).length));
+            exchange.sendResponseHeaders(200, -1);
+        } else {
+            getCount.incrementAndGet();
+            awaitLatch();
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+        exchange.close();
+    }
+
+    private void awaitLatch() {
+        CountDownLatch latch = getLatch;
+        if (latch != null) {
+            try {
+                latch.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.spring.resources;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParallelRangeDownloaderTest {
+
+    private static final int CONTENT_SIZE = 1000;
+    private static final int PART_SIZE = 64;
+    private static final int MAX_CONCURRENT_PARTS = 4;
+    private static final String ETAG = "\"etag-1\"";
+
+    private byte[] content;
+    private ExecutorService executor;
+    private ParallelRangeDownloader downloader;
+
+    @Before
+    public void setUp() {
+        content = new byte[CONTENT_SIZE];
+        new Random(42).nextBytes(content);
+
+        executor = Executors.newFixedThreadPool(8);
+
+        downloader = new ParallelRangeDownloader(executor);
+        downloader.setPartSize(PART_SIZE);
+        downloader.setMaxConcurrentParts(MAX_CONCURRENT_PARTS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testInputStreamReassemblesPartsInOrder() throws Exception {
+        TestResource resource = new TestResource(content);
+
+        try (InputStream in = downloader.getInputStream(resource, 0, 0)) {
+            assertArrayEquals(content, IOUtils.toByteArray(in));
+        }
+        try (InputStream in = downloader.getInputStream(resource, 100, 899)) {
+            assertArrayEquals(Arrays.copyOfRange(content, 100, 900), IOUtils.toByteArray(in));
+        }
+
+        assertTrue(resource.maxInFlight.get() > 1);
+        assertTrue(resource.maxInFlight.get() <= MAX_CONCURRENT_PARTS);
+    }
+
+    @Test
+    public void testDownloadToChannel() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long written = downloader.download(new TestResource(content), 10, 0, Channels.newChannel(out));
+
+        assertEquals(CONTENT_SIZE - 10, written);
+        assertArrayEquals(Arrays.copyOfRange(content, 10, CONTENT_SIZE), out.toByteArray());
+    }
+
+    @Test
+    public void testAsyncRangesAreUsedWhenSupported() throws Exception {
+        TestAsyncResource resource = new TestAsyncResource(content);
+
+        try (InputStream in = downloader.getInputStream(resource, 0, 0)) {
+            assertArrayEquals(content, IOUtils.toByteArray(in));
+        }
+
+        assertEquals((CONTENT_SIZE + PART_SIZE - 1) / PART_SIZE, resource.asyncRequests.get());
+        assertEquals(0, resource.requests.get());
+    }
+
+    @Test
+    public void testPartErrorIsPropagated() throws Exception {
+        TestResource resource = new TestResource(content);
+        resource.failAt = 5 * PART_SIZE;
+
+        try (InputStream in = downloader.getInputStream(resource, 0, 0)) {
+            IOUtils.toByteArray(in);
+            fail("Expected " + FileNotFoundException.class.getName());
+        } catch (FileNotFoundException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testIgnoredRangeIsRejected() throws Exception {
+        TestResource resource = new TestResource(content) {
+
+            @Override
+            public InputStream getInputStream(long start, long end) {
+                // Like a server that ignores the Range header
+                return new ByteArrayInputStream(content);
+            }
+
+        };
+
+        try (InputStream in = downloader.getInputStream(resource, 0, 0)) {
+            IOUtils.toByteArray(in);
+            fail("Expected " + IOException.class.getName());
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("expected " + PART_SIZE + " bytes"));
+        }
+    }
+
+    @Test
+    public void testPartsArePinnedToETag() throws Exception {
+        Set<String> eTags = ConcurrentHashMap.newKeySet();
+        AtomicInteger conditionalRequests = new AtomicInteger();
+
+        TestMetadataAwareResource resource = new TestMetadataAwareResource(content) {
+
+            @Override
+            public InputStream getInputStream(long start, long end, String eTag) throws IOException {
+                conditionalRequests.incrementAndGet();
+                eTags.add(eTag);
+                return super.getInputStream(start, end, eTag);
+            }
+
+        };
+
+        try (InputStream in = downloader.getInputStream(resource, 0, 0)) {
+            assertArrayEquals(content, IOUtils.toByteArray(in));
+        }
+
+        assertEquals((CONTENT_SIZE + PART_SIZE - 1) / PART_SIZE, conditionalRequests.get());
+        assertEquals(Collections.singleton(ETAG), eTags);
+    }
+
+    @Test
+    public void testEndIsClampedToContentLength() throws Exception {
+        AtomicInteger maxEnd = new AtomicInteger();
+
+        TestMetadataAwareResource resource = new TestMetadataAwareResource(content) {
+
+            @Override
+            public InputStream getInputStream(long start, long end, String eTag) throws IOException {
+                maxEnd.accumulateAndGet((int) end, Math::max);
+                return super.getInputStream(start, end, eTag);
+            }
+
+        };
+
+        try (InputStream in = downloader.getInputStream(resource, 900, CONTENT_SIZE + 500)) {
+            assertArrayEquals(Arrays.copyOfRange(content, 900, CONTENT_SIZE), IOUtils.toByteArray(in));
+        }
+
+        assertEquals(CONTENT_SIZE - 1, maxEnd.get());
+    }
+
+    @Test
+    public void testCloseCancelsPartsInFlight() throws Exception {
+        AtomicInteger opened = new AtomicInteger();
+        AtomicInteger closed = new AtomicInteger();
+        CountDownLatch allOpened = new CountDownLatch(MAX_CONCURRENT_PARTS);
+
+        TestResource resource = new TestResource(content) {
+
+            @Override
+            public InputStream getInputStream(long start, long end) {
+                opened.incrementAndGet();
+                allOpened.countDown();
+
+                // Blocks until closed, like a slow network stream
+                CountDownLatch closedLatch = new CountDownLatch(1);
+                return new InputStream() {
+
+                    @Override
+                    public int read() throws IOException {
+                        try {
+                            closedLatch.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        throw new IOException("Stream closed");
+                    }
+
+                    @Override
+                    public void close() {
+                        if (closedLatch.getCount() > 0) {
+                            closedLatch.countDown();
+                            closed.incrementAndGet();
+                        }
+                    }
+
+                };
+            }
+
+        };
+
+        InputStream in = downloader.getInputStream(resource, 0, 0);
+        assertTrue(allOpened.await(10, TimeUnit.SECONDS));
+
+        in.close();
+
+        long timeout = System.currentTimeMillis() + 10_000;
+        while (closed.get() < MAX_CONCURRENT_PARTS && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(MAX_CONCURRENT_PARTS, opened.get());
+        assertEquals(MAX_CONCURRENT_PARTS, closed.get());
+    }
+
+    private static class TestResource extends ByteArrayResource implements RangeAwareResource {
+
+        protected final byte[] content;
+        protected final AtomicInteger requests = new AtomicInteger();
+        protected final AtomicInteger inFlight = new AtomicInteger();
+        protected final AtomicInteger maxInFlight = new AtomicInteger();
+        protected volatile long failAt = -1;
+
+        public TestResource(byte[] content) {
+            super(content);
+            this.content = content;
+        }
+
+        @Override
+        public InputStream getInputStream(long start, long end) throws IOException {
+            requests.incrementAndGet();
+            return new ByteArrayInputStream(getRange(start, end));
+        }
+
+        protected byte[] getRange(long start, long end) throws IOException {
+            int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            try {
+                // Earlier parts are slower, so they complete out of order
+                Thread.sleep(Math.max(1, 20 - start / PART_SIZE * 5));
+                if (start == failAt) {
+                    throw new FileNotFoundException("Range " + start + "-" + end + " not found");
+                }
+                return Arrays.copyOfRange(content, (int) start, (int) end + 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+    }
+
+    private static class TestAsyncResource extends TestResource implements AsyncRangeAwareResource {
+
+        protected final AtomicInteger asyncRequests = new AtomicInteger();
+
+        public TestAsyncResource(byte[] content) {
+            super(content);
+        }
+
+        @Override
+        public CompletableFuture<byte[]> getRangeAsync(long start, long end, String eTag) {
+            asyncRequests.incrementAndGet();
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return getRange(start, end);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+
+    }
+
+    private static class TestMetadataAwareResource extends TestResource implements MetadataAwareResource {
+
+        public TestMetadataAwareResource(byte[] content) {
+            super(content);
+        }
+
+        @Override
+        public ResourceMetadata getMetadata() {
+            return new ResourceMetadata(content.length, 0, ETAG, null);
+        }
+
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2007-2024 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.commons.spring.resources;
+
+import org.craftercms.commons.aws.S3ClientCachingFactory;
+import org.craftercms.commons.config.profiles.aws.S3Profile;
+import org.junit.Before;
+import org.junit.Test;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.Instant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class S3ResourceTest {
+
+    private static final String BUCKET = "bucket";
+    private static final String KEY = "static-assets/image.jpg";
+    private static final Instant LAST_MODIFIED = Instant.ofEpochMilli(1000000);
+
+    private S3Client client;
+    private S3ClientCachingFactory clientFactory;
+    private S3Profile profile;
+
+    @Before
+    public void setUp() {
+        client = mock(S3Client.class);
+        when(client.headObject(any(HeadObjectRequest.class))).thenReturn(HeadObjectResponse.builder()
+                                                                                            .contentLength(10L)
+                                                                                            .lastModified(LAST_MODIFIED)
+                                                                                            .eTag("etag1")
+                                                                                            .build());
+
+        profile = new S3Profile();
+
+        clientFactory = mock(S3ClientCachingFactory.class);
+        when(clientFactory.getClient(profile)).thenReturn(client);
+    }
+
+    @Test
+    public void testMetadataIsFetchedOnce() throws Exception {
+        S3Resource resource = new S3Resource(clientFactory, profile, BUCKET, KEY);
+
+        assertTrue(resource.exists());
+        assertEquals(10, resource.contentLength());
+        assertEquals(LAST_MODIFIED.toEpochMilli(), resource.lastModified());
+
+        verify(client, times(1)).headObject(any(HeadObjectRequest.class));
+    }
+
+    @Test
+    public void testMetadataIsShared() throws Exception {
+        ResourceMetadataCache metadataCache = new ResourceMetadataCache();
+
+        assertEquals(10, new S3Resource(clientFactory, profile, BUCKET, KEY, metadataCache).contentLength());
+        assertEquals(10, new S3Resource(clientFactory, profile, BUCKET, KEY, metadataCache).contentLength());
+
+        verify(client, times(1)).headObject(any(HeadObjectRequest.class));
+        assertEquals(1, metadataCache.getHitCount());
+    }
+
+    @Test
+    public void testMetadataFromGet() throws Exception {
+        GetObjectResponse response = GetObjectResponse.builder()
+                                                      .contentLength(5L)
+                                                      .lastModified(LAST_MODIFIED)
+                                                      .eTag("etag2")
+                                                      .build();
+        when(client.getObject(any(GetObjectRequest.class))).thenReturn(new ResponseInputStream<>(
+            response, AbortableInputStream.create(new ByteArrayInputStream(new byte[5]))));
+
+        S3Resource resource = new S3Resource(clientFactory, profile, BUCKET, KEY);
+
+        try (InputStream ignored = resource.getInputStream()) {
+            assertEquals(5, resource.contentLength());
+            assertTrue(resource.exists());
+        }
+
+        verify(client, never()).headObject(any(HeadObjectRequest.class));
+    }
+
+    @Test
+    public void testNotExists() {
+        when(client.headObject(any(HeadObjectRequest.class))).thenThrow(NoSuchKeyException.builder().build());
+
+        assertFalse(new S3Resource(clientFactory, profile, BUCKET, KEY).exists());
+    }
+
+}